@@ -15,6 +15,7 @@ plugins {
     id("com.github.johnrengelman.shadow") version "8.1.1"
     id("fr.xpdustry.toxopid") version "3.2.0"
     id("com.github.ben-manes.versions") version "0.50.0"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 val metadata =
@@ -69,6 +70,9 @@ dependencies {
     implementation("net.mindustry_ddns:file-store:2.1.0")
     implementation("org.aeonbits.owner:owner-java8:1.0.12")
     implementation("org.jdbi:jdbi3-core:3.42.0")
+    implementation("com.zaxxer:HikariCP:5.1.0")
+    // The JDBC drivers of the shared storage are downloaded at runtime, only H2 is needed by the tests
+    testImplementation("com.h2database:h2:2.2.224")
 
     val junit = "5.10.1"
     testImplementation("org.junit.jupiter:junit-jupiter-params:$junit")
@@ -84,6 +88,11 @@ dependencies {
     errorprone("com.google.errorprone:error_prone_core:2.23.0")
 }
 
+configurations.jmhImplementation {
+    // The benchmarks run the backends outside of a server, like the tests
+    extendsFrom(configurations.testImplementation.get())
+}
+
 configurations.runtimeClasspath {
     exclude("org.slf4j", "slf4j-api")
 }
@@ -173,7 +182,7 @@ tasks.withType<JavaCompile> {
     options.errorprone {
         disableWarningsInGeneratedCode.set(true)
         disable("MissingSummary", "InlineMeSuggester")
-        if (!name.contains("test", ignoreCase = true)) {
+        if (!name.contains("test", ignoreCase = true) && !name.contains("jmh", ignoreCase = true)) {
             check("NullAway", CheckSeverity.ERROR)
             option("NullAway:AnnotatedPackages", rootPackage)
             option("NullAway:TreatGeneratedAsUnannotated", true)
@@ -181,6 +190,15 @@ tasks.withType<JavaCompile> {
     }
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    // ./gradlew jmh -Pjmh.includes=LeaderboardBenchmark to run a subset of the benchmarks
+    (findProperty("jmh.includes") as String?)?.let { includes.add(it) }
+    // JSON results can be compared between commits with tools such as jmh.morethan.io
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
+
 // Required for the GitHub actions
 tasks.register("getArtifactPath") {
     doLast { println(tasks.shadowJar.get().archiveFile.get().toString()) }
@@ -203,7 +221,6 @@ tasks.shadowJar {
     // such as "minimize { exclude(dependency("some.group:some-dependency:.*")) }"
     minimize {
         exclude(dependency("org.xerial:sqlite-jdbc:.*"))
-        exclude(dependency("com.h2database:h2:.*"))
     }
     // Include the plugin.json file with the modified version
     doFirst {
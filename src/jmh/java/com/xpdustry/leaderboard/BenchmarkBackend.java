@@ -0,0 +1,71 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.core.dependency.DependencyManager;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+
+/**
+ * The leaderboard backends compared by the benchmarks.
+ */
+public enum BenchmarkBackend {
+    SQLITE {
+        @Override
+        Leaderboard create(final Path directory, final Executor executor) {
+            return new SQLiteLeaderboard(directory.resolve("database.sqlite"), DEPENDENCIES);
+        }
+    },
+    WRITE_BEHIND {
+        @Override
+        Leaderboard create(final Path directory, final Executor executor) {
+            // No periodic flush, only the threshold ones, so the measurements do not depend on the timer
+            return new WriteBehindLeaderboard(SQLITE.create(directory, executor), 0, 1000, executor);
+        }
+    },
+    MEMORY {
+        @Override
+        Leaderboard create(final Path directory, final Executor executor) {
+            // Only snapshots on exit, so the measurements do not depend on the timer
+            return new InMemoryLeaderboard(directory.resolve("leaderboard.bin"), 0, executor);
+        }
+    },
+    JOURNAL {
+        @Override
+        Leaderboard create(final Path directory, final Executor executor) {
+            return new JournalLeaderboard(directory.resolve("journal"), 16 * 1024 * 1024, false, executor);
+        }
+    };
+
+    private static final DependencyManager DEPENDENCIES;
+
+    static {
+        DEPENDENCIES = new DependencyManager(Path.of(System.getProperty("java.io.tmpdir"), "leaderboard-jmh-libs"));
+        DEPENDENCIES.addMavenCentral();
+    }
+
+    abstract Leaderboard create(final Path directory, final Executor executor);
+}
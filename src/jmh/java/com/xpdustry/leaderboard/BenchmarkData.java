@@ -0,0 +1,95 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+final class BenchmarkData {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    private BenchmarkData() {}
+
+    /**
+     * Generates uuids shaped like the Mindustry ones, the base64 encoding of 8 random bytes.
+     */
+    static String[] createUuids(final int size, final long seed) {
+        final var random = new SplittableRandom(seed);
+        final var uuids = new String[size];
+        final var bytes = new byte[8];
+        for (int i = 0; i < size; i++) {
+            random.nextBytes(bytes);
+            uuids[i] = Base64.getEncoder().encodeToString(bytes);
+        }
+        return uuids;
+    }
+
+    /**
+     * Fills the leaderboard with the given players, with a skewed score distribution like a real server.
+     */
+    static void populate(final Leaderboard leaderboard, final String[] uuids, final long seed) {
+        final var random = new SplittableRandom(seed);
+        final var batch = new ArrayList<LeaderboardPlayer>(BATCH_SIZE);
+        for (final var uuid : uuids) {
+            final var player = LeaderboardPlayer.of(uuid);
+            player.addPoints((long) (Math.pow(random.nextDouble(), 4) * 1_000_000));
+            batch.add(player);
+            if (batch.size() == BATCH_SIZE) {
+                leaderboard.savePlayers(batch);
+                batch.clear();
+            }
+        }
+        leaderboard.savePlayers(batch);
+    }
+
+    static void init(final Object object) {
+        if (object instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+    }
+
+    static void exit(final Object object) {
+        if (object instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    static void delete(final Path directory) throws IOException {
+        try (final Stream<Path> files = Files.walk(directory)) {
+            for (final var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LeaderboardBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"SQLITE", "WRITE_BEHIND"})
+    public BenchmarkBackend backend;
+
+    private Path directory;
+    private ExecutorService executor;
+    private Leaderboard leaderboard;
+    private String[] uuids;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("leaderboard-jmh");
+        executor = Executors.newSingleThreadExecutor();
+        leaderboard = backend.create(directory, executor);
+        BenchmarkData.init(leaderboard);
+        uuids = BenchmarkData.createUuids(size, 42L);
+        BenchmarkData.populate(leaderboard, uuids, 42L);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() throws IOException {
+        BenchmarkData.exit(leaderboard);
+        executor.shutdown();
+        BenchmarkData.delete(directory);
+    }
+
+    @Benchmark
+    public long addPoints() {
+        return leaderboard.addPoints(randomUuid(), 10L);
+    }
+
+    @Benchmark
+    public void findPlayerByUuid(final Blackhole blackhole) {
+        blackhole.consume(leaderboard.findPlayerByUuid(randomUuid()));
+    }
+
+    @Benchmark
+    public void findTopPlayers(final Blackhole blackhole) {
+        blackhole.consume(leaderboard.findTopPlayers(10));
+    }
+
+    @Benchmark
+    public long countPlayers() {
+        return leaderboard.countPlayers();
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void findAllPlayers(final Blackhole blackhole) {
+        for (final var player : leaderboard.findAllPlayers()) {
+            blackhole.consume(player);
+        }
+    }
+
+    private String randomUuid() {
+        return uuids[ThreadLocalRandom.current().nextInt(uuids.length)];
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import mindustry.gen.Player;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * The asynchronous view of a {@link LeaderboardService}. The work is done on a background executor and the returned
+ * futures are completed on the main thread, so the callbacks can safely interact with the game.
+ */
+public interface AsyncLeaderboardService {
+
+    static @NonNull AsyncLeaderboardService of(
+            final @NonNull LeaderboardService service, final @NonNull Executor executor) {
+        return new SimpleAsyncLeaderboardService(service, executor);
+    }
+
+    /**
+     * Returns the synchronous service backing this one.
+     */
+    @NonNull LeaderboardService getSync();
+
+    @NonNull CompletableFuture<Long> getPoints(final @NonNull String uuid);
+
+    default @NonNull CompletableFuture<Long> getPoints(final @NonNull Player player) {
+        return getPoints(player.uuid());
+    }
+
+    @NonNull CompletableFuture<Void> grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points);
+
+    @NonNull CompletableFuture<Long> getRank(final @NonNull String uuid);
+
+    default @NonNull CompletableFuture<Long> getRank(final @NonNull Player player) {
+        return getRank(player.uuid());
+    }
+
+    @NonNull CompletableFuture<List<LeaderboardPlayer>> getTopPlayers(final int limit);
+
+    @NonNull CompletableFuture<List<LeaderboardPlayer>> getPlayersByRankRange(final long from, final long to);
+
+    @NonNull CompletableFuture<List<LeaderboardPlayer>> getNeighbours(final @NonNull String uuid, final int radius);
+
+    default @NonNull CompletableFuture<List<LeaderboardPlayer>> getNeighbours(
+            final @NonNull Player player, final int radius) {
+        return getNeighbours(player.uuid(), radius);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.jdbi.v3.core.statement.StatementBuilder;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A statement builder that keeps the prepared statements of a long-lived connection open, so the fixed set of
+ * queries of a leaderboard is only parsed and planned once. The statements are closed with the connection,
+ * or when evicted from the cache. Not thread-safe, the connection must be used by one thread at a time.
+ */
+final class CachingStatementBuilder implements StatementBuilder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingStatementBuilder.class);
+
+    private final Map<String, PreparedStatement> statements;
+
+    CachingStatementBuilder(final int capacity) {
+        this.statements = new LinkedHashMap<>(capacity, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > capacity) {
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public @NonNull Statement create(final Connection conn, final StatementContext ctx) throws SQLException {
+        return conn.createStatement();
+    }
+
+    @Override
+    public @NonNull PreparedStatement create(final Connection conn, final String sql, final StatementContext ctx)
+            throws SQLException {
+        var statement = statements.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = conn.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    @Override
+    public @NonNull CallableStatement createCall(
+            final Connection conn, final String sql, final StatementContext ctx) throws SQLException {
+        return conn.prepareCall(sql);
+    }
+
+    @Override
+    public void close(final Connection conn, final String sql, final Statement stmt) throws SQLException {
+        if (stmt instanceof PreparedStatement prepared && statements.get(sql) == prepared) {
+            // Keep the statement for the next call, only reset its state
+            prepared.clearParameters();
+            prepared.clearBatch();
+        } else {
+            stmt.close();
+        }
+    }
+
+    @Override
+    public void close(final Connection conn) {
+        statements.values().forEach(CachingStatementBuilder::closeQuietly);
+        statements.clear();
+    }
+
+    private static void closeQuietly(final @NonNull Statement statement) {
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            logger.debug("Failed to close cached statement", e);
+        }
+    }
+}
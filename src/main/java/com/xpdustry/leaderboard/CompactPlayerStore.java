@@ -0,0 +1,430 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.ObjLongConsumer;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A compact store of the points of the leaderboard players. The Mindustry uuids are decoded by {@link PlayerUuids}
+ * into {@code long} keys stored in an open-addressing hash table made of primitive arrays, so the store holds a
+ * constant number of objects whatever the number of players. The other uuids are kept in a regular map.
+ *
+ * <p>The players are ranked like in the other leaderboards, from the highest score to the lowest, ties being broken
+ * by uuid. The ranking is a treap augmented with subtree sizes like {@link RankIndex}, but its nodes are slots of
+ * primitive arrays. It is updated on each write, so the writes and the range queries are all logarithmic.
+ */
+final class CompactPlayerStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NIL = -1;
+
+    // The hash table of the Mindustry uuids, from their key to their node
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] slots = createSlots(INITIAL_CAPACITY);
+    private int count = 0;
+    private final Map<String, Integer> others = new HashMap<>();
+
+    // The nodes of the treap, one per player, the released ones being chained through their left child
+    private long[] nodeKeys = new long[INITIAL_CAPACITY / 2];
+    private long[] nodePoints = new long[INITIAL_CAPACITY / 2];
+    private @Nullable String[] nodeUuids = new String[INITIAL_CAPACITY / 2];
+    private int[] lefts = new int[INITIAL_CAPACITY / 2];
+    private int[] rights = new int[INITIAL_CAPACITY / 2];
+    private int[] sizes = new int[INITIAL_CAPACITY / 2];
+    private int[] priorities = new int[INITIAL_CAPACITY / 2];
+    private int allocated = 0;
+    private int released = NIL;
+    private int root = NIL;
+    private final SplittableRandom random = new SplittableRandom();
+    // The two halves returned by split
+    private int splitLeft = NIL;
+    private int splitRight = NIL;
+
+    /**
+     * Inserts the player in the store or updates its points.
+     *
+     * @param uuid   the uuid of the player
+     * @param points the new points of the player
+     */
+    public synchronized void update(final @NonNull String uuid, final long points) {
+        final int node;
+        if (!PlayerUuids.isCanonical(uuid)) {
+            final var existing = others.get(uuid);
+            if (existing != null) {
+                move(existing, points);
+                return;
+            }
+            node = allocate(0L, uuid, points);
+            others.put(uuid, node);
+        } else {
+            final var key = PlayerUuids.decode(uuid);
+            final var slot = find(key);
+            if (slot >= 0) {
+                move(slots[slot], points);
+                return;
+            }
+            if ((count + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            final var free = -find(key) - 1;
+            node = allocate(key, null, points);
+            keys[free] = key;
+            slots[free] = node;
+            count++;
+        }
+        root = insert(root, node);
+    }
+
+    public synchronized void remove(final @NonNull String uuid) {
+        if (!PlayerUuids.isCanonical(uuid)) {
+            final var node = others.remove(uuid);
+            if (node != null) {
+                root = delete(root, node);
+                release(node);
+            }
+            return;
+        }
+        var slot = find(PlayerUuids.decode(uuid));
+        if (slot < 0) {
+            return;
+        }
+        root = delete(root, slots[slot]);
+        release(slots[slot]);
+        // Backward shift deletion, moves back the following entries of the probe sequence so no tombstone is needed
+        final var mask = keys.length - 1;
+        var next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (slots[next] == NIL) {
+                break;
+            }
+            final var home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                slots[slot] = slots[next];
+                slot = next;
+            }
+        }
+        slots[slot] = NIL;
+        count--;
+    }
+
+    public synchronized void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        slots = createSlots(INITIAL_CAPACITY);
+        count = 0;
+        others.clear();
+        nodeKeys = new long[INITIAL_CAPACITY / 2];
+        nodePoints = new long[INITIAL_CAPACITY / 2];
+        nodeUuids = new String[INITIAL_CAPACITY / 2];
+        lefts = new int[INITIAL_CAPACITY / 2];
+        rights = new int[INITIAL_CAPACITY / 2];
+        sizes = new int[INITIAL_CAPACITY / 2];
+        priorities = new int[INITIAL_CAPACITY / 2];
+        allocated = 0;
+        released = NIL;
+        root = NIL;
+    }
+
+    public synchronized boolean contains(final @NonNull String uuid) {
+        return lookup(uuid) != NIL;
+    }
+
+    /**
+     * Returns the points of the player, or 0 if the player is not in the store.
+     */
+    public synchronized long getPoints(final @NonNull String uuid) {
+        final var node = lookup(uuid);
+        return node == NIL ? 0L : nodePoints[node];
+    }
+
+    public synchronized int size() {
+        return count + others.size();
+    }
+
+    /**
+     * Returns the players ranked from {@code offset} (0-based) up to {@code offset + limit} exclusive.
+     */
+    public synchronized @NonNull List<LeaderboardPlayer> getRange(final int offset, final int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit");
+        }
+        final var result = new ArrayList<LeaderboardPlayer>(Math.min(limit, Math.max(0, size() - offset)));
+        if (offset >= size() || limit == 0) {
+            return result;
+        }
+
+        // Seek the node at the offset, keeping the ancestors that come after it
+        var stack = new int[64];
+        var depth = 0;
+        var current = root;
+        var index = offset;
+        while (current != NIL) {
+            final var left = size(lefts[current]);
+            if (index <= left) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = current;
+                if (index == left) {
+                    break;
+                }
+                current = lefts[current];
+            } else {
+                index -= left + 1;
+                current = rights[current];
+            }
+        }
+
+        while (depth > 0 && result.size() < limit) {
+            final var node = stack[--depth];
+            final var player = LeaderboardPlayer.of(getUuid(node));
+            player.addPoints(nodePoints[node]);
+            result.add(player);
+            var next = rights[node];
+            while (next != NIL) {
+                if (depth == stack.length) {
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = next;
+                next = lefts[next];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Visits all the players in no particular order, while holding the lock of the store.
+     */
+    public synchronized void forEach(final @NonNull ObjLongConsumer<String> consumer) {
+        for (int node = 0; node < allocated; node++) {
+            // The released nodes have no size
+            if (sizes[node] > 0) {
+                consumer.accept(getUuid(node), nodePoints[node]);
+            }
+        }
+    }
+
+    /**
+     * Returns the node of the player, or {@link #NIL} if it is absent.
+     */
+    private int lookup(final @NonNull String uuid) {
+        if (!PlayerUuids.isCanonical(uuid)) {
+            final var node = others.get(uuid);
+            return node == null ? NIL : node;
+        }
+        final var slot = find(PlayerUuids.decode(uuid));
+        return slot < 0 ? NIL : slots[slot];
+    }
+
+    /**
+     * Returns the slot of the key, or {@code -(insertion slot) - 1} if it is absent.
+     */
+    private int find(final long key) {
+        final var mask = keys.length - 1;
+        var slot = hash(key) & mask;
+        while (slots[slot] != NIL) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -slot - 1;
+    }
+
+    private void resize(final int capacity) {
+        final var oldKeys = keys;
+        final var oldSlots = slots;
+        keys = new long[capacity];
+        slots = createSlots(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSlots[i] != NIL) {
+                final var slot = -find(oldKeys[i]) - 1;
+                keys[slot] = oldKeys[i];
+                slots[slot] = oldSlots[i];
+            }
+        }
+    }
+
+    private int allocate(final long key, final @Nullable String uuid, final long points) {
+        final int node;
+        if (released != NIL) {
+            node = released;
+            released = lefts[node];
+        } else {
+            if (allocated == nodeKeys.length) {
+                final var capacity = allocated * 2;
+                nodeKeys = Arrays.copyOf(nodeKeys, capacity);
+                nodePoints = Arrays.copyOf(nodePoints, capacity);
+                nodeUuids = Arrays.copyOf(nodeUuids, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                rights = Arrays.copyOf(rights, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                priorities = Arrays.copyOf(priorities, capacity);
+            }
+            node = allocated++;
+        }
+        nodeKeys[node] = key;
+        nodeUuids[node] = uuid;
+        nodePoints[node] = points;
+        priorities[node] = random.nextInt();
+        detach(node);
+        return node;
+    }
+
+    private void release(final int node) {
+        nodeUuids[node] = null;
+        sizes[node] = 0;
+        lefts[node] = released;
+        released = node;
+    }
+
+    /**
+     * Moves the node to the position of its new points.
+     */
+    private void move(final int node, final long points) {
+        if (nodePoints[node] == points) {
+            return;
+        }
+        root = delete(root, node);
+        nodePoints[node] = points;
+        detach(node);
+        root = insert(root, node);
+    }
+
+    private void detach(final int node) {
+        lefts[node] = NIL;
+        rights[node] = NIL;
+        sizes[node] = 1;
+    }
+
+    private int insert(final int root, final int node) {
+        split(root, node);
+        final var left = splitLeft;
+        final var right = splitRight;
+        return merge(merge(left, node), right);
+    }
+
+    private int delete(final int root, final int node) {
+        if (root == NIL) {
+            throw new IllegalStateException("The ranking is out of sync with the table");
+        }
+        if (root == node) {
+            return merge(lefts[root], rights[root]);
+        } else if (compare(node, root) < 0) {
+            lefts[root] = delete(lefts[root], node);
+        } else {
+            rights[root] = delete(rights[root], node);
+        }
+        updateSize(root);
+        return root;
+    }
+
+    /**
+     * Splits the tree into the nodes ranked before the given one, put in {@link #splitLeft}, and the nodes ranked
+     * after it, put in {@link #splitRight}.
+     */
+    private void split(final int root, final int node) {
+        if (root == NIL) {
+            splitLeft = NIL;
+            splitRight = NIL;
+        } else if (compare(node, root) > 0) {
+            split(rights[root], node);
+            rights[root] = splitLeft;
+            updateSize(root);
+            splitLeft = root;
+        } else {
+            split(lefts[root], node);
+            lefts[root] = splitRight;
+            updateSize(root);
+            splitRight = root;
+        }
+    }
+
+    private int merge(final int left, final int right) {
+        if (left == NIL) {
+            return right;
+        }
+        if (right == NIL) {
+            return left;
+        }
+        if (priorities[left] > priorities[right]) {
+            rights[left] = merge(rights[left], right);
+            updateSize(left);
+            return left;
+        } else {
+            lefts[right] = merge(left, lefts[right]);
+            updateSize(right);
+            return right;
+        }
+    }
+
+    private void updateSize(final int node) {
+        sizes[node] = size(lefts[node]) + size(rights[node]) + 1;
+    }
+
+    private int size(final int node) {
+        return node == NIL ? 0 : sizes[node];
+    }
+
+    private int compare(final int a, final int b) {
+        if (nodePoints[a] != nodePoints[b]) {
+            return Long.compare(nodePoints[b], nodePoints[a]);
+        }
+        if (nodeUuids[a] == null && nodeUuids[b] == null) {
+            return Long.compareUnsigned(nodeKeys[a], nodeKeys[b]);
+        }
+        return getUuid(a).compareTo(getUuid(b));
+    }
+
+    private @NonNull String getUuid(final int node) {
+        final var uuid = nodeUuids[node];
+        return uuid != null ? uuid : PlayerUuids.encode(nodeKeys[node]);
+    }
+
+    private static int[] createSlots(final int capacity) {
+        final var slots = new int[capacity];
+        Arrays.fill(slots, NIL);
+        return slots;
+    }
+
+    private static int hash(final long key) {
+        // The finalizer of MurmurHash3, so close keys do not cluster in the table
+        var hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+}
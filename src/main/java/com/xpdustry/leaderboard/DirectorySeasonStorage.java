@@ -0,0 +1,96 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Stores each season in its own subdirectory, with the same layout as the all-time leaderboard.
+ */
+final class DirectorySeasonStorage implements SeasonStorage {
+
+    private final Path directory;
+    private final Function<Path, Leaderboard> factory;
+
+    DirectorySeasonStorage(final @NonNull Path directory, final @NonNull Function<Path, Leaderboard> factory) {
+        this.directory = directory;
+        this.factory = factory;
+    }
+
+    @Override
+    public @NonNull Leaderboard open(final @NonNull String season) {
+        final var path = resolve(season);
+        try {
+            Files.createDirectories(path);
+        } catch (final IOException e) {
+            throw new RuntimeException("Failed to create the season directory " + path, e);
+        }
+        return factory.apply(path);
+    }
+
+    @Override
+    public @NonNull List<String> list() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (final var files = Files.list(directory)) {
+            return files.filter(Files::isDirectory)
+                    .map(path -> path.getFileName().toString())
+                    .sorted()
+                    .toList();
+        } catch (final IOException e) {
+            throw new RuntimeException("Failed to list the seasons in " + directory, e);
+        }
+    }
+
+    @Override
+    public void delete(final @NonNull String season) {
+        final var path = resolve(season);
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (final var files = Files.walk(path)) {
+            for (final var file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException("Failed to delete the season " + season, e);
+        }
+    }
+
+    private @NonNull Path resolve(final @NonNull String season) {
+        if (!season.matches("[A-Za-z0-9_-]+")) {
+            throw new IllegalArgumentException("Invalid season id: " + season);
+        }
+        return directory.resolve(season);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.util.Strings;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+import mindustry.gen.Call;
+import mindustry.gen.Iconc;
+import mindustry.gen.Player;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Notifies the players of their granted points. With a window, the grants of each player are buffered and sent as a
+ * single summarized toast per window, by {@link #flush()} which must be called from the update loop.
+ */
+final class GrantNotifier {
+
+    private static final GrantNotifier IMMEDIATE = new GrantNotifier(0L, System::nanoTime, GrantNotifier::toast);
+
+    private final long window;
+    private final LongSupplier ticker;
+    private final BiConsumer<Player, String> sender;
+    // Swapped on flush, so the grants of the next window are buffered while the current ones are sent
+    private Map<String, Summary> pending = new HashMap<>();
+    private Map<String, Summary> flushing = new HashMap<>();
+    private long lastFlush;
+
+    private GrantNotifier(
+            final long window, final @NonNull LongSupplier ticker, final @NonNull BiConsumer<Player, String> sender) {
+        this.window = window;
+        this.ticker = ticker;
+        this.sender = sender;
+        this.lastFlush = ticker.getAsLong();
+    }
+
+    /**
+     * Returns a notifier sending a toast per grant.
+     */
+    static @NonNull GrantNotifier immediate() {
+        return IMMEDIATE;
+    }
+
+    /**
+     * Returns a notifier sending a toast per player per window, or per grant if the window is 0.
+     */
+    static @NonNull GrantNotifier windowed(final int windowMillis) {
+        return windowMillis > 0 ? windowed(windowMillis, System::nanoTime, GrantNotifier::toast) : IMMEDIATE;
+    }
+
+    /**
+     * Returns a notifier reading the time in nanoseconds from the ticker and sending the messages with the sender.
+     */
+    static @NonNull GrantNotifier windowed(
+            final int windowMillis,
+            final @NonNull LongSupplier ticker,
+            final @NonNull BiConsumer<Player, String> sender) {
+        return new GrantNotifier(TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis)), ticker, sender);
+    }
+
+    void notify(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
+        if (points.isSilent()) {
+            return;
+        }
+        if (window == 0L) {
+            send(player, Strings.format(
+                    "[yellow]@[] [cyan]>[] [@]@[]",
+                    points.getName(),
+                    points.getPoints() > 0 ? "green" : "red",
+                    points.getPoints()));
+            return;
+        }
+        synchronized (this) {
+            pending.computeIfAbsent(player.uuid(), k -> new Summary(player)).add(player, points);
+        }
+    }
+
+    /**
+     * Sends the buffered grants if the window elapsed. Does not allocate when there is nothing to send.
+     */
+    void flush() {
+        if (window == 0L) {
+            return;
+        }
+        final var now = ticker.getAsLong();
+        if (now - lastFlush < window) {
+            return;
+        }
+        lastFlush = now;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            final var swapped = pending;
+            pending = flushing;
+            flushing = swapped;
+        }
+        flushing.forEach(this::send);
+        flushing.clear();
+    }
+
+    private void send(final @NonNull String uuid, final @NonNull Summary summary) {
+        send(summary.player, summary.render());
+    }
+
+    private void send(final @NonNull Player player, final @NonNull String message) {
+        // The player may have left since the grant
+        if (player.con() != null && player.con().isConnected()) {
+            sender.accept(player, message);
+        }
+    }
+
+    private static void toast(final @NonNull Player player, final @NonNull String message) {
+        Call.warningToast(player.con(), Iconc.power, message);
+    }
+
+    /**
+     * The grants of a player during a window, with the number of grants per points name.
+     */
+    static final class Summary {
+
+        private @NonNull Player player;
+        private long total = 0L;
+        private final Map<String, int[]> counts = new LinkedHashMap<>();
+
+        Summary(final @NonNull Player player) {
+            this.player = player;
+        }
+
+        void add(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
+            // The latest player, in case they reconnected during the window
+            this.player = player;
+            this.total += points.getPoints();
+            counts.computeIfAbsent(points.getName(), k -> new int[1])[0]++;
+        }
+
+        /**
+         * Renders the summary, such as {@code +350 (Kill x5, Build x2)} with colors.
+         */
+        @NonNull String render() {
+            final var builder = new StringBuilder();
+            if (total > 0L) {
+                builder.append("[green]+");
+            } else if (total < 0L) {
+                builder.append("[red]");
+            } else {
+                builder.append("[white]");
+            }
+            builder.append(total).append("[] [lightgray](");
+            var first = true;
+            for (final var entry : counts.entrySet()) {
+                if (!first) {
+                    builder.append(", ");
+                }
+                first = false;
+                builder.append(entry.getKey());
+                if (entry.getValue()[0] > 1) {
+                    builder.append(" x").append(entry.getValue()[0]);
+                }
+            }
+            return builder.append(")[]").toString();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.util.Timer;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A leaderboard keeping all the players in memory, backed by a {@link CompactPlayerStore}. The players are saved in a
+ * {@link LeaderboardSnapshot} file periodically and on exit, and loaded back on init.
+ */
+final class InMemoryLeaderboard extends IndexedLeaderboard implements PluginListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryLeaderboard.class);
+
+    private final Path file;
+    private final int snapshotInterval;
+    private final Executor executor;
+    private final AtomicLong modifications = new AtomicLong();
+    private final Object snapshotLock = new Object();
+    private long savedModifications = 0L;
+    private Timer.@Nullable Task task = null;
+
+    InMemoryLeaderboard(final @NonNull Path file, final int snapshotInterval, final @NonNull Executor executor) {
+        this.file = file;
+        this.snapshotInterval = snapshotInterval;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onPluginInit() {
+        store.clear();
+        if (Files.exists(file)) {
+            try {
+                LeaderboardSnapshot.load(file, store);
+            } catch (final IOException e) {
+                throw new RuntimeException("Failed to load the leaderboard snapshot " + file, e);
+            }
+            logger.info("Loaded {} leaderboard players from {}", store.size(), file);
+        }
+        if (snapshotInterval > 0) {
+            task = Timer.schedule(this::snapshotAsync, snapshotInterval, snapshotInterval);
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        if (task != null) {
+            task.cancel();
+        }
+        snapshot();
+    }
+
+    /**
+     * Saves the players to the snapshot file, if they changed since the last snapshot.
+     */
+    public void snapshot() {
+        synchronized (snapshotLock) {
+            final var current = modifications.get();
+            if (current == savedModifications && Files.exists(file)) {
+                return;
+            }
+            try {
+                // Copy the players while holding the lock of the store, then write them without blocking the writers
+                LeaderboardSnapshot.of(store).write(file);
+                savedModifications = current;
+            } catch (final IOException e) {
+                logger.error("Failed to save the leaderboard snapshot {}", file, e);
+            }
+        }
+    }
+
+    private void snapshotAsync() {
+        try {
+            executor.execute(this::snapshot);
+        } catch (final RejectedExecutionException e) {
+            logger.debug("Skipped leaderboard snapshot, the executor is shut down");
+        }
+    }
+
+    @Override
+    public void savePlayer(final @NonNull LeaderboardPlayer player) {
+        store.update(player.getUuid(), player.getPoints());
+        modifications.incrementAndGet();
+    }
+
+    @Override
+    public void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        synchronized (store) {
+            players.forEach(player -> store.update(player.getUuid(), player.getPoints()));
+        }
+        modifications.incrementAndGet();
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        final long points;
+        synchronized (store) {
+            points = Math.max(0L, store.getPoints(uuid) + delta);
+            store.update(uuid, points);
+        }
+        modifications.incrementAndGet();
+        return points;
+    }
+
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        final var totals = new HashMap<String, Long>();
+        synchronized (store) {
+            deltas.forEach((uuid, delta) -> {
+                final var points = Math.max(0L, store.getPoints(uuid) + delta);
+                store.update(uuid, points);
+                totals.put(uuid, points);
+            });
+        }
+        modifications.incrementAndGet();
+        return totals;
+    }
+
+    @Override
+    public void deletePlayerByUuid(final @NonNull String uuid) {
+        store.remove(uuid);
+        modifications.incrementAndGet();
+    }
+
+    @Override
+    public void deleteAllPlayers() {
+        store.clear();
+        modifications.incrementAndGet();
+    }
+}
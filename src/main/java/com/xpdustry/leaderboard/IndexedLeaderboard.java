@@ -0,0 +1,127 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Base class of the leaderboards keeping all the players in a {@link CompactPlayerStore}, which serves all the reads.
+ * Implementations only have to persist the mutations.
+ */
+abstract class IndexedLeaderboard implements Leaderboard {
+
+    private static final int PAGE_SIZE = 500;
+
+    protected final CompactPlayerStore store = new CompactPlayerStore();
+
+    @Override
+    public boolean existsPlayerByUuid(final @NonNull String uuid) {
+        return store.contains(uuid);
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid) {
+        synchronized (store) {
+            if (!store.contains(uuid)) {
+                return Optional.empty();
+            }
+            final var player = LeaderboardPlayer.of(uuid);
+            player.addPoints(store.getPoints(uuid));
+            return Optional.of(player);
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        final var players = new ArrayList<LeaderboardPlayer>(uuids.size());
+        synchronized (store) {
+            for (final var uuid : uuids) {
+                if (store.contains(uuid)) {
+                    final var player = LeaderboardPlayer.of(uuid);
+                    player.addPoints(store.getPoints(uuid));
+                    players.add(player);
+                }
+            }
+        }
+        return players;
+    }
+
+    @Override
+    public @NonNull Iterable<LeaderboardPlayer> findAllPlayers() {
+        return () -> new Iterator<>() {
+
+            private List<LeaderboardPlayer> page = store.getRange(0, PAGE_SIZE);
+            private int offset = 0;
+            private int position = 0;
+
+            @Override
+            public boolean hasNext() {
+                return position < page.size();
+            }
+
+            @Override
+            public LeaderboardPlayer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final var element = page.get(position++);
+                if (position == page.size() && page.size() == PAGE_SIZE) {
+                    offset += PAGE_SIZE;
+                    page = store.getRange(offset, PAGE_SIZE);
+                    position = 0;
+                }
+                return element;
+            }
+        };
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        return store.getRange(0, limit);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        if (from < 1L) {
+            throw new IllegalArgumentException("The ranks start at 1, got " + from);
+        }
+        if (to < from || from > Integer.MAX_VALUE) {
+            return List.of();
+        }
+        return store.getRange((int) (from - 1), (int) Math.min(to - from + 1, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public long countPlayers() {
+        return store.size();
+    }
+}
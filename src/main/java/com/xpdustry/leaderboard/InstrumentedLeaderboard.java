@@ -0,0 +1,310 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.ApplicationListener;
+import arc.Core;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A leaderboard decorator recording the latency of every operation, and the total time spent in the leaderboard
+ * by the main thread during each server tick.
+ */
+final class InstrumentedLeaderboard implements Leaderboard, PluginListener {
+
+    private final Leaderboard leaderboard;
+    private final LongAdder tickTime = new LongAdder();
+    // Set by the first tick, only the time spent on the main thread holds the server tick back
+    private volatile @Nullable Thread mainThread = null;
+    // Only the ticks during which the leaderboard was used are recorded
+    private final ApplicationListener onTick = new ApplicationListener() {
+        @Override
+        public void update() {
+            mainThread = Thread.currentThread();
+            final var time = tickTime.sumThenReset();
+            if (time != 0L) {
+                tick.record(time);
+            }
+        }
+    };
+    private final LatencyHistogram tick;
+    private final LatencyHistogram savePlayer;
+    private final LatencyHistogram savePlayers;
+    private final LatencyHistogram addPoints;
+    private final LatencyHistogram addPointsBatch;
+    private final LatencyHistogram existsPlayerByUuid;
+    private final LatencyHistogram findPlayerByUuid;
+    private final LatencyHistogram findPlayersByUuids;
+    private final LatencyHistogram findAllPlayers;
+    private final LatencyHistogram forEachPlayer;
+    private final LatencyHistogram findTopPlayers;
+    private final LatencyHistogram findPlayersByRankRange;
+    private final LatencyHistogram countPlayers;
+    private final LatencyHistogram deletePlayerByUuid;
+    private final LatencyHistogram deleteAllPlayers;
+
+    InstrumentedLeaderboard(final @NonNull Leaderboard leaderboard, final @NonNull LeaderboardMetrics metrics) {
+        this.leaderboard = leaderboard;
+        this.tick = metrics.histogram("leaderboard.tick");
+        this.savePlayer = metrics.histogram("leaderboard.savePlayer");
+        this.savePlayers = metrics.histogram("leaderboard.savePlayers");
+        this.addPoints = metrics.histogram("leaderboard.addPoints");
+        this.addPointsBatch = metrics.histogram("leaderboard.addPointsBatch");
+        this.existsPlayerByUuid = metrics.histogram("leaderboard.existsPlayerByUuid");
+        this.findPlayerByUuid = metrics.histogram("leaderboard.findPlayerByUuid");
+        this.findPlayersByUuids = metrics.histogram("leaderboard.findPlayersByUuids");
+        this.findAllPlayers = metrics.histogram("leaderboard.findAllPlayers");
+        this.forEachPlayer = metrics.histogram("leaderboard.forEachPlayer");
+        this.findTopPlayers = metrics.histogram("leaderboard.findTopPlayers");
+        this.findPlayersByRankRange = metrics.histogram("leaderboard.findPlayersByRankRange");
+        this.countPlayers = metrics.histogram("leaderboard.countPlayers");
+        this.deletePlayerByUuid = metrics.histogram("leaderboard.deletePlayerByUuid");
+        this.deleteAllPlayers = metrics.histogram("leaderboard.deleteAllPlayers");
+        if (leaderboard instanceof LeaderboardMetrics.Source source) {
+            source.registerMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void onPluginInit() {
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+        Core.app.addListener(onTick);
+    }
+
+    @Override
+    public void onPluginExit() {
+        Core.app.removeListener(onTick);
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    @Override
+    public void savePlayer(final @NonNull LeaderboardPlayer player) {
+        final var start = System.nanoTime();
+        try {
+            leaderboard.savePlayer(player);
+        } finally {
+            record(savePlayer, start);
+        }
+    }
+
+    @Override
+    public void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        final var start = System.nanoTime();
+        try {
+            leaderboard.savePlayers(players);
+        } finally {
+            record(savePlayers, start);
+        }
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.addPoints(uuid, delta);
+        } finally {
+            record(addPoints, start);
+        }
+    }
+
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.addPointsBatch(deltas);
+        } finally {
+            record(addPointsBatch, start);
+        }
+    }
+
+    @Override
+    public boolean existsPlayerByUuid(final @NonNull String uuid) {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.existsPlayerByUuid(uuid);
+        } finally {
+            record(existsPlayerByUuid, start);
+        }
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid) {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.findPlayerByUuid(uuid);
+        } finally {
+            record(findPlayerByUuid, start);
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.findPlayersByUuids(uuids);
+        } finally {
+            record(findPlayersByUuids, start);
+        }
+    }
+
+    /**
+     * The iteration is lazy, so the time spent creating the iterable and iterating it is recorded once the iteration
+     * is complete.
+     */
+    @Override
+    public @NonNull Iterable<LeaderboardPlayer> findAllPlayers() {
+        final var start = System.nanoTime();
+        final var players = leaderboard.findAllPlayers();
+        final var creation = elapsed(start);
+        return () -> {
+            final var iteration = System.nanoTime();
+            final var iterator = players.iterator();
+            return new TimedIterator(iterator, creation + elapsed(iteration));
+        };
+    }
+
+    @Override
+    public void forEachPlayer(final @NonNull Consumer<LeaderboardPlayer> consumer) {
+        final var start = System.nanoTime();
+        try {
+            leaderboard.forEachPlayer(consumer);
+        } finally {
+            record(forEachPlayer, start);
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.findTopPlayers(limit);
+        } finally {
+            record(findTopPlayers, start);
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.findPlayersByRankRange(from, to);
+        } finally {
+            record(findPlayersByRankRange, start);
+        }
+    }
+
+    @Override
+    public long countPlayers() {
+        final var start = System.nanoTime();
+        try {
+            return leaderboard.countPlayers();
+        } finally {
+            record(countPlayers, start);
+        }
+    }
+
+    @Override
+    public void deletePlayerByUuid(final @NonNull String uuid) {
+        final var start = System.nanoTime();
+        try {
+            leaderboard.deletePlayerByUuid(uuid);
+        } finally {
+            record(deletePlayerByUuid, start);
+        }
+    }
+
+    @Override
+    public void deleteAllPlayers() {
+        final var start = System.nanoTime();
+        try {
+            leaderboard.deleteAllPlayers();
+        } finally {
+            record(deleteAllPlayers, start);
+        }
+    }
+
+    private void record(final @NonNull LatencyHistogram histogram, final long start) {
+        histogram.record(elapsed(start));
+    }
+
+    /**
+     * Returns the time elapsed since the start, and adds it to the time of the tick if spent on the main thread.
+     */
+    private long elapsed(final long start) {
+        final var elapsed = System.nanoTime() - start;
+        if (Thread.currentThread() == mainThread) {
+            tickTime.add(elapsed);
+        }
+        return elapsed;
+    }
+
+    private final class TimedIterator implements Iterator<LeaderboardPlayer> {
+
+        private final Iterator<LeaderboardPlayer> iterator;
+        private long time;
+        private boolean recorded = false;
+
+        private TimedIterator(final @NonNull Iterator<LeaderboardPlayer> iterator, final long time) {
+            this.iterator = iterator;
+            this.time = time;
+        }
+
+        @Override
+        public boolean hasNext() {
+            final var start = System.nanoTime();
+            final var next = iterator.hasNext();
+            time += elapsed(start);
+            if (!next && !recorded) {
+                recorded = true;
+                findAllPlayers.record(time);
+            }
+            return next;
+        }
+
+        @Override
+        public LeaderboardPlayer next() {
+            final var start = System.nanoTime();
+            try {
+                return iterator.next();
+            } finally {
+                time += elapsed(start);
+            }
+        }
+    }
+}
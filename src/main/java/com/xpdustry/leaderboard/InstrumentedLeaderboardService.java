@@ -0,0 +1,209 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import mindustry.gen.Player;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A service decorator recording the latency of every operation.
+ */
+final class InstrumentedLeaderboardService implements LeaderboardService, PluginListener {
+
+    private final LeaderboardService service;
+    private final LatencyHistogram getPoints;
+    private final LatencyHistogram grantPoints;
+    private final LatencyHistogram getRank;
+    private final LatencyHistogram getTopPlayers;
+    private final LatencyHistogram getPlayersByRankRange;
+    private final LatencyHistogram getNeighbours;
+    private final LatencyHistogram showLeaderboard;
+
+    InstrumentedLeaderboardService(final @NonNull LeaderboardService service, final @NonNull LeaderboardMetrics metrics) {
+        this.service = service;
+        this.getPoints = metrics.histogram("service.getPoints");
+        this.grantPoints = metrics.histogram("service.grantPoints");
+        this.getRank = metrics.histogram("service.getRank");
+        this.getTopPlayers = metrics.histogram("service.getTopPlayers");
+        this.getPlayersByRankRange = metrics.histogram("service.getPlayersByRankRange");
+        this.getNeighbours = metrics.histogram("service.getNeighbours");
+        this.showLeaderboard = metrics.histogram("service.showLeaderboard");
+        if (service instanceof LeaderboardMetrics.Source source) {
+            source.registerMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void onPluginInit() {
+        if (service instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        if (service instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    @Override
+    public long getPoints(final @NonNull String uuid) {
+        final var start = System.nanoTime();
+        try {
+            return service.getPoints(uuid);
+        } finally {
+            getPoints.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long getPoints(final @NonNull Player player) {
+        final var start = System.nanoTime();
+        try {
+            return service.getPoints(player);
+        } finally {
+            getPoints.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points) {
+        final var start = System.nanoTime();
+        try {
+            return service.grantPoints(uuid, points);
+        } finally {
+            grantPoints.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long grantPoints(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
+        final var start = System.nanoTime();
+        try {
+            return service.grantPoints(player, points);
+        } finally {
+            grantPoints.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public @NonNull Map<String, Long> grantPoints(
+            final @NonNull Iterable<Player> players, final @NonNull LeaderboardPoints points) {
+        final var start = System.nanoTime();
+        try {
+            return service.grantPoints(players, points);
+        } finally {
+            grantPoints.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long getRank(final @NonNull String uuid) {
+        final var start = System.nanoTime();
+        try {
+            return service.getRank(uuid);
+        } finally {
+            getRank.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long getRank(final @NonNull Player player) {
+        final var start = System.nanoTime();
+        try {
+            return service.getRank(player);
+        } finally {
+            getRank.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getTopPlayers(final int limit) {
+        final var start = System.nanoTime();
+        try {
+            return service.getTopPlayers(limit);
+        } finally {
+            getTopPlayers.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getPlayersByRankRange(final long from, final long to) {
+        final var start = System.nanoTime();
+        try {
+            return service.getPlayersByRankRange(from, to);
+        } finally {
+            getPlayersByRankRange.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getNeighbours(final @NonNull String uuid, final int radius) {
+        final var start = System.nanoTime();
+        try {
+            return service.getNeighbours(uuid, radius);
+        } finally {
+            getNeighbours.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void showLeaderboard(final @NonNull Player player) {
+        final var start = System.nanoTime();
+        try {
+            service.showLeaderboard(player);
+        } finally {
+            showLeaderboard.record(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void refresh() {
+        service.refresh();
+    }
+
+    @Override
+    public @NonNull Optional<String> getCurrentSeason() {
+        return service.getCurrentSeason();
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardService> getSeason(final @NonNull String season) {
+        return service.getSeason(season);
+    }
+
+    @Override
+    public @NonNull LeaderboardService getAllTime() {
+        // Keep the decorator when the service has no seasons
+        final var allTime = service.getAllTime();
+        return allTime == service ? this : allTime;
+    }
+}
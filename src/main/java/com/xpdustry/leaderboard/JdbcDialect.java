@@ -0,0 +1,147 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.core.dependency.MavenDependency;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * The SQL differences between the databases supported by {@link JdbcLeaderboard}. The statements use the named
+ * parameters {@code :uuid}, {@code :points} and {@code :delta}, and {@code %s} for the name of the table.
+ */
+enum JdbcDialect {
+    H2(
+            "org.h2.Driver",
+            MavenDependency.of("com.h2database", "h2", "2.2.224"),
+            "VARCHAR(64)",
+            "MERGE INTO %s (uuid, points) KEY (uuid) VALUES (:uuid, :points)",
+            "MERGE INTO %s t USING (SELECT CAST(:uuid AS VARCHAR(64)) AS uuid, CAST(:delta AS BIGINT) AS delta) s ON t.uuid = s.uuid WHEN MATCHED THEN UPDATE SET points = GREATEST(0, t.points + s.delta) WHEN NOT MATCHED THEN INSERT (uuid, points) VALUES (s.uuid, GREATEST(0, s.delta))",
+            Map.of()),
+    // The binary collation keeps the uuids case-sensitive, the default one of MariaDB is not
+    MARIADB(
+            "org.mariadb.jdbc.Driver",
+            MavenDependency.of("org.mariadb.jdbc", "mariadb-java-client", "3.3.1"),
+            "VARCHAR(64) CHARACTER SET ascii COLLATE ascii_bin",
+            "INSERT INTO %s (uuid, points) VALUES (:uuid, :points) ON DUPLICATE KEY UPDATE points = VALUES(points)",
+            "INSERT INTO %s (uuid, points) VALUES (:uuid, GREATEST(0, :delta)) ON DUPLICATE KEY UPDATE points = GREATEST(0, points + :delta)",
+            Map.of()),
+    // The C collation orders the uuids like Java does, instead of following the locale of the server
+    POSTGRESQL(
+            "org.postgresql.Driver",
+            MavenDependency.of("org.postgresql", "postgresql", "42.7.0"),
+            "VARCHAR(64) COLLATE \"C\"",
+            "INSERT INTO %s (uuid, points) VALUES (:uuid, :points) ON CONFLICT (uuid) DO UPDATE SET points = EXCLUDED.points",
+            "INSERT INTO %s AS t (uuid, points) VALUES (:uuid, GREATEST(0, :delta)) ON CONFLICT (uuid) DO UPDATE SET points = GREATEST(0, t.points + :delta)",
+            Map.of("reWriteBatchedInserts", "true"));
+
+    private final String driver;
+    private final MavenDependency dependency;
+    private final String uuidType;
+    private final String upsert;
+    private final String increment;
+    private final Map<String, String> properties;
+
+    JdbcDialect(
+            final @NonNull String driver,
+            final @NonNull MavenDependency dependency,
+            final @NonNull String uuidType,
+            final @NonNull String upsert,
+            final @NonNull String increment,
+            final @NonNull Map<String, String> properties) {
+        this.driver = driver;
+        this.dependency = dependency;
+        this.uuidType = uuidType;
+        this.upsert = upsert;
+        this.increment = increment;
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the dialect of the database of the given JDBC url.
+     *
+     * @throws IllegalArgumentException if the database is not supported
+     */
+    static @NonNull JdbcDialect fromUrl(final @NonNull String url) {
+        if (url.startsWith("jdbc:h2:")) {
+            return H2;
+        } else if (url.startsWith("jdbc:mariadb:") || url.startsWith("jdbc:mysql:")) {
+            return MARIADB;
+        } else if (url.startsWith("jdbc:postgresql:")) {
+            return POSTGRESQL;
+        }
+        throw new IllegalArgumentException("Unsupported JDBC url, expected a H2, MariaDB or PostgreSQL one: " + url);
+    }
+
+    /**
+     * Returns the url with the scheme expected by the driver. MariaDB Connector/J 3 rejects the MySQL urls unless
+     * {@code permitMysqlScheme} is set, so they are rewritten to MariaDB ones.
+     */
+    static @NonNull String normalizeUrl(final @NonNull String url) {
+        return url.startsWith("jdbc:mysql:") ? "jdbc:mariadb:" + url.substring("jdbc:mysql:".length()) : url;
+    }
+
+    @NonNull String getDriver() {
+        return driver;
+    }
+
+    /**
+     * Returns the artifact of the driver, downloaded at runtime instead of being shaded in the plugin.
+     */
+    @NonNull MavenDependency getDependency() {
+        return dependency;
+    }
+
+    /**
+     * Returns the driver properties of the dialect, such as the ones enabling the rewriting of the batches.
+     */
+    @NonNull Map<String, String> getProperties() {
+        return properties;
+    }
+
+    @NonNull String createTable(final @NonNull String table) {
+        return "CREATE TABLE IF NOT EXISTS " + table + " (uuid " + uuidType
+                + " NOT NULL PRIMARY KEY, points BIGINT NOT NULL DEFAULT 0)";
+    }
+
+    @NonNull String createIndex(final @NonNull String table) {
+        return "CREATE INDEX IF NOT EXISTS " + table + "_points_idx ON " + table + " (points DESC, uuid ASC)";
+    }
+
+    /**
+     * Returns the statement setting the points of a player, inserting it if needed.
+     */
+    @NonNull String upsert(final @NonNull String table) {
+        return String.format(upsert, table);
+    }
+
+    /**
+     * Returns the statement atomically adding points to a player, inserting it if needed, without going below 0.
+     */
+    @NonNull String increment(final @NonNull String table) {
+        return String.format(increment, table);
+    }
+}
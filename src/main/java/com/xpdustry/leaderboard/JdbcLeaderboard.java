@@ -0,0 +1,407 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.sql.Driver;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.JdbiException;
+import org.jdbi.v3.core.statement.StatementContext;
+import org.jdbi.v3.core.transaction.TransactionIsolationLevel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A leaderboard stored in a H2, MariaDB or PostgreSQL database, reached through a pool of connections, so several
+ * servers can share the same players. The points are only changed with atomic increments, the updates of one server
+ * never overwrite the ones of another. The transactions failing on a serialization failure or a deadlock are retried
+ * with an exponential backoff. The driver of the database is not shaded in the plugin, it is resolved at runtime and
+ * loaded in its own class loader.
+ */
+final class JdbcLeaderboard implements Leaderboard, PluginListener, LeaderboardMetrics.Source {
+
+    private static final Logger logger = LoggerFactory.getLogger(JdbcLeaderboard.class);
+    private static final String TABLE = "leaderboard_player";
+    private static final int PAGE_SIZE = 500;
+    private static final int IN_CHUNK_SIZE = 500;
+    private static final long RETRY_BACKOFF_MILLIS = 10L;
+    // Serialization failure, deadlock of PostgreSQL and concurrent update of H2
+    private static final Set<String> TRANSIENT_STATES = Set.of("40001", "40P01", "90131");
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final int poolSize;
+    private final int maxRetries;
+    private final JdbcDialect dialect;
+    private final Function<JdbcDialect, ClassLoader> drivers;
+    private final LongAdder retries = new LongAdder();
+    private @MonotonicNonNull HikariDataSource source = null;
+    private @MonotonicNonNull Jdbi jdbi = null;
+
+    JdbcLeaderboard(
+            final @NonNull String url,
+            final @NonNull String username,
+            final @NonNull String password,
+            final int poolSize,
+            final int maxRetries,
+            final @NonNull Function<JdbcDialect, ClassLoader> drivers) {
+        this.url = JdbcDialect.normalizeUrl(url);
+        this.username = username;
+        this.password = password;
+        this.poolSize = poolSize;
+        this.maxRetries = maxRetries;
+        this.dialect = JdbcDialect.fromUrl(url);
+        this.drivers = drivers;
+    }
+
+    @Override
+    public void onPluginInit() {
+        final var properties = new Properties();
+        properties.putAll(dialect.getProperties());
+        if (!username.isEmpty()) {
+            properties.setProperty("user", username);
+        }
+        if (!password.isEmpty()) {
+            properties.setProperty("password", password);
+        }
+        final var config = new HikariConfig();
+        config.setPoolName("leaderboard-pool");
+        config.setDataSource(new JdbcDriverDataSource(loadDriver(), url, properties));
+        config.setMaximumPoolSize(poolSize);
+        source = new HikariDataSource(config);
+        jdbi = Jdbi.create(source);
+
+        // Several servers can start at the same time, the statements are idempotent
+        inTransaction(handle -> {
+            handle.execute(dialect.createTable(TABLE));
+            handle.execute(dialect.createIndex(TABLE));
+            return null;
+        });
+    }
+
+    @Override
+    public void onPluginExit() {
+        source.close();
+    }
+
+    /**
+     * Loads the driver of the dialect from its own class loader, the drivers being resolved at runtime.
+     */
+    private @NonNull Driver loadDriver() {
+        try {
+            return (Driver) Class.forName(dialect.getDriver(), true, drivers.apply(dialect))
+                    .getConstructor()
+                    .newInstance();
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to load the JDBC driver " + dialect.getDriver(), e);
+        }
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("jdbc.pool.active", () -> getPoolStat(HikariPoolMXBean::getActiveConnections));
+        metrics.gauge("jdbc.pool.idle", () -> getPoolStat(HikariPoolMXBean::getIdleConnections));
+        metrics.gauge("jdbc.pool.waiting", () -> getPoolStat(HikariPoolMXBean::getThreadsAwaitingConnection));
+        metrics.gauge("jdbc.retries", retries::sum);
+    }
+
+    private int getPoolStat(final @NonNull ToIntFunction<HikariPoolMXBean> stat) {
+        final var pool = source == null ? null : source.getHikariPoolMXBean();
+        return pool == null ? 0 : stat.applyAsInt(pool);
+    }
+
+    private <R> R withHandle(final @NonNull HandleCallback<R, RuntimeException> callback) {
+        return jdbi.withHandle(callback);
+    }
+
+    /**
+     * Runs the callback in a transaction, retrying it if it failed on a conflict with a concurrent transaction.
+     */
+    private <R> R inTransaction(final @NonNull HandleCallback<R, RuntimeException> callback) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return jdbi.inTransaction(TransactionIsolationLevel.READ_COMMITTED, callback);
+            } catch (final JdbiException e) {
+                if (attempt >= maxRetries || !isTransient(e)) {
+                    throw e;
+                }
+                retries.increment();
+                final var backoff = RETRY_BACKOFF_MILLIS << attempt;
+                logger.debug("Retrying a leaderboard transaction in {}ms after a conflict", backoff, e);
+                try {
+                    // The jitter keeps the servers that conflicted from retrying in lockstep
+                    Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff));
+                } catch (final InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the exception is caused by a serialization failure or a deadlock, which can succeed when retried.
+     */
+    private static boolean isTransient(final @NonNull Throwable throwable) {
+        for (@Nullable Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            // Set.of does not accept null lookups, and not every driver sets a state
+            if (cause instanceof SQLException exception
+                    && exception.getSQLState() != null
+                    && TRANSIENT_STATES.contains(exception.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void savePlayer(final @NonNull LeaderboardPlayer player) {
+        inTransaction(handle -> handle.createUpdate(dialect.upsert(TABLE))
+                .bind("uuid", player.getUuid())
+                .bind("points", player.getPoints())
+                .execute());
+    }
+
+    @Override
+    public void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        if (players.isEmpty()) {
+            return;
+        }
+        // Sorted, so the concurrent batches of the servers lock the rows in the same order and cannot deadlock
+        final var sorted = new TreeMap<String, Long>();
+        players.forEach(player -> sorted.put(player.getUuid(), player.getPoints()));
+        inTransaction(handle -> {
+            final var batch = handle.prepareBatch(dialect.upsert(TABLE));
+            sorted.forEach((uuid, points) -> batch.bind("uuid", uuid).bind("points", points).add());
+            return batch.execute();
+        });
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        return inTransaction(handle -> {
+            handle.createUpdate(dialect.increment(TABLE))
+                    .bind("uuid", uuid)
+                    .bind("delta", delta)
+                    .execute();
+            // The row is locked by the increment until the commit, so this reads its result
+            return handle.createQuery("SELECT points FROM " + TABLE + " WHERE uuid = :uuid")
+                    .bind("uuid", uuid)
+                    .mapTo(Long.class)
+                    .one();
+        });
+    }
+
+    /**
+     * Sends the increments of all the players in a single JDBC batch, then reads the totals back with a single query,
+     * in the same transaction.
+     */
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return Map.of();
+        }
+        final var sorted = new TreeMap<>(deltas);
+        return inTransaction(handle -> {
+            final var batch = handle.prepareBatch(dialect.increment(TABLE));
+            sorted.forEach((uuid, delta) -> batch.bind("uuid", uuid).bind("delta", delta).add());
+            batch.execute();
+            final var totals = new HashMap<String, Long>();
+            final var uuids = new ArrayList<>(sorted.keySet());
+            for (int i = 0; i < uuids.size(); i += IN_CHUNK_SIZE) {
+                handle.createQuery("SELECT uuid, points FROM " + TABLE + " WHERE uuid IN (<uuids>)")
+                        .bindList("uuids", uuids.subList(i, Math.min(i + IN_CHUNK_SIZE, uuids.size())))
+                        .map(JdbcLeaderboard::mapPlayer)
+                        .forEach(player -> totals.put(player.getUuid(), player.getPoints()));
+            }
+            return totals;
+        });
+    }
+
+    @Override
+    public boolean existsPlayerByUuid(final @NonNull String uuid) {
+        return withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM " + TABLE + " WHERE uuid = :uuid")
+                        .bind("uuid", uuid)
+                        .mapTo(Integer.class)
+                        .one()
+                > 0);
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid) {
+        return withHandle(handle -> handle.createQuery("SELECT uuid, points FROM " + TABLE + " WHERE uuid = :uuid")
+                .bind("uuid", uuid)
+                .map(JdbcLeaderboard::mapPlayer)
+                .findFirst());
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        if (uuids.isEmpty()) {
+            return List.of();
+        }
+        final var list = List.copyOf(uuids);
+        return withHandle(handle -> {
+            final var players = new ArrayList<LeaderboardPlayer>(list.size());
+            for (int i = 0; i < list.size(); i += IN_CHUNK_SIZE) {
+                players.addAll(handle.createQuery("SELECT uuid, points FROM " + TABLE + " WHERE uuid IN (<uuids>)")
+                        .bindList("uuids", list.subList(i, Math.min(i + IN_CHUNK_SIZE, list.size())))
+                        .map(JdbcLeaderboard::mapPlayer)
+                        .list());
+            }
+            return players;
+        });
+    }
+
+    @Override
+    public @NonNull Iterable<LeaderboardPlayer> findAllPlayers() {
+        return () -> new Iterator<>() {
+
+            private List<LeaderboardPlayer> page = findTopPlayers(PAGE_SIZE);
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < page.size();
+            }
+
+            @Override
+            public LeaderboardPlayer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final var element = page.get(index++);
+                if (index == page.size() && page.size() == PAGE_SIZE) {
+                    page = findPlayersAfter(element);
+                    index = 0;
+                }
+                return element;
+            }
+        };
+    }
+
+    /**
+     * Streams the players in a read-only transaction, PostgreSQL only honors the fetch size outside of auto-commit.
+     * Not retried, the consumer would get the same players twice.
+     */
+    @Override
+    public void forEachPlayer(final @NonNull Consumer<LeaderboardPlayer> consumer) {
+        jdbi.useTransaction(handle -> handle.createQuery("SELECT uuid, points FROM " + TABLE)
+                .setFetchSize(PAGE_SIZE)
+                .map(JdbcLeaderboard::mapPlayer)
+                .forEach(consumer));
+    }
+
+    /**
+     * Returns the next page of players ranked after the given one, seeking through the points index.
+     */
+    private @NonNull List<LeaderboardPlayer> findPlayersAfter(final @NonNull LeaderboardPlayer last) {
+        return withHandle(handle -> handle.createQuery("SELECT uuid, points FROM " + TABLE
+                        + " WHERE points <= :points AND (points < :points OR uuid > :uuid) ORDER BY points DESC, uuid ASC LIMIT :limit")
+                .bind("points", last.getPoints())
+                .bind("uuid", last.getUuid())
+                .bind("limit", PAGE_SIZE)
+                .map(JdbcLeaderboard::mapPlayer)
+                .list());
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        return withHandle(handle -> handle.createQuery(
+                        "SELECT uuid, points FROM " + TABLE + " ORDER BY points DESC, uuid ASC LIMIT :limit")
+                .bind("limit", limit)
+                .map(JdbcLeaderboard::mapPlayer)
+                .list());
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        if (from < 1L) {
+            throw new IllegalArgumentException("The ranks start at 1, got " + from);
+        }
+        if (to < from) {
+            return List.of();
+        }
+        return withHandle(handle -> handle.createQuery("SELECT uuid, points FROM " + TABLE
+                        + " ORDER BY points DESC, uuid ASC LIMIT :limit OFFSET :offset")
+                .bind("limit", to - from + 1)
+                .bind("offset", from - 1)
+                .map(JdbcLeaderboard::mapPlayer)
+                .list());
+    }
+
+    @Override
+    public long countPlayers() {
+        return withHandle(handle -> handle.createQuery("SELECT COUNT(*) FROM " + TABLE)
+                .mapTo(Long.class)
+                .one());
+    }
+
+    @Override
+    public void deletePlayerByUuid(final @NonNull String uuid) {
+        inTransaction(handle -> handle.createUpdate("DELETE FROM " + TABLE + " WHERE uuid = :uuid")
+                .bind("uuid", uuid)
+                .execute());
+    }
+
+    @Override
+    public void deleteAllPlayers() {
+        inTransaction(handle -> handle.createUpdate("DELETE FROM " + TABLE).execute());
+    }
+
+    private static @NonNull LeaderboardPlayer mapPlayer(final ResultSet set, final StatementContext ctx)
+            throws SQLException {
+        final var player = LeaderboardPlayer.of(set.getString("uuid"));
+        player.addPoints(set.getLong("points"));
+        return player;
+    }
+}
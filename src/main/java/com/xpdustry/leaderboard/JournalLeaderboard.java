@@ -0,0 +1,406 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongFunction;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A leaderboard keeping all the players in memory, where each mutation is appended to a memory-mapped journal before
+ * being applied. Once a journal segment is full, the writes move to a new segment and the previous ones are folded
+ * in the background into a base {@link LeaderboardSnapshot}, by replaying the closed segments onto the previous base,
+ * so the writers never wait for a copy of the players. On init, the latest base is loaded and the segments written
+ * after it are replayed.
+ *
+ * <p>The journal records survive a crash of the server since they live in the page cache of the system, but a crash
+ * of the machine can lose the records not yet written by the system, unless {@code sync} is enabled.
+ *
+ * <p>Each record has a fixed size of {@value #RECORD_SIZE} bytes: the type, the uuid length, the uuid padded to
+ * {@value #MAX_UUID_LENGTH} bytes, the value, the timestamp and a CRC32 of the previous fields.
+ */
+final class JournalLeaderboard extends IndexedLeaderboard implements PluginListener, LeaderboardMetrics.Source {
+
+    static final int RECORD_SIZE = 80;
+    static final int MAX_UUID_LENGTH = 56;
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalLeaderboard.class);
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile("journal-(\\d+)\\.log");
+    private static final Pattern BASE_PATTERN = Pattern.compile("base-(\\d+)\\.bin");
+
+    private static final byte TYPE_ADD = 1;
+    private static final byte TYPE_SET = 2;
+    private static final byte TYPE_DELETE = 3;
+    private static final byte TYPE_CLEAR = 4;
+
+    private static final int UUID_OFFSET = 2;
+    private static final int VALUE_OFFSET = UUID_OFFSET + MAX_UUID_LENGTH;
+    private static final int TIMESTAMP_OFFSET = VALUE_OFFSET + Long.BYTES;
+    private static final int CRC_OFFSET = TIMESTAMP_OFFSET + Long.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean sync;
+    private final Executor executor;
+    private final Object compactionLock = new Object();
+    // Guarded by the lock of the store, so the records are in the same order as the mutations
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final CRC32 checksum = new CRC32();
+    private @MonotonicNonNull MappedByteBuffer segment = null;
+    private long generation = 0L;
+    // Guarded by the compaction lock
+    private long compactedGeneration = 0L;
+    private volatile @Nullable LatencyHistogram compactions = null;
+
+    JournalLeaderboard(
+            final @NonNull Path directory, final int segmentSize, final boolean sync, final @NonNull Executor executor) {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("The segment size must hold at least one record");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onPluginInit() {
+        try {
+            Files.createDirectories(directory);
+            synchronized (store) {
+                store.clear();
+                final var base = findGenerations(BASE_PATTERN).stream()
+                        .mapToLong(Long::longValue)
+                        .max()
+                        .orElse(0L);
+                if (base != 0L) {
+                    LeaderboardSnapshot.load(getBaseFile(base), store);
+                }
+                generation = base;
+                for (final var candidate : findGenerations(SEGMENT_PATTERN)) {
+                    if (candidate >= base) {
+                        replay(getSegmentFile(candidate), store);
+                        generation = Math.max(generation, candidate);
+                    }
+                }
+                compactedGeneration = base;
+            }
+            // Start from a clean slate, so the next init does not replay the same segments again
+            compact(rotate());
+            logger.info("Loaded {} leaderboard players from {}", store.size(), directory);
+        } catch (final IOException e) {
+            throw new RuntimeException("Failed to load the leaderboard journal " + directory, e);
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        synchronized (store) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+        compact(rotate());
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("journal.usage", this::getSegmentUsage);
+        compactions = metrics.histogram("journal.compaction");
+    }
+
+    /**
+     * Returns the ratio of the current journal segment already written.
+     */
+    public double getSegmentUsage() {
+        synchronized (store) {
+            return segment == null ? 0D : (double) segment.position() / segment.capacity();
+        }
+    }
+
+    @Override
+    public void savePlayer(final @NonNull LeaderboardPlayer player) {
+        synchronized (store) {
+            append(TYPE_SET, player.getUuid(), player.getPoints());
+            store.update(player.getUuid(), player.getPoints());
+            flush();
+        }
+    }
+
+    @Override
+    public void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        synchronized (store) {
+            for (final var player : players) {
+                append(TYPE_SET, player.getUuid(), player.getPoints());
+                store.update(player.getUuid(), player.getPoints());
+            }
+            flush();
+        }
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        synchronized (store) {
+            append(TYPE_ADD, uuid, delta);
+            final var points = Math.max(0L, store.getPoints(uuid) + delta);
+            store.update(uuid, points);
+            flush();
+            return points;
+        }
+    }
+
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        final var totals = new HashMap<String, Long>();
+        synchronized (store) {
+            deltas.forEach((uuid, delta) -> {
+                append(TYPE_ADD, uuid, delta);
+                final var points = Math.max(0L, store.getPoints(uuid) + delta);
+                store.update(uuid, points);
+                totals.put(uuid, points);
+            });
+            flush();
+        }
+        return totals;
+    }
+
+    @Override
+    public void deletePlayerByUuid(final @NonNull String uuid) {
+        synchronized (store) {
+            append(TYPE_DELETE, uuid, 0L);
+            store.remove(uuid);
+            flush();
+        }
+    }
+
+    @Override
+    public void deleteAllPlayers() {
+        synchronized (store) {
+            append(TYPE_CLEAR, "", 0L);
+            store.clear();
+            flush();
+        }
+    }
+
+    private void append(final byte type, final @NonNull String uuid, final long value) {
+        final var bytes = uuid.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_UUID_LENGTH) {
+            throw new IllegalArgumentException("The uuid is longer than " + MAX_UUID_LENGTH + " bytes: " + uuid);
+        }
+        if (segment == null) {
+            throw new IllegalStateException("The journal is not initialized");
+        }
+        if (segment.remaining() < RECORD_SIZE) {
+            // This record goes in the new segment, the full ones are folded in the background
+            final var next = rotate();
+            try {
+                executor.execute(() -> compact(next));
+            } catch (final RejectedExecutionException e) {
+                logger.debug("Skipped leaderboard journal compaction, the executor is shut down");
+            }
+        }
+
+        final var buffer = ByteBuffer.wrap(record);
+        Arrays.fill(record, (byte) 0);
+        buffer.put(0, type);
+        buffer.put(1, (byte) bytes.length);
+        buffer.put(UUID_OFFSET, bytes);
+        buffer.putLong(VALUE_OFFSET, value);
+        buffer.putLong(TIMESTAMP_OFFSET, System.currentTimeMillis());
+        checksum.reset();
+        checksum.update(record, 0, CRC_OFFSET);
+        buffer.putInt(CRC_OFFSET, (int) checksum.getValue());
+
+        segment.put(record);
+    }
+
+    /**
+     * Forces the written records to the disk if enabled, once per operation so the batches are only synced once.
+     */
+    private void flush() {
+        if (sync && segment != null) {
+            segment.force();
+        }
+    }
+
+    private void replay(final @NonNull Path file, final @NonNull CompactPlayerStore target) throws IOException {
+        final MappedByteBuffer buffer;
+        try (final var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        final var crc = new CRC32();
+        final var bytes = new byte[RECORD_SIZE];
+        var count = 0;
+        while (buffer.remaining() >= RECORD_SIZE) {
+            buffer.get(bytes);
+            if (bytes[0] == 0) {
+                break;
+            }
+            crc.reset();
+            crc.update(bytes, 0, CRC_OFFSET);
+            final var wrapped = ByteBuffer.wrap(bytes);
+            if (wrapped.getInt(CRC_OFFSET) != (int) crc.getValue()) {
+                // A record torn by a crash, nothing was acknowledged after it
+                logger.warn("Found a corrupted record in the leaderboard journal {} after {} records", file, count);
+                break;
+            }
+            final var uuid = new String(bytes, UUID_OFFSET, bytes[1], StandardCharsets.UTF_8);
+            final var value = wrapped.getLong(VALUE_OFFSET);
+            switch (bytes[0]) {
+                case TYPE_ADD -> target.update(uuid, Math.max(0L, target.getPoints(uuid) + value));
+                case TYPE_SET -> target.update(uuid, value);
+                case TYPE_DELETE -> target.remove(uuid);
+                case TYPE_CLEAR -> target.clear();
+                default -> throw new IOException("Unknown record type " + bytes[0] + " in " + file);
+            }
+            count++;
+        }
+        logger.debug("Replayed {} records from the leaderboard journal {}", count, file);
+    }
+
+    /**
+     * Moves the writes to a new journal segment, and returns its generation, the one of the base folding the previous
+     * segments.
+     */
+    private long rotate() {
+        synchronized (store) {
+            flush();
+            final var next = generation + 1;
+            final var file = getSegmentFile(next);
+            try (final var channel = FileChannel.open(
+                    file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                if (sync) {
+                    // The synced records are only durable if the segment holding them is too
+                    LeaderboardSnapshot.syncDirectory(directory);
+                }
+            } catch (final IOException e) {
+                throw new RuntimeException("Failed to create the leaderboard journal segment " + file, e);
+            }
+            generation = next;
+            return next;
+        }
+    }
+
+    /**
+     * Writes the base of the given generation, by replaying the segments written before it onto the previous base,
+     * then deletes the files it replaces. Those segments are closed, so the writers are never held back. The base is
+     * forced to the disk with its directory entry first, so a crash can never leave the journal without its base nor
+     * its segments.
+     */
+    private void compact(final long generation) {
+        synchronized (compactionLock) {
+            // The compactions can run out of order on the executor, a newer base makes the older ones useless
+            if (generation <= compactedGeneration) {
+                return;
+            }
+            final var start = System.nanoTime();
+            try {
+                final var folded = new CompactPlayerStore();
+                if (compactedGeneration != 0L) {
+                    LeaderboardSnapshot.load(getBaseFile(compactedGeneration), folded);
+                }
+                for (final var candidate : findGenerations(SEGMENT_PATTERN)) {
+                    if (candidate >= compactedGeneration && candidate < generation) {
+                        replay(getSegmentFile(candidate), folded);
+                    }
+                }
+                // Durable once written, see LeaderboardSnapshot#write
+                LeaderboardSnapshot.of(folded).write(getBaseFile(generation));
+            } catch (final IOException e) {
+                logger.error("Failed to compact the leaderboard journal up to {}", generation, e);
+                return;
+            }
+            compactedGeneration = generation;
+            try {
+                deleteBefore(BASE_PATTERN, generation, this::getBaseFile);
+                deleteBefore(SEGMENT_PATTERN, generation, this::getSegmentFile);
+            } catch (final IOException e) {
+                logger.warn("Failed to delete the compacted leaderboard journal files", e);
+            }
+            final var histogram = compactions;
+            if (histogram != null) {
+                histogram.record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void deleteBefore(
+            final @NonNull Pattern pattern,
+            final long generation,
+            final @NonNull LongFunction<Path> resolver)
+            throws IOException {
+        for (final var candidate : findGenerations(pattern)) {
+            if (candidate < generation) {
+                Files.deleteIfExists(resolver.apply(candidate));
+            }
+        }
+    }
+
+    private @NonNull List<Long> findGenerations(final @NonNull Pattern pattern) throws IOException {
+        final var generations = new ArrayList<Long>();
+        try (final var files = Files.list(directory)) {
+            files.forEach(file -> {
+                final var matcher = pattern.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    generations.add(Long.parseLong(matcher.group(1)));
+                }
+            });
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private @NonNull Path getSegmentFile(final long generation) {
+        return directory.resolve("journal-" + generation + ".log");
+    }
+
+    private @NonNull Path getBaseFile(final long generation) {
+        return directory.resolve("base-" + generation + ".bin");
+    }
+}
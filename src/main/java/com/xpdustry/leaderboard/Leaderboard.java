@@ -25,11 +25,58 @@
  */
 package com.xpdustry.leaderboard;
 
+import fr.xpdustry.distributor.api.DistributorProvider;
+import fr.xpdustry.distributor.core.DistributorCorePlugin;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 public interface Leaderboard {
 
+    /**
+     * Creates a leaderboard keeping all the players in memory, saved periodically in a snapshot file.
+     * The returned leaderboard must be initialized and closed with the plugin, it is done automatically when it is
+     * set with {@link LeaderboardPlugin#setLeaderboardProvider(java.util.function.Supplier)}.
+     *
+     * @param file             the snapshot file
+     * @param snapshotInterval the interval in seconds between two snapshots, 0 to only save on exit
+     */
+    static @NonNull Leaderboard memory(final @NonNull Path file, final int snapshotInterval) {
+        return new InMemoryLeaderboard(file, snapshotInterval, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a leaderboard stored in a H2, MariaDB or PostgreSQL database, which can be shared by several servers.
+     * The returned leaderboard must be initialized and closed with the plugin, like {@link #memory(Path, int)}. The
+     * driver of the database is downloaded by Distributor when the leaderboard is initialized.
+     *
+     * @param url      the JDBC url of the database
+     * @param username the username, can be empty
+     * @param password the password, can be empty
+     * @param poolSize the maximum number of connections to the database
+     */
+    static @NonNull Leaderboard jdbc(
+            final @NonNull String url,
+            final @NonNull String username,
+            final @NonNull String password,
+            final int poolSize) {
+        final var dependencies = ((DistributorCorePlugin) DistributorProvider.get()).getDependencyManager();
+        return new JdbcLeaderboard(
+                url,
+                username,
+                password,
+                poolSize,
+                5,
+                dialect -> dependencies.createClassLoaderFor(dialect.getDependency()));
+    }
+
     /**
      * Saves the leaderboard player.
      *
@@ -37,6 +84,45 @@ public interface Leaderboard {
      */
     void savePlayer(final @NonNull LeaderboardPlayer player);
 
+    /**
+     * Saves the leaderboard players, in a single transaction if the implementation supports it.
+     *
+     * @param players the leaderboard players
+     */
+    default void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        players.forEach(this::savePlayer);
+    }
+
+    /**
+     * Atomically adds points to a leaderboard player, creating it if it does not exist yet.
+     * The resulting score is clamped at 0, like {@link LeaderboardPlayer#addPoints(long)}.
+     *
+     * @param uuid  the uuid of the leaderboard player
+     * @param delta the points to add, can be negative
+     * @return the new points of the leaderboard player
+     */
+    default long addPoints(final @NonNull String uuid, final long delta) {
+        synchronized (this) {
+            final var player = findPlayerByUuid(uuid).orElseGet(() -> LeaderboardPlayer.of(uuid));
+            player.addPoints(delta);
+            savePlayer(player);
+            return player.getPoints();
+        }
+    }
+
+    /**
+     * Atomically adds points to several leaderboard players, like {@link #addPoints(String, long)}, in a single
+     * transaction if the implementation supports it.
+     *
+     * @param deltas the points to add, by uuid
+     * @return the new points of the leaderboard players, by uuid
+     */
+    default @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        final var totals = new HashMap<String, Long>();
+        deltas.forEach((uuid, delta) -> totals.put(uuid, addPoints(uuid, delta)));
+        return totals;
+    }
+
     boolean existsPlayerByUuid(final @NonNull String uuid);
 
     /**
@@ -47,11 +133,70 @@ public interface Leaderboard {
      */
     @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid);
 
+    /**
+     * Searches for several leaderboard players, in a single query if the implementation supports it.
+     *
+     * @param uuids the uuids of the leaderboard players
+     * @return the found leaderboard players, in no particular order
+     */
+    default @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        final var players = new ArrayList<LeaderboardPlayer>(uuids.size());
+        for (final var uuid : uuids) {
+            findPlayerByUuid(uuid).ifPresent(players::add);
+        }
+        return players;
+    }
+
     /**
      * Returns an ordered iterable of the leaderboard players from the highest score to the lowest.
      */
     @NonNull Iterable<LeaderboardPlayer> findAllPlayers();
 
+    /**
+     * Passes every leaderboard player to the consumer, in no particular order. Meant for the exports, the database
+     * backed leaderboards read the players in the order of their storage instead of ranked pages.
+     */
+    default void forEachPlayer(final @NonNull Consumer<LeaderboardPlayer> consumer) {
+        findAllPlayers().forEach(consumer);
+    }
+
+    /**
+     * Returns the leaderboard players with the highest scores, from the highest score to the lowest.
+     *
+     * @param limit the maximum number of players to return
+     */
+    default @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        final var players = new ArrayList<LeaderboardPlayer>(limit);
+        final var iterator = findAllPlayers().iterator();
+        while (iterator.hasNext() && players.size() < limit) {
+            players.add(iterator.next());
+        }
+        return players;
+    }
+
+    /**
+     * Returns the leaderboard players ranked from {@code from} to {@code to}, from the highest score to the lowest.
+     *
+     * @param from the rank of the first player, 1-based and inclusive
+     * @param to   the rank of the last player, inclusive
+     * @throws IllegalArgumentException if {@code from} is lower than 1
+     */
+    default @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        if (from < 1L) {
+            throw new IllegalArgumentException("The ranks start at 1, got " + from);
+        }
+        final var players = new ArrayList<LeaderboardPlayer>();
+        var rank = 0L;
+        for (final var player : findAllPlayers()) {
+            if (++rank > to) {
+                break;
+            } else if (rank >= from) {
+                players.add(player);
+            }
+        }
+        return players;
+    }
+
     long countPlayers();
 
     void deletePlayerByUuid(final @NonNull String uuid);
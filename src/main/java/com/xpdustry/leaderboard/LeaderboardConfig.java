@@ -25,11 +25,286 @@
  */
 package com.xpdustry.leaderboard;
 
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.IsoFields;
+import java.util.Locale;
 import org.aeonbits.owner.Accessible;
+import org.checkerframework.checker.nullness.qual.NonNull;
 
 public interface LeaderboardConfig extends Accessible {
 
     @DefaultValue("true")
     @Key("com.xpdustry.leaderboard.player.show-on-join")
     boolean showLeaderboardOnJoin();
+
+    @DefaultValue("SQLITE")
+    @Key("com.xpdustry.leaderboard.storage.type")
+    StorageType storageType();
+
+    /**
+     * The interval in seconds between two flushes of the buffered player updates, or of the buffered grants with the
+     * JDBC storage.
+     */
+    @DefaultValue("30")
+    @Key("com.xpdustry.leaderboard.storage.flush-interval")
+    int flushInterval();
+
+    /**
+     * The number of buffered player updates, or of players with buffered grants with the JDBC storage, that triggers
+     * an early flush.
+     */
+    @DefaultValue("100")
+    @Key("com.xpdustry.leaderboard.storage.flush-threshold")
+    int flushThreshold();
+
+    @DefaultValue("WAL")
+    @Key("com.xpdustry.leaderboard.sqlite.journal-mode")
+    String sqliteJournalMode();
+
+    @DefaultValue("NORMAL")
+    @Key("com.xpdustry.leaderboard.sqlite.synchronous")
+    String sqliteSynchronous();
+
+    /**
+     * The page cache size, in pages if positive or in KiB if negative.
+     */
+    @DefaultValue("-8192")
+    @Key("com.xpdustry.leaderboard.sqlite.cache-size")
+    int sqliteCacheSize();
+
+    /**
+     * The maximum number of bytes of the database file to memory-map, 0 to disable.
+     */
+    @DefaultValue("67108864")
+    @Key("com.xpdustry.leaderboard.sqlite.mmap-size")
+    long sqliteMmapSize();
+
+    @DefaultValue("MEMORY")
+    @Key("com.xpdustry.leaderboard.sqlite.temp-store")
+    String sqliteTempStore();
+
+    /**
+     * The interval in seconds between two snapshots of the in-memory leaderboard.
+     */
+    @DefaultValue("300")
+    @Key("com.xpdustry.leaderboard.memory.snapshot-interval")
+    int snapshotInterval();
+
+    /**
+     * The size in bytes of a journal segment, the journal is compacted each time a segment is full.
+     */
+    @DefaultValue("16777216")
+    @Key("com.xpdustry.leaderboard.journal.segment-size")
+    int journalSegmentSize();
+
+    /**
+     * Whether each journal record is forced to the disk. Without it, the records survive a crash of the server but
+     * not a crash of the machine.
+     */
+    @DefaultValue("false")
+    @Key("com.xpdustry.leaderboard.journal.sync")
+    boolean journalSync();
+
+    /**
+     * The JDBC url of the database of the JDBC storage, a H2, MariaDB or PostgreSQL one.
+     */
+    @DefaultValue("jdbc:h2:tcp://localhost/./leaderboard")
+    @Key("com.xpdustry.leaderboard.jdbc.url")
+    String jdbcUrl();
+
+    @DefaultValue("")
+    @Key("com.xpdustry.leaderboard.jdbc.username")
+    String jdbcUsername();
+
+    @DefaultValue("")
+    @Key("com.xpdustry.leaderboard.jdbc.password")
+    String jdbcPassword();
+
+    /**
+     * The maximum number of connections to the database.
+     */
+    @DefaultValue("8")
+    @Key("com.xpdustry.leaderboard.jdbc.pool-size")
+    int jdbcPoolSize();
+
+    /**
+     * The number of times a transaction is retried after a serialization failure or a deadlock.
+     */
+    @DefaultValue("5")
+    @Key("com.xpdustry.leaderboard.jdbc.max-retries")
+    int jdbcMaxRetries();
+
+    /**
+     * The interval in seconds between two reloads of the ranking, to pick up the points granted by the other servers
+     * when the leaderboard is shared, with the JDBC storage or the replication.
+     */
+    @DefaultValue("60")
+    @Key("com.xpdustry.leaderboard.storage.refresh-interval")
+    int refreshInterval();
+
+    /**
+     * Whether the points are replicated to the peers, so servers can share a leaderboard without a shared database.
+     */
+    @DefaultValue("false")
+    @Key("com.xpdustry.leaderboard.replication.enabled")
+    boolean replicationEnabled();
+
+    /**
+     * The unique and stable id of this server among its peers.
+     */
+    @DefaultValue("")
+    @Key("com.xpdustry.leaderboard.replication.node-id")
+    String replicationNodeId();
+
+    /**
+     * The secret shared by the peers, authenticating the changes they send to each other. Required by the replication.
+     */
+    @DefaultValue("")
+    @Key("com.xpdustry.leaderboard.replication.secret")
+    String replicationSecret();
+
+    /**
+     * The UDP port receiving the changes of the peers.
+     */
+    @DefaultValue("6590")
+    @Key("com.xpdustry.leaderboard.replication.port")
+    int replicationPort();
+
+    /**
+     * The comma-separated {@code host:port} list of the peers.
+     */
+    @DefaultValue("")
+    @Key("com.xpdustry.leaderboard.replication.peers")
+    String replicationPeers();
+
+    /**
+     * The interval in seconds between two sends of the changed points to the peers.
+     */
+    @DefaultValue("1")
+    @Key("com.xpdustry.leaderboard.replication.interval")
+    int replicationInterval();
+
+    /**
+     * The interval in seconds between two full syncs, which send the points of the next players of a rotation through
+     * all the players to the peers, and repair the lost changes.
+     */
+    @DefaultValue("60")
+    @Key("com.xpdustry.leaderboard.replication.full-sync-interval")
+    int replicationFullSyncInterval();
+
+    /**
+     * The number of players whose points are sent on each full sync.
+     */
+    @DefaultValue("1000")
+    @Key("com.xpdustry.leaderboard.replication.full-sync-size")
+    int replicationFullSyncSize();
+
+    @DefaultValue("NONE")
+    @Key("com.xpdustry.leaderboard.season.period")
+    SeasonPeriod seasonPeriod();
+
+    /**
+     * The number of past seasons kept besides the current one, the older ones are deleted.
+     */
+    @DefaultValue("12")
+    @Key("com.xpdustry.leaderboard.season.retention")
+    int seasonRetention();
+
+    /**
+     * The half-life in hours of the points, 0 to disable the decay. The stored scores depend on it, so changing it or
+     * enabling the decay on an existing leaderboard requires resetting the leaderboard. Not supported by the shared
+     * leaderboards, with the JDBC storage or the replication.
+     */
+    @DefaultValue("0")
+    @Key("com.xpdustry.leaderboard.score.decay-half-life")
+    int scoreDecayHalfLife();
+
+    /**
+     * The interval in seconds between two saves of the points of the online players, which are kept in memory with
+     * the SQLite storage. 0 to only save them when the players leave and on exit.
+     */
+    @DefaultValue("60")
+    @Key("com.xpdustry.leaderboard.session.checkpoint-interval")
+    int sessionCheckpointInterval();
+
+    /**
+     * The time in milliseconds during which the grants of a player are summarized in a single notification, 0 to
+     * notify each grant. Changes the format of the notifications, such as {@code +350 (Kill x5, Build x2)}.
+     */
+    @DefaultValue("0")
+    @Key("com.xpdustry.leaderboard.notification.window")
+    int notificationWindow();
+
+    /**
+     * Whether every grant is recorded in the points history, with the breakdown of the points per points name.
+     */
+    @DefaultValue("false")
+    @Key("com.xpdustry.leaderboard.history.enabled")
+    boolean historyEnabled();
+
+    /**
+     * The maximum number of grants waiting to be written to the history, the next ones are dropped.
+     */
+    @DefaultValue("65536")
+    @Key("com.xpdustry.leaderboard.history.queue-size")
+    int historyQueueSize();
+
+    /**
+     * The maximum number of grants written to the history in a single transaction.
+     */
+    @DefaultValue("1000")
+    @Key("com.xpdustry.leaderboard.history.batch-size")
+    int historyBatchSize();
+
+    enum StorageType {
+        /**
+         * A SQLite database, with buffered writes.
+         */
+        SQLITE,
+        /**
+         * All the players in memory, saved to a snapshot file periodically and on exit.
+         */
+        MEMORY,
+        /**
+         * All the players in memory, each change being appended to a memory-mapped journal.
+         */
+        JOURNAL,
+        /**
+         * A H2, MariaDB or PostgreSQL database, which can be shared by several servers.
+         */
+        JDBC
+    }
+
+    enum SeasonPeriod {
+        /**
+         * No seasons, only the all-time leaderboard.
+         */
+        NONE,
+        /**
+         * A season per ISO week, starting on monday.
+         */
+        WEEKLY,
+        /**
+         * A season per calendar month.
+         */
+        MONTHLY;
+
+        /**
+         * Returns the id of the season containing the given instant, in UTC. The ids sort in chronological order.
+         */
+        public @NonNull String getSeason(final @NonNull Instant instant) {
+            final var date = instant.atZone(ZoneOffset.UTC).toLocalDate();
+            return switch (this) {
+                case NONE -> "all-time";
+                case WEEKLY -> String.format(
+                        Locale.ROOT,
+                        "%d-W%02d",
+                        date.get(IsoFields.WEEK_BASED_YEAR),
+                        date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+                case MONTHLY -> YearMonth.from(date).toString();
+            };
+        }
+    }
 }
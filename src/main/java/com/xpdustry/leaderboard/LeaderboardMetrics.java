@@ -0,0 +1,94 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * The metrics of the leaderboard, the latency histograms of the instrumented operations and the gauges reported by
+ * the components, such as cache hit ratios or pending writes. Other plugins can poll them at any time.
+ */
+public final class LeaderboardMetrics {
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the histogram with the given name, creating it if needed.
+     * Callers on a hot path should keep a reference to it instead of looking it up every time.
+     */
+    public @NonNull LatencyHistogram histogram(final @NonNull String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public void gauge(final @NonNull String name, final @NonNull DoubleSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Returns the histograms sorted by name.
+     */
+    public @NonNull Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(new TreeMap<>(histograms));
+    }
+
+    /**
+     * Returns the current values of the gauges sorted by name.
+     */
+    public @NonNull Map<String, Double> getGauges() {
+        final var values = new TreeMap<String, Double>();
+        gauges.forEach((name, supplier) -> values.put(name, supplier.getAsDouble()));
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Wraps the leaderboard so all its operations are timed.
+     */
+    public @NonNull Leaderboard instrument(final @NonNull Leaderboard leaderboard) {
+        return new InstrumentedLeaderboard(leaderboard, this);
+    }
+
+    /**
+     * Wraps the service so all its operations are timed.
+     */
+    public @NonNull LeaderboardService instrument(final @NonNull LeaderboardService service) {
+        return new InstrumentedLeaderboardService(service, this);
+    }
+
+    /**
+     * A component reporting its own metrics, such as a cache or a buffer.
+     * The instrumented decorators register the metrics of the components they wrap.
+     */
+    public interface Source {
+
+        void registerMetrics(final @NonNull LeaderboardMetrics metrics);
+    }
+}
@@ -30,15 +30,31 @@ import arc.util.CommandHandler;
 import arc.util.Strings;
 import fr.xpdustry.distributor.api.DistributorProvider;
 import fr.xpdustry.distributor.api.plugin.AbstractMindustryPlugin;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
 import fr.xpdustry.distributor.core.DistributorCorePlugin;
 import io.leangen.geantyref.TypeToken;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import mindustry.Vars;
 import mindustry.game.EventType;
+import mindustry.gen.Groups;
 import mindustry.gen.Player;
 import net.mindustry_ddns.filestore.FileStore;
 import net.mindustry_ddns.filestore.Store;
@@ -46,21 +62,33 @@ import net.mindustry_ddns.filestore.serial.Serializers;
 import org.aeonbits.owner.ConfigFactory;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @SuppressWarnings("unused")
 public final class LeaderboardPlugin extends AbstractMindustryPlugin {
 
-    private final List<PointsRegistry> registries = new ArrayList<>();
-    private Function<Leaderboard, LeaderboardService> leaderboardServiceProvider = LeaderboardService::simple;
-    private Supplier<Leaderboard> leaderboardProvider = () -> {
-        final var leaderboard = new SQLiteLeaderboard(
-                getDirectory().resolve("database.sqlite"),
-                ((DistributorCorePlugin) DistributorProvider.get()).getDependencyManager());
-        addListener(leaderboard);
-        return leaderboard;
-    };
+    private static final Logger logger = LoggerFactory.getLogger(LeaderboardPlugin.class);
+    private static final int NEIGHBOUR_RADIUS = 2;
+    private static final int BOARD_PAGE_SIZE = 10;
+    private static final int SEASON_CHECK_INTERVAL = 60;
+    private static final int IMPORT_BATCH_SIZE = 1000;
 
+    private final ExecutorService executor = createExecutor();
+    private final LeaderboardMetrics metrics = new LeaderboardMetrics();
+    private final PointsCatalog catalog = new PointsCatalog();
+    private Function<Leaderboard, LeaderboardService> leaderboardServiceProvider =
+            leaderboard -> metrics.instrument(createDefaultService(leaderboard));
+    private Supplier<Leaderboard> leaderboardProvider =
+            () -> metrics.instrument(createReplicatedLeaderboard(createDefaultLeaderboard(getDirectory(), true)));
+
+    private @MonotonicNonNull Leaderboard leaderboard;
     private @MonotonicNonNull LeaderboardService service;
+    private @MonotonicNonNull AsyncLeaderboardService asyncService;
+    private @Nullable PointsHistory history;
+    private GrantNotifier notifier = GrantNotifier.immediate();
+    private final PlayerNameCache names = PlayerNameCache.create();
 
     private final Store<LeaderboardConfig> store = FileStore.of(
             getDirectory().resolve("config.properties").toFile(),
@@ -86,36 +114,266 @@ public final class LeaderboardPlugin extends AbstractMindustryPlugin {
     }
 
     public static void addPointsRegistry(final @NonNull PointsRegistry registry) {
-        getInstance().registries.add(registry);
+        getInstance().catalog.addRegistry(registry);
     }
 
     public static List<PointsRegistry> getPointsRegistries() {
-        return Collections.unmodifiableList(getInstance().registries);
+        return getInstance().catalog.getRegistries();
+    }
+
+    /**
+     * Returns the points of all the registries, indexed by name.
+     */
+    public static PointsCatalog getPointsCatalog() {
+        return getInstance().catalog;
     }
 
     public static LeaderboardService getLeaderboardService() {
         return getInstance().service;
     }
 
+    public static AsyncLeaderboardService getAsyncLeaderboardService() {
+        return getInstance().asyncService;
+    }
+
+    /**
+     * Returns the points history, empty if it is disabled.
+     */
+    public static Optional<PointsHistory> getPointsHistory() {
+        return Optional.ofNullable(getInstance().history);
+    }
+
+    /**
+     * Returns the leaderboard metrics. Use {@link LeaderboardMetrics#instrument(Leaderboard)} to record the metrics
+     * of a custom leaderboard set with {@link #setLeaderboardProvider(Supplier)}.
+     */
+    public static LeaderboardMetrics getLeaderboardMetrics() {
+        return getInstance().metrics;
+    }
+
     @Override
     public void onInit() {
         store.load();
-        service = leaderboardServiceProvider.apply(leaderboardProvider.get());
+        notifier = GrantNotifier.windowed(getConf().notificationWindow());
+        Events.run(EventType.Trigger.update, notifier::flush);
+        // Indexes the online players by uuid, and keeps the cached names up to date since the players can change their
+        // name between two sessions
+        Groups.player.each(names::join);
+        Events.on(EventType.PlayerJoin.class, e -> names.join(e.player));
+        Events.on(EventType.PlayerLeave.class, e -> names.leave(e.player));
+        // The leaderboard and the service are initialized in order and closed in reverse order,
+        // so the service can still write to the leaderboard when shutting down.
+        leaderboard = leaderboardProvider.get();
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+        service = leaderboardServiceProvider.apply(leaderboard);
+        if (getConf().historyEnabled()) {
+            final var history = new SQLitePointsHistory(
+                    getDirectory().resolve("history.sqlite"),
+                    ((DistributorCorePlugin) DistributorProvider.get()).getDependencyManager(),
+                    getConf().historyQueueSize(),
+                    getConf().historyBatchSize());
+            history.onPluginInit();
+            history.registerMetrics(metrics);
+            service = new RecordingLeaderboardService(service, history);
+            this.history = history;
+        }
+        if (service instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+        asyncService = AsyncLeaderboardService.of(service, executor);
         if (getConf().showLeaderboardOnJoin()) {
             Events.on(EventType.PlayerJoin.class, e -> service.showLeaderboard(e.player));
         }
     }
 
+    @Override
+    public void onExit() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10L, TimeUnit.SECONDS)) {
+                logger.warn("Timed out while waiting for the leaderboard tasks to complete");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (service instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+        // After the service, which can still grant points when shutting down
+        if (history instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    @Override
+    public void onServerCommandsRegistration(final CommandHandler handler) {
+        handler.register("lb-stats", "Display the leaderboard metrics.", args -> {
+            final var builder = new StringBuilder("Leaderboard metrics:");
+            metrics.getHistograms().forEach((name, histogram) -> {
+                if (histogram.getCount() == 0L) {
+                    return;
+                }
+                builder.append(Strings.format(
+                        "\n- @: count=@, mean=@us, p50=@us, p99=@us, max=@us",
+                        name,
+                        histogram.getCount(),
+                        toMicros(histogram.getMean()),
+                        toMicros(histogram.getValueAtPercentile(50D)),
+                        toMicros(histogram.getValueAtPercentile(99D)),
+                        toMicros(histogram.getMax())));
+            });
+            metrics.getGauges()
+                    .forEach((name, value) -> builder.append(Strings.format(
+                            "\n- @: @", name, String.format(Locale.ROOT, "%.2f", value))));
+            logger.info(builder.toString());
+        });
+
+        handler.register(
+                "lb-export",
+                "<file>",
+                "Export the leaderboard to a file, in csv if it ends with .csv, in binary otherwise.",
+                args -> runTransfer(
+                        "export",
+                        getDirectory().resolve(args[0]),
+                        (file, format) -> LeaderboardTransfer.exportTo(leaderboard, file, format)));
+
+        handler.register(
+                "lb-import",
+                "<file>",
+                "Add the points of the players of an exported file to the leaderboard.",
+                args -> runTransfer("import", getDirectory().resolve(args[0]), (file, format) -> {
+                    if (!Files.exists(file)) {
+                        throw new FileNotFoundException(file.toString());
+                    }
+                    final var result = LeaderboardTransfer.importFrom(leaderboard, file, format, IMPORT_BATCH_SIZE);
+                    service.refresh();
+                    return result;
+                }));
+    }
+
+    /**
+     * Runs the transfer on the executor, so the server keeps running meanwhile, then logs its throughput.
+     */
+    private void runTransfer(
+            final @NonNull String action, final @NonNull Path file, final @NonNull TransferTask task) {
+        final var format = LeaderboardTransfer.Format.fromFile(file);
+        logger.info("Started the {} of the leaderboard with {} ({})", action, file, format);
+        try {
+            executor.execute(() -> {
+                try {
+                    final var result = task.run(file, format);
+                    logger.info(
+                            "Completed the {} of {} players in {}ms ({} players/s)",
+                            action,
+                            result.players(),
+                            result.duration().toMillis(),
+                            String.format(Locale.ROOT, "%.0f", result.getPlayersPerSecond()));
+                } catch (final IOException | RuntimeException e) {
+                    logger.error("Failed the {} of the leaderboard with {}", action, file, e);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            logger.warn("Cannot run the {} of the leaderboard, the server is shutting down", action);
+        }
+    }
+
+    private interface TransferTask {
+
+        LeaderboardTransfer.@NonNull Result run(
+                final @NonNull Path file, final LeaderboardTransfer.@NonNull Format format) throws IOException;
+    }
+
+    private static @NonNull String toMicros(final double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000D);
+    }
+
     @Override
     public void onClientCommandsRegistration(final CommandHandler handler) {
         handler.<Player>register("lb-rank", "Get your leaderboard status.", (args, player) -> {
-            player.sendMessage(
-                    Strings.format("Rank: @, Points: @", service.getRank(player), service.getPoints(player)));
+            final var rank = asyncService.getRank(player);
+            final var neighbours = asyncService.getNeighbours(player, NEIGHBOUR_RADIUS);
+            // Only used if the player is missing from its neighbours, read off the server thread all the same
+            final var points = asyncService.getPoints(player);
+            CompletableFuture.allOf(rank, neighbours, points)
+                    .thenApply(ignored -> {
+                        final var builder = new StringBuilder();
+                        final var ranking = neighbours.join();
+                        // The neighbours are contiguous, so the rank of the first one follows from the player's
+                        var position = 0;
+                        while (position < ranking.size()
+                                && !ranking.get(position).getUuid().equals(player.uuid())) {
+                            position++;
+                        }
+                        final var total = position < ranking.size()
+                                ? ranking.get(position).getPoints()
+                                : points.join();
+                        builder.append(Strings.format("Rank: @, Points: @", rank.join(), total));
+                        appendRanking(builder, ranking, rank.join() - position, player.uuid());
+                        return builder.toString();
+                    })
+                    .thenAccept(player::sendMessage)
+                    .exceptionally(throwable -> reportFailure(player, "get your rank", throwable));
         });
 
-        handler.<Player>register("lb-board", "Show the top 10 of the leaderboard.", (args, player) -> {
-            service.showLeaderboard(player);
-        });
+        handler.<Player>register(
+                "lb-history", "[hours]", "Show your points per category, of all time or the last hours.", (args, p) -> {
+                    final var history = this.history;
+                    if (history == null) {
+                        p.sendMessage("The points history is disabled.");
+                        return;
+                    }
+                    final var hours = args.length == 0 ? 0 : Strings.parseInt(args[0], -1);
+                    if (hours < 0) {
+                        p.sendMessage("Invalid number of hours " + args[0]);
+                        return;
+                    }
+                    final var uuid = p.uuid();
+                    SimpleAsyncLeaderboardService.supply(
+                                    () -> {
+                                        if (hours == 0) {
+                                            return history.getBreakdown(uuid);
+                                        }
+                                        final var now = Instant.now();
+                                        return history.getBreakdown(uuid, now.minus(Duration.ofHours(hours)), now);
+                                    },
+                                    executor)
+                            .thenAccept(breakdown -> p.sendMessage(formatBreakdown(breakdown, hours)))
+                            .exceptionally(throwable -> reportFailure(p, "read your points history", throwable));
+                });
+
+        handler.<Player>register(
+                "lb-board", "[page]", "Show the top 10 of the leaderboard, or a page of it.", (args, player) -> {
+                    if (args.length == 0) {
+                        service.showLeaderboard(player);
+                        return;
+                    }
+                    final var page = Strings.parseInt(args[0], -1);
+                    if (page < 0) {
+                        player.sendMessage("Invalid page number " + args[0]);
+                        return;
+                    }
+                    final var from = page * (long) BOARD_PAGE_SIZE + 1;
+                    asyncService
+                            .getPlayersByRankRange(from, from + BOARD_PAGE_SIZE - 1)
+                            .thenAccept(players -> {
+                                if (players.isEmpty()) {
+                                    player.sendMessage("No players at page " + page);
+                                    return;
+                                }
+                                final var builder = new StringBuilder()
+                                        .append("Leaderboard (page ")
+                                        .append(page)
+                                        .append("):");
+                                appendRanking(builder, players, from, player.uuid());
+                                player.sendMessage(builder.toString());
+                            })
+                            .exceptionally(throwable -> reportFailure(player, "get the leaderboard page", throwable));
+                });
 
         handler.<Player>register("lb-points", "[page]", "Display the available points.", (args, player) -> {
             final var page = args.length == 0 ? 0 : Strings.parseInt(args[0], -1);
@@ -127,35 +385,177 @@ public final class LeaderboardPlugin extends AbstractMindustryPlugin {
                 return;
             }
 
-            final var points = registries.stream()
-                    .flatMap(r -> r.getLeaderboardPoints().stream())
-                    .skip(page * 10L)
-                    .limit(10L)
-                    .toList();
-
-            if (points.isEmpty()) {
+            final var rendered = catalog.getPage(page);
+            if (rendered.isEmpty()) {
                 player.sendMessage("No points at page " + page);
             } else {
-                final var builder = new StringBuilder();
-                builder.append("LeaderboardPoints (page ").append(page).append("):");
-                points.forEach(p -> {
-                    builder.append("\n[cyan]-[white] ").append(p.getName());
-                    if (!p.getDescription().isBlank()) {
-                        builder.append("[cyan]:[white] ").append(p.getDescription());
-                    }
-                    builder.append(" ");
-                    if (p.getPoints() > 0) {
-                        builder.append("[green]+");
-                    } else if (p.getPoints() < 0) {
-                        builder.append("[red]");
-                    }
-                    builder.append(p.getPoints());
-                });
-                player.sendMessage(builder.toString());
+                player.sendMessage(rendered.get());
             }
         });
     }
 
+    /**
+     * Logs the failure of a command and tells the player, for {@link CompletableFuture#exceptionally}.
+     */
+    private static @Nullable Void reportFailure(
+            final @NonNull Player player, final @NonNull String action, final @NonNull Throwable throwable) {
+        logger.error("Failed a leaderboard command of the player {}", player.uuid(), throwable);
+        player.sendMessage("Failed to " + action + ", please try again later.");
+        return null;
+    }
+
+    private static @NonNull String formatBreakdown(final @NonNull Map<String, Long> breakdown, final int hours) {
+        if (breakdown.isEmpty()) {
+            return "No points recorded.";
+        }
+        final var builder =
+                new StringBuilder(hours == 0 ? "Points history:" : "Points of the last " + hours + " hours:");
+        breakdown.forEach((name, points) -> builder.append("\n[cyan]-[white] ")
+                .append(name)
+                .append(" ")
+                .append(points > 0 ? "[green]+" : "[red]")
+                .append(points));
+        return builder.toString();
+    }
+
+    private void appendRanking(
+            final @NonNull StringBuilder builder,
+            final @NonNull List<LeaderboardPlayer> players,
+            final long firstRank,
+            final @NonNull String viewer) {
+        var rank = firstRank;
+        for (final var player : players) {
+            builder.append("\n")
+                    .append(player.getUuid().equals(viewer) ? "[yellow]" : "[white]")
+                    .append('#')
+                    .append(rank++)
+                    .append(" : ")
+                    .append(names.getName(player.getUuid()))
+                    .append("[white] - ")
+                    .append(player.getPoints());
+        }
+    }
+
+    private @NonNull LeaderboardService createDefaultService(final @NonNull Leaderboard leaderboard) {
+        final var decay = getConf().scoreDecayHalfLife() > 0
+                ? ScoreDecay.of(Duration.ofHours(getConf().scoreDecayHalfLife()))
+                : null;
+        if (getConf().storageType() == LeaderboardConfig.StorageType.JDBC || getConf().replicationEnabled()) {
+            if (getConf().seasonPeriod() != LeaderboardConfig.SeasonPeriod.NONE) {
+                throw new IllegalStateException("The seasons are not supported by the shared leaderboards yet");
+            }
+            // The decayed scores are read then written back, which would overwrite the grants of the other servers
+            if (decay != null) {
+                throw new IllegalStateException("The score decay is not supported by the shared leaderboards yet");
+            }
+            return new SharedLeaderboardService(
+                    leaderboard,
+                    notifier,
+                    names,
+                    getConf().refreshInterval(),
+                    getConf().storageType() == LeaderboardConfig.StorageType.JDBC,
+                    getConf().flushInterval(),
+                    getConf().flushThreshold(),
+                    executor);
+        }
+        if (getConf().seasonPeriod() == LeaderboardConfig.SeasonPeriod.NONE) {
+            return new SimpleLeaderboardService(leaderboard, decay, notifier, names);
+        }
+        return new SeasonalLeaderboardService(
+                leaderboard,
+                SeasonStorage.directory(
+                        getDirectory().resolve("seasons"), directory -> createDefaultLeaderboard(directory, false)),
+                getConf().seasonPeriod(),
+                getConf().seasonRetention(),
+                SEASON_CHECK_INTERVAL,
+                decay,
+                notifier,
+                names,
+                executor,
+                Clock.systemUTC());
+    }
+
+    private @NonNull Leaderboard createReplicatedLeaderboard(final @NonNull Leaderboard leaderboard) {
+        if (!getConf().replicationEnabled()) {
+            return leaderboard;
+        }
+        return new ReplicatedLeaderboard(
+                leaderboard,
+                getDirectory().resolve("replication.bin"),
+                getConf().replicationNodeId(),
+                getConf().replicationSecret(),
+                getConf().replicationPort(),
+                ReplicatedLeaderboard.parsePeers(getConf().replicationPeers()),
+                getConf().replicationInterval(),
+                getConf().replicationFullSyncInterval(),
+                getConf().replicationFullSyncSize(),
+                executor);
+    }
+
+    /**
+     * Creates the leaderboard of the storage type.
+     *
+     * @param directory the directory of the leaderboard files
+     * @param sessions  whether the online players are kept in memory, only for the all-time leaderboard, the
+     *                  partitions of the seasons being opened and closed on demand
+     */
+    private @NonNull Leaderboard createDefaultLeaderboard(final @NonNull Path directory, final boolean sessions) {
+        return switch (getConf().storageType()) {
+            case SQLITE -> {
+                // The changes are buffered, and the online players are kept in memory
+                final var leaderboard = new WriteBehindLeaderboard(
+                        new SQLiteLeaderboard(
+                                directory.resolve("database.sqlite"),
+                                ((DistributorCorePlugin) DistributorProvider.get()).getDependencyManager(),
+                                getConf()),
+                        getConf().flushInterval(),
+                        getConf().flushThreshold(),
+                        executor);
+                yield sessions
+                        ? new SessionLeaderboard(leaderboard, getConf().sessionCheckpointInterval(), executor)
+                        : leaderboard;
+            }
+            case MEMORY -> new InMemoryLeaderboard(
+                    directory.resolve("leaderboard.bin"), getConf().snapshotInterval(), executor);
+            case JOURNAL -> new JournalLeaderboard(
+                    directory.resolve("journal"),
+                    getConf().journalSegmentSize(),
+                    getConf().journalSync(),
+                    executor);
+            // Not buffered, the write-behind would overwrite the points granted by the other servers, the service
+            // buffers the grants as increments instead
+            case JDBC -> {
+                final var dependencies = ((DistributorCorePlugin) DistributorProvider.get()).getDependencyManager();
+                yield new JdbcLeaderboard(
+                        getConf().jdbcUrl(),
+                        getConf().jdbcUsername(),
+                        getConf().jdbcPassword(),
+                        getConf().jdbcPoolSize(),
+                        getConf().jdbcMaxRetries(),
+                        dialect -> dependencies.createClassLoaderFor(dialect.getDependency()));
+            }
+        };
+    }
+
+    /**
+     * Creates the executor running the database work, backed by virtual threads when available (Java 21+),
+     * or by a small pool of daemon threads otherwise.
+     */
+    private static @NonNull ExecutorService createExecutor() {
+        try {
+            return (ExecutorService)
+                    Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final ReflectiveOperationException ignored) {
+            final var count = new AtomicInteger();
+            return Executors.newFixedThreadPool(
+                    Math.min(4, Runtime.getRuntime().availableProcessors()), runnable -> {
+                        final var thread = new Thread(runnable, "leaderboard-worker-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
     private @NonNull LeaderboardConfig getConf() {
         return store.get();
     }
@@ -25,6 +25,10 @@
  */
 package com.xpdustry.leaderboard;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import mindustry.gen.Player;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
@@ -34,16 +38,50 @@ public interface LeaderboardService {
         return new SimpleLeaderboardService(leaderboard);
     }
 
+    /**
+     * Returns a service whose points decay over time. The leaderboard stores the scores of the players, see
+     * {@link ScoreDecay}, so it must not be shared with a service using plain points.
+     */
+    static @NonNull LeaderboardService decayed(
+            final @NonNull Leaderboard leaderboard, final @NonNull ScoreDecay decay) {
+        return new SimpleLeaderboardService(leaderboard, decay);
+    }
+
     long getPoints(final @NonNull String uuid);
 
     default long getPoints(final @NonNull Player player) {
         return getPoints(player.uuid());
     }
 
-    void grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points);
+    /**
+     * Grants the points to the player.
+     *
+     * @param uuid   the uuid of the player
+     * @param points the points to grant
+     * @return the points actually added, a penalty being limited to the points the player had
+     */
+    long grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points);
+
+    default long grantPoints(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
+        return grantPoints(player.uuid(), points);
+    }
 
-    default void grantPoints(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
-        grantPoints(player.uuid(), points);
+    /**
+     * Grants the same points to several players, in a single batch if the implementation supports it.
+     *
+     * @param players the players, each one is only granted once
+     * @param points  the points to grant
+     * @return the points actually added to each player, by uuid
+     */
+    default @NonNull Map<String, Long> grantPoints(
+            final @NonNull Iterable<Player> players, final @NonNull LeaderboardPoints points) {
+        final var applied = new LinkedHashMap<String, Long>();
+        for (final var player : players) {
+            if (!applied.containsKey(player.uuid())) {
+                applied.put(player.uuid(), grantPoints(player, points));
+            }
+        }
+        return applied;
     }
 
     long getRank(final @NonNull String uuid);
@@ -52,5 +90,64 @@ public interface LeaderboardService {
         return getRank(player.uuid());
     }
 
+    /**
+     * Returns the highest ranked players, from the highest score to the lowest.
+     *
+     * @param limit the maximum number of players to return
+     */
+    @NonNull List<LeaderboardPlayer> getTopPlayers(final int limit);
+
+    /**
+     * Returns the players ranked from {@code from} to {@code to}, from the highest score to the lowest.
+     *
+     * @param from the rank of the first player, 1-based and inclusive
+     * @param to   the rank of the last player, inclusive
+     */
+    @NonNull List<LeaderboardPlayer> getPlayersByRankRange(final long from, final long to);
+
+    /**
+     * Returns the players ranked around the given one, up to {@code radius} players above and below, including the
+     * player itself.
+     *
+     * @param uuid   the uuid of the player
+     * @param radius the maximum number of players above and below
+     */
+    @NonNull List<LeaderboardPlayer> getNeighbours(final @NonNull String uuid, final int radius);
+
+    default @NonNull List<LeaderboardPlayer> getNeighbours(final @NonNull Player player, final int radius) {
+        return getNeighbours(player.uuid(), radius);
+    }
+
     void showLeaderboard(final @NonNull Player player);
+
+    /**
+     * Reloads the ranking from the leaderboard, after the leaderboard was changed without the service, such as by an
+     * import. Does nothing if the service does not keep a ranking.
+     */
+    default void refresh() {}
+
+    /**
+     * Returns the id of the current season, or an empty optional if the service has no seasons. The other methods
+     * of the service apply to the current season.
+     */
+    default @NonNull Optional<String> getCurrentSeason() {
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the service of a season, either the current one or a past one still kept.
+     *
+     * @param season the id of the season
+     * @return the service of the season, or an empty optional if it does not exist
+     */
+    default @NonNull Optional<LeaderboardService> getSeason(final @NonNull String season) {
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the service of the all-time leaderboard, which is this service if it has no seasons.
+     */
+    default @NonNull LeaderboardService getAllTime() {
+        return this;
+    }
 }
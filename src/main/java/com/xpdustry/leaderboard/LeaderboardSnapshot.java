@@ -0,0 +1,138 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A point-in-time copy of a {@link CompactPlayerStore}, that can be written to a file and loaded back.
+ * The file is written in a temporary file, forced to the disk, then moved over the previous one, so a crash while
+ * saving never corrupts it nor loses the previous snapshot.
+ */
+final class LeaderboardSnapshot {
+
+    private static final int MAGIC = 0x4C42534E; // LBSN
+    private static final int VERSION = 1;
+
+    private final String[] uuids;
+    private final long[] points;
+
+    private LeaderboardSnapshot(final @NonNull String[] uuids, final long[] points) {
+        this.uuids = uuids;
+        this.points = points;
+    }
+
+    /**
+     * Copies the players of the store while holding its lock.
+     */
+    static @NonNull LeaderboardSnapshot of(final @NonNull CompactPlayerStore store) {
+        synchronized (store) {
+            final var uuids = new String[store.size()];
+            final var points = new long[uuids.length];
+            final var count = new int[] {0};
+            store.forEach((uuid, value) -> {
+                uuids[count[0]] = uuid;
+                points[count[0]++] = value;
+            });
+            return new LeaderboardSnapshot(uuids, points);
+        }
+    }
+
+    /**
+     * Loads the players of the snapshot file in the store.
+     */
+    static void load(final @NonNull Path file, final @NonNull CompactPlayerStore store) throws IOException {
+        try (final var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a leaderboard snapshot");
+            }
+            final var version = input.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+            final var count = input.readInt();
+            synchronized (store) {
+                for (int i = 0; i < count; i++) {
+                    store.update(input.readUTF(), input.readLong());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot to the file, which is durable once this method returns.
+     */
+    void write(final @NonNull Path file) throws IOException {
+        final var temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (final var channel = FileChannel.open(
+                        temp,
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.WRITE);
+                final var output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(uuids.length);
+            for (int i = 0; i < uuids.length; i++) {
+                output.writeUTF(uuids[i]);
+                output.writeLong(points[i]);
+            }
+            // The content must reach the disk before the rename, or a crash could leave an empty file in its place
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(file.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces the entries of the directory to the disk, so the files created, renamed or deleted in it stay so after a
+     * crash. Not supported on every platform, such as Windows, where it does nothing.
+     */
+    static void syncDirectory(final @NonNull Path directory) throws IOException {
+        try (final var channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (final AccessDeniedException e) {
+            // Windows does not open the directories
+        }
+    }
+
+    int size() {
+        return uuids.length;
+    }
+}
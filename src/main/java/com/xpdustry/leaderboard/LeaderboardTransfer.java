@@ -0,0 +1,285 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Exports the players of a {@link Leaderboard} to a file and imports them back, to move a leaderboard between servers
+ * or storages. The export streams the players with {@link Leaderboard#forEachPlayer(java.util.function.Consumer)} and
+ * the import adds them in batches, so neither loads the whole leaderboard in memory.
+ */
+public final class LeaderboardTransfer {
+
+    private static final int MAGIC = 0x4C424558; // LBEX
+    private static final int VERSION = 1;
+    private static final byte END = 0;
+    private static final byte CANONICAL_UUID = 1;
+    private static final byte RAW_UUID = 2;
+    private static final String CSV_HEADER = "uuid,points";
+
+    private LeaderboardTransfer() {}
+
+    /**
+     * Writes all the players of the leaderboard to the file. The file is written in a temporary file then moved over
+     * the previous one, so a failed export never leaves a truncated file behind.
+     */
+    public static @NonNull Result exportTo(
+            final @NonNull Leaderboard leaderboard, final @NonNull Path file, final @NonNull Format format)
+            throws IOException {
+        final var start = System.nanoTime();
+        final var temp = file.resolveSibling(file.getFileName() + ".tmp");
+        final var count = new long[] {0L};
+        try {
+            switch (format) {
+                case BINARY -> {
+                    try (final var output =
+                            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                        output.writeInt(MAGIC);
+                        output.writeInt(VERSION);
+                        leaderboard.forEachPlayer(player -> {
+                            writeBinary(output, player);
+                            count[0]++;
+                        });
+                        output.writeByte(END);
+                    }
+                }
+                case CSV -> {
+                    try (final var writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                        writer.write(CSV_HEADER);
+                        writer.newLine();
+                        leaderboard.forEachPlayer(player -> {
+                            writeCsv(writer, player);
+                            count[0]++;
+                        });
+                    }
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (final UncheckedIOException e) {
+            Files.deleteIfExists(temp);
+            throw e.getCause();
+        } catch (final IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new Result(count[0], Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Adds the points of all the players of the file to the leaderboard, in batches of atomic increments. The points
+     * granted during the import are kept, so it can run on a live leaderboard. To restore an export as is, import it
+     * in an empty leaderboard.
+     */
+    public static @NonNull Result importFrom(
+            final @NonNull Leaderboard leaderboard,
+            final @NonNull Path file,
+            final @NonNull Format format,
+            final int batchSize)
+            throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive, got " + batchSize);
+        }
+        final var start = System.nanoTime();
+        final var importer = new Importer(leaderboard, batchSize);
+        switch (format) {
+            case BINARY -> {
+                try (final var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    if (input.readInt() != MAGIC) {
+                        throw new IOException("Not a leaderboard export");
+                    }
+                    final var version = input.readInt();
+                    if (version != VERSION) {
+                        throw new IOException("Unsupported export version " + version);
+                    }
+                    while (true) {
+                        final var type = input.readByte();
+                        if (type == END) {
+                            break;
+                        }
+                        final var uuid = switch (type) {
+                            case CANONICAL_UUID -> PlayerUuids.encode(input.readLong());
+                            case RAW_UUID -> input.readUTF();
+                            default -> throw new IOException("Invalid uuid type " + type);
+                        };
+                        importer.add(uuid, input.readLong());
+                    }
+                }
+            }
+            case CSV -> {
+                try (final var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    if (!CSV_HEADER.equals(reader.readLine())) {
+                        throw new IOException("Missing the " + CSV_HEADER + " header");
+                    }
+                    readCsv(reader, importer);
+                }
+            }
+        }
+        importer.flush();
+        return new Result(importer.count, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static void writeBinary(final @NonNull DataOutputStream output, final @NonNull LeaderboardPlayer player) {
+        try {
+            if (PlayerUuids.isCanonical(player.getUuid())) {
+                output.writeByte(CANONICAL_UUID);
+                output.writeLong(PlayerUuids.decode(player.getUuid()));
+            } else {
+                output.writeByte(RAW_UUID);
+                output.writeUTF(player.getUuid());
+            }
+            output.writeLong(player.getPoints());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCsv(final @NonNull BufferedWriter writer, final @NonNull LeaderboardPlayer player) {
+        try {
+            final var uuid = player.getUuid();
+            if (uuid.indexOf('\n') >= 0 || uuid.indexOf('\r') >= 0) {
+                throw new IOException("The uuid " + uuid + " cannot be written in a csv line");
+            }
+            if (uuid.indexOf(',') >= 0 || uuid.indexOf('"') >= 0) {
+                writer.write('"' + uuid.replace("\"", "\"\"") + '"');
+            } else {
+                writer.write(uuid);
+            }
+            writer.write(',');
+            writer.write(Long.toString(player.getPoints()));
+            writer.newLine();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void readCsv(final @NonNull BufferedReader reader, final @NonNull Importer importer)
+            throws IOException {
+        String line;
+        var number = 1;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (line.isEmpty()) {
+                continue;
+            }
+            final var separator = line.lastIndexOf(',');
+            if (separator < 0) {
+                throw new IOException("Invalid csv line " + number + ": " + line);
+            }
+            var uuid = line.substring(0, separator);
+            if (uuid.length() >= 2 && uuid.startsWith("\"") && uuid.endsWith("\"")) {
+                uuid = uuid.substring(1, uuid.length() - 1).replace("\"\"", "\"");
+            }
+            try {
+                importer.add(uuid, Long.parseLong(line.substring(separator + 1).trim()));
+            } catch (final NumberFormatException e) {
+                throw new IOException("Invalid points at csv line " + number + ": " + line, e);
+            }
+        }
+    }
+
+    /**
+     * The format of an export file.
+     */
+    public enum Format {
+        /**
+         * A compact binary format, 17 bytes per player with a Mindustry uuid.
+         */
+        BINARY,
+        /**
+         * A {@code uuid,points} csv file with a header, readable by other tools.
+         */
+        CSV;
+
+        /**
+         * Returns the format matching the extension of the file, binary by default.
+         */
+        public static @NonNull Format fromFile(final @NonNull Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : BINARY;
+        }
+    }
+
+    /**
+     * The outcome of an export or an import.
+     *
+     * @param players  the number of transferred players
+     * @param duration the duration of the transfer
+     */
+    public record Result(long players, @NonNull Duration duration) {
+
+        public double getPlayersPerSecond() {
+            final var nanos = duration.toNanos();
+            return nanos == 0L ? 0D : players * 1_000_000_000D / nanos;
+        }
+    }
+
+    private static final class Importer {
+
+        private final Leaderboard leaderboard;
+        private final int batchSize;
+        private Map<String, Long> batch;
+        private long count = 0L;
+
+        private Importer(final @NonNull Leaderboard leaderboard, final int batchSize) {
+            this.leaderboard = leaderboard;
+            this.batchSize = batchSize;
+            this.batch = new HashMap<>();
+        }
+
+        private void add(final @NonNull String uuid, final long points) {
+            batch.merge(uuid, points, Long::sum);
+            count++;
+            if (batch.size() == batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            leaderboard.addPointsBatch(batch);
+            // A new map, the leaderboard may keep the previous one
+            batch = new HashMap<>();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A positive-negative counter, a CRDT counter where each node only increments its own pair of counters. The pairs
+ * are merged by taking their maximum, so the replicas converge whatever the order, the duplication or the loss of the
+ * exchanged states, as long as the latest state of each node eventually reaches them. Not thread-safe.
+ */
+final class PNCounter {
+
+    // The node id mapped to its increments and decrements
+    private final Map<String, long[]> nodes = new HashMap<>(2);
+
+    /**
+     * Adds the delta to the counters of the given node.
+     */
+    void add(final @NonNull String node, final long delta) {
+        final var counters = nodes.computeIfAbsent(node, k -> new long[2]);
+        if (delta >= 0L) {
+            counters[0] += delta;
+        } else {
+            counters[1] -= delta;
+        }
+    }
+
+    /**
+     * Merges the state of the counters of a node.
+     *
+     * @return whether the counters changed
+     */
+    boolean merge(final @NonNull String node, final long increments, final long decrements) {
+        final var counters = nodes.computeIfAbsent(node, k -> new long[2]);
+        if (increments <= counters[0] && decrements <= counters[1]) {
+            return false;
+        }
+        counters[0] = Math.max(counters[0], increments);
+        counters[1] = Math.max(counters[1], decrements);
+        return true;
+    }
+
+    /**
+     * Returns the value of the counter, the sum of the increments of all the nodes minus the sum of their decrements.
+     */
+    long getValue() {
+        var value = 0L;
+        for (final var counters : nodes.values()) {
+            value += counters[0] - counters[1];
+        }
+        return value;
+    }
+
+    /**
+     * Returns the increments and decrements of the node, zeros if it never changed the counter.
+     */
+    long @NonNull [] get(final @NonNull String node) {
+        final var counters = nodes.get(node);
+        return counters == null ? new long[2] : counters.clone();
+    }
+
+    /**
+     * Returns the nodes that changed the counter.
+     */
+    @NonNull Set<String> getNodes() {
+        return Collections.unmodifiableSet(nodes.keySet());
+    }
+
+    int size() {
+        return nodes.size();
+    }
+}
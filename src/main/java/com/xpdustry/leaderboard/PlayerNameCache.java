@@ -0,0 +1,173 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import mindustry.Vars;
+import mindustry.gen.Player;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A bounded cache of the names of the players, evicting the least recently used ones and loading the expired ones
+ * again, since the offline players can be renamed by the other servers sharing the player infos. The online players
+ * are indexed by uuid, their current name being used instead.
+ */
+final class PlayerNameCache implements LeaderboardMetrics.Source {
+
+    // The offline players can be renamed by the other servers, so their names are looked up again every ten minutes
+    static final long DEFAULT_EXPIRY = 600_000_000_000L;
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private final Map<String, Entry> names;
+    private final Map<String, Player> online = new ConcurrentHashMap<>();
+    private final long expiry;
+    private final LongSupplier ticker;
+    private final Function<String, @Nullable String> loader;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    PlayerNameCache(final int capacity, final @NonNull Function<String, @Nullable String> loader) {
+        this(capacity, Long.MAX_VALUE, System::nanoTime, loader);
+    }
+
+    /**
+     * Creates a cache whose names expire after {@code expiry} nanoseconds, read from the ticker.
+     */
+    PlayerNameCache(
+            final int capacity,
+            final long expiry,
+            final @NonNull LongSupplier ticker,
+            final @NonNull Function<String, @Nullable String> loader) {
+        this.names = new LinkedHashMap<>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.expiry = expiry;
+        this.ticker = ticker;
+        this.loader = loader;
+    }
+
+    /**
+     * Returns a cache looking up the names of the offline players in the player infos of the server.
+     */
+    static @NonNull PlayerNameCache create() {
+        return new PlayerNameCache(
+                DEFAULT_CAPACITY, DEFAULT_EXPIRY, System::nanoTime, PlayerNameCache::getOfflinePlayerName);
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("names.size", this::size);
+        metrics.gauge("names.hit-ratio", () -> {
+            final var hits = this.hits.sum();
+            final var total = hits + misses.sum();
+            return total == 0L ? 0D : (double) hits / total;
+        });
+    }
+
+    /**
+     * Returns the current name of the player if online, else its cached name.
+     */
+    @NonNull String getName(final @NonNull String uuid) {
+        final var player = online.get(uuid);
+        return player != null ? player.name() : get(uuid);
+    }
+
+    /**
+     * Indexes the player, when joining or when already online on init.
+     */
+    void join(final @NonNull Player player) {
+        online.put(player.uuid(), player);
+    }
+
+    /**
+     * Removes the player from the index and caches its last name, it can have changed since the last session.
+     */
+    void leave(final @NonNull Player player) {
+        online.remove(player.uuid(), player);
+        put(player.uuid(), player.name());
+    }
+
+    /**
+     * Returns the name of the player, loading it if not cached or expired. Unknown players are named after their uuid
+     * and not cached, so they are looked up again once known.
+     */
+    @NonNull String get(final @NonNull String uuid) {
+        synchronized (names) {
+            final var entry = names.get(uuid);
+            if (entry != null && ticker.getAsLong() - entry.time() < expiry) {
+                hits.increment();
+                return entry.name();
+            }
+        }
+        misses.increment();
+        final var name = loader.apply(uuid);
+        if (name == null) {
+            return uuid;
+        }
+        put(uuid, name);
+        return name;
+    }
+
+    /**
+     * Updates the name of the player, such as when it leaves with a new name.
+     */
+    void put(final @NonNull String uuid, final @NonNull String name) {
+        synchronized (names) {
+            names.put(uuid, new Entry(name, ticker.getAsLong()));
+        }
+    }
+
+    int size() {
+        synchronized (names) {
+            return names.size();
+        }
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    private static @Nullable String getOfflinePlayerName(final @NonNull String uuid) {
+        // Unlike getInfo, does not create an entry for the unknown players
+        final var info = Vars.netServer.admins.getInfoOptional(uuid);
+        return info == null ? null : info.lastName;
+    }
+
+    private record Entry(String name, long time) {}
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Conversions of the Mindustry uuids, the base64 encoding of 8 bytes, into compact keys. The keys are built from the
+ * rank of each base64 character in the ASCII order rather than from the decoded bytes, so the unsigned order of the
+ * keys is the order of the uuids.
+ */
+final class PlayerUuids {
+
+    // The base64 alphabet in the ASCII order, and the characters allowed before the padding of 8 encoded bytes
+    private static final String ALPHABET = "+/0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final String LAST_ALPHABET = "048AEIMQUYcgkosw";
+    private static final byte[] RANKS = createRanks(ALPHABET);
+    private static final byte[] LAST_RANKS = createRanks(LAST_ALPHABET);
+    private static final int UUID_LENGTH = 12;
+
+    private PlayerUuids() {}
+
+    /**
+     * Returns whether the uuid is the base64 encoding of 8 bytes, like the Mindustry ones.
+     */
+    static boolean isCanonical(final @NonNull String uuid) {
+        if (uuid.length() != UUID_LENGTH || uuid.charAt(UUID_LENGTH - 1) != '=') {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH - 2; i++) {
+            if (rank(RANKS, uuid.charAt(i)) < 0) {
+                return false;
+            }
+        }
+        return rank(LAST_RANKS, uuid.charAt(UUID_LENGTH - 2)) >= 0;
+    }
+
+    /**
+     * Decodes a canonical uuid into a key.
+     */
+    static long decode(final @NonNull String uuid) {
+        var key = 0L;
+        for (int i = 0; i < UUID_LENGTH - 2; i++) {
+            key = (key << 6) | rank(RANKS, uuid.charAt(i));
+        }
+        return (key << 4) | rank(LAST_RANKS, uuid.charAt(UUID_LENGTH - 2));
+    }
+
+    static @NonNull String encode(final long key) {
+        final var chars = new char[UUID_LENGTH];
+        chars[UUID_LENGTH - 1] = '=';
+        chars[UUID_LENGTH - 2] = LAST_ALPHABET.charAt((int) (key & 0xF));
+        var remaining = key >>> 4;
+        for (int i = UUID_LENGTH - 3; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt((int) (remaining & 0x3F));
+            remaining >>>= 6;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Returns the key of a canonical uuid as 8 big-endian bytes, whose lexicographic order is the order of the uuids.
+     */
+    static byte @NonNull [] toBytes(final @NonNull String uuid) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(decode(uuid)).array();
+    }
+
+    static @NonNull String fromBytes(final byte @NonNull [] bytes) {
+        if (bytes.length != Long.BYTES) {
+            throw new IllegalArgumentException("Expected " + Long.BYTES + " bytes, got " + bytes.length);
+        }
+        return encode(ByteBuffer.wrap(bytes).getLong());
+    }
+
+    private static int rank(final byte[] ranks, final char c) {
+        return c < ranks.length ? ranks[c] : -1;
+    }
+
+    private static byte[] createRanks(final @NonNull String alphabet) {
+        final var ranks = new byte[128];
+        Arrays.fill(ranks, (byte) -1);
+        for (int i = 0; i < alphabet.length(); i++) {
+            ranks[alphabet.charAt(i)] = (byte) i;
+        }
+        return ranks;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The points of all the registered {@link PointsRegistry}, sorted by name. The index and the rendered pages are built
+ * on first use and kept until another registry is added.
+ */
+public final class PointsCatalog {
+
+    /**
+     * The number of points per page.
+     */
+    public static final int PAGE_SIZE = 10;
+
+    private final List<PointsRegistry> registries = new ArrayList<>();
+    private volatile @Nullable Index index = null;
+
+    PointsCatalog() {}
+
+    synchronized void addRegistry(final @NonNull PointsRegistry registry) {
+        registries.add(registry);
+        index = null;
+    }
+
+    public synchronized @NonNull List<PointsRegistry> getRegistries() {
+        return List.copyOf(registries);
+    }
+
+    /**
+     * Returns the points with the given name. If several registries have points with the same name, the points of the
+     * first registered one are returned.
+     */
+    public @NonNull Optional<LeaderboardPoints> getPoints(final @NonNull String name) {
+        return Optional.ofNullable(getIndex().byName.get(name));
+    }
+
+    /**
+     * Returns all the points, sorted by name.
+     */
+    public @NonNull List<LeaderboardPoints> getAllPoints() {
+        return Collections.unmodifiableList(Arrays.asList(getIndex().points));
+    }
+
+    public int getPageCount() {
+        return getIndex().pages.length();
+    }
+
+    /**
+     * Returns the rendered page of points, empty if the page does not exist.
+     */
+    public @NonNull Optional<String> getPage(final int page) {
+        final var index = getIndex();
+        if (page < 0 || page >= index.pages.length()) {
+            return Optional.empty();
+        }
+        var rendered = index.pages.get(page);
+        if (rendered == null) {
+            // Rendering twice on concurrent calls is harmless, the result is the same
+            rendered = renderPage(index.points, page);
+            index.pages.set(page, rendered);
+        }
+        return Optional.of(rendered);
+    }
+
+    private @NonNull Index getIndex() {
+        var index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = new Index(registries);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static @NonNull String renderPage(final @NonNull LeaderboardPoints @NonNull [] points, final int page) {
+        final var builder = new StringBuilder();
+        builder.append("LeaderboardPoints (page ").append(page).append("):");
+        final var end = Math.min(points.length, (page + 1) * PAGE_SIZE);
+        for (int i = page * PAGE_SIZE; i < end; i++) {
+            final var p = points[i];
+            builder.append("\n[cyan]-[white] ").append(p.getName());
+            if (!p.getDescription().isBlank()) {
+                builder.append("[cyan]:[white] ").append(p.getDescription());
+            }
+            builder.append(" ");
+            if (p.getPoints() > 0) {
+                builder.append("[green]+");
+            } else if (p.getPoints() < 0) {
+                builder.append("[red]");
+            }
+            builder.append(p.getPoints());
+        }
+        return builder.toString();
+    }
+
+    private static final class Index {
+
+        private final LeaderboardPoints[] points;
+        private final Map<String, LeaderboardPoints> byName;
+        private final AtomicReferenceArray<@Nullable String> pages;
+
+        private Index(final @NonNull List<PointsRegistry> registries) {
+            final var points = new ArrayList<LeaderboardPoints>();
+            final var byName = new HashMap<String, LeaderboardPoints>();
+            for (final var registry : registries) {
+                for (final var p : registry.getLeaderboardPoints()) {
+                    points.add(p);
+                    byName.putIfAbsent(p.getName(), p);
+                }
+            }
+            // Stable, so the points with the same name keep the order of their registries
+            points.sort(Comparator.comparing(LeaderboardPoints::getName));
+            this.points = points.toArray(LeaderboardPoints[]::new);
+            this.byName = byName;
+            this.pages = new AtomicReferenceArray<>((this.points.length + PAGE_SIZE - 1) / PAGE_SIZE);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * The history of the granted points, with the breakdown of the points of the players per {@link LeaderboardPoints}
+ * name. The grants are recorded asynchronously, so they can take a moment to show up in the queries.
+ */
+public interface PointsHistory {
+
+    /**
+     * Records a grant. Never blocks, the grant is dropped if the history cannot keep up.
+     *
+     * @return whether the grant was queued
+     */
+    boolean record(final @NonNull Entry entry);
+
+    /**
+     * Returns the all-time points of the player per points name, from the highest to the lowest.
+     */
+    @NonNull Map<String, Long> getBreakdown(final @NonNull String uuid);
+
+    /**
+     * Returns the points of the player per points name granted in the given time range, from the highest to the
+     * lowest. The range is widened to whole hours.
+     */
+    @NonNull Map<String, Long> getBreakdown(
+            final @NonNull String uuid, final @NonNull Instant from, final @NonNull Instant to);
+
+    /**
+     * Returns the points of all the players per points name granted in the given time range, from the highest to the
+     * lowest. The range is widened to whole hours.
+     */
+    @NonNull Map<String, Long> getBreakdown(final @NonNull Instant from, final @NonNull Instant to);
+
+    /**
+     * Returns the latest grants of the player, from the newest to the oldest.
+     */
+    @NonNull List<Entry> getEntries(final @NonNull String uuid, final int limit);
+
+    /**
+     * A grant of points.
+     *
+     * @param uuid      the uuid of the player
+     * @param name      the name of the granted points
+     * @param delta     the granted points, negative for a penalty
+     * @param timestamp the time of the grant
+     */
+    record Entry(@NonNull String uuid, @NonNull String name, long delta, @NonNull Instant timestamp) {}
+}
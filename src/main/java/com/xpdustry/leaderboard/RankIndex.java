@@ -0,0 +1,255 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An in-memory order-statistic index of the leaderboard players, ordered from the highest score to the lowest,
+ * ties being broken by uuid. Backed by a treap augmented with subtree sizes, so updates, rank lookups and range
+ * selections are all logarithmic.
+ */
+final class RankIndex {
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final SplittableRandom random = new SplittableRandom();
+    private @Nullable Node root = null;
+
+    /**
+     * Inserts the player in the index or moves it to its new position.
+     *
+     * @param uuid   the uuid of the player
+     * @param points the new points of the player
+     */
+    public synchronized void update(final @NonNull String uuid, final long points) {
+        final var previous = nodes.get(uuid);
+        if (previous != null) {
+            if (previous.points == points) {
+                return;
+            }
+            root = delete(root, previous.points, uuid);
+        }
+        final var node = new Node(uuid, points, random.nextInt());
+        nodes.put(uuid, node);
+        root = insert(root, node);
+    }
+
+    public synchronized void remove(final @NonNull String uuid) {
+        final var node = nodes.remove(uuid);
+        if (node != null) {
+            root = delete(root, node.points, uuid);
+        }
+    }
+
+    public synchronized void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    public synchronized boolean contains(final @NonNull String uuid) {
+        return nodes.containsKey(uuid);
+    }
+
+    /**
+     * Returns the points of the player, or 0 if the player is not indexed.
+     */
+    public synchronized long getPoints(final @NonNull String uuid) {
+        final var node = nodes.get(uuid);
+        return node == null ? 0L : node.points;
+    }
+
+    /**
+     * Returns the 1-based rank of the player, or -1 if the player is not indexed.
+     */
+    public synchronized long getRank(final @NonNull String uuid) {
+        final var target = nodes.get(uuid);
+        if (target == null) {
+            return -1L;
+        }
+        var current = root;
+        var rank = 0L;
+        while (current != null) {
+            final var result = compare(target.points, target.uuid, current);
+            if (result < 0) {
+                current = current.left;
+            } else if (result > 0) {
+                rank += size(current.left) + 1;
+                current = current.right;
+            } else {
+                return rank + size(current.left) + 1;
+            }
+        }
+        throw new IllegalStateException("The index is out of sync for " + uuid);
+    }
+
+    /**
+     * Returns the players ranked from {@code offset} (0-based) up to {@code offset + limit} exclusive.
+     */
+    public synchronized @NonNull List<LeaderboardPlayer> getRange(final int offset, final int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Negative offset or limit");
+        }
+        final var result = new ArrayList<LeaderboardPlayer>(Math.min(limit, Math.max(0, nodes.size() - offset)));
+        if (offset >= nodes.size() || limit == 0) {
+            return result;
+        }
+
+        // Seek the node at the offset, keeping the ancestors that come after it
+        final var stack = new ArrayDeque<Node>();
+        var current = root;
+        var index = offset;
+        while (current != null) {
+            final var left = size(current.left);
+            if (index < left) {
+                stack.push(current);
+                current = current.left;
+            } else if (index == left) {
+                stack.push(current);
+                break;
+            } else {
+                index -= left + 1;
+                current = current.right;
+            }
+        }
+
+        while (!stack.isEmpty() && result.size() < limit) {
+            final var node = stack.pop();
+            result.add(node.toPlayer());
+            var next = node.right;
+            while (next != null) {
+                stack.push(next);
+                next = next.left;
+            }
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return nodes.size();
+    }
+
+    private static @NonNull Node insert(final @Nullable Node root, final @NonNull Node node) {
+        final var split = split(root, node.points, node.uuid);
+        return merge(merge(split[0], node), split[1]);
+    }
+
+    private static @Nullable Node delete(final @Nullable Node root, final long points, final @NonNull String uuid) {
+        if (root == null) {
+            return null;
+        }
+        final var result = compare(points, uuid, root);
+        if (result == 0) {
+            return merge(root.left, root.right);
+        } else if (result < 0) {
+            root.left = delete(root.left, points, uuid);
+        } else {
+            root.right = delete(root.right, points, uuid);
+        }
+        root.update();
+        return root;
+    }
+
+    /**
+     * Splits the tree into the nodes ranked before the given key and the nodes ranked at or after it.
+     */
+    private static @Nullable Node[] split(final @Nullable Node root, final long points, final @NonNull String uuid) {
+        if (root == null) {
+            return new Node[] {null, null};
+        }
+        if (compare(points, uuid, root) > 0) {
+            final var split = split(root.right, points, uuid);
+            root.right = split[0];
+            root.update();
+            split[0] = root;
+            return split;
+        } else {
+            final var split = split(root.left, points, uuid);
+            root.left = split[1];
+            root.update();
+            split[1] = root;
+            return split;
+        }
+    }
+
+    private static @Nullable Node merge(final @Nullable Node left, final @Nullable Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            right.update();
+            return right;
+        }
+    }
+
+    private static int compare(final long points, final @NonNull String uuid, final @NonNull Node node) {
+        return points != node.points ? Long.compare(node.points, points) : uuid.compareTo(node.uuid);
+    }
+
+    private static int size(final @Nullable Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node {
+
+        private final String uuid;
+        private final long points;
+        private final int priority;
+        private int size = 1;
+        private @Nullable Node left = null;
+        private @Nullable Node right = null;
+
+        private Node(final @NonNull String uuid, final long points, final int priority) {
+            this.uuid = uuid;
+            this.points = points;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = size(left) + size(right) + 1;
+        }
+
+        private @NonNull LeaderboardPlayer toPlayer() {
+            final var player = LeaderboardPlayer.of(uuid);
+            player.addPoints(points);
+            return player;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import mindustry.gen.Player;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A service decorator recording every grant in a {@link PointsHistory}. The recorded points are the ones actually
+ * applied, as returned by the grant, a penalty being limited to the points the player had.
+ */
+final class RecordingLeaderboardService implements LeaderboardService, PluginListener, LeaderboardMetrics.Source {
+
+    private final LeaderboardService service;
+    private final PointsHistory history;
+    private final Clock clock;
+
+    RecordingLeaderboardService(
+            final @NonNull LeaderboardService service,
+            final @NonNull PointsHistory history,
+            final @NonNull Clock clock) {
+        this.service = service;
+        this.history = history;
+        this.clock = clock;
+    }
+
+    RecordingLeaderboardService(final @NonNull LeaderboardService service, final @NonNull PointsHistory history) {
+        this(service, history, Clock.systemUTC());
+    }
+
+    @Override
+    public void onPluginInit() {
+        if (service instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        if (service instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        if (service instanceof LeaderboardMetrics.Source source) {
+            source.registerMetrics(metrics);
+        }
+    }
+
+    @Override
+    public long getPoints(final @NonNull String uuid) {
+        return service.getPoints(uuid);
+    }
+
+    @Override
+    public long getPoints(final @NonNull Player player) {
+        return service.getPoints(player);
+    }
+
+    @Override
+    public long grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points) {
+        final var applied = service.grantPoints(uuid, points);
+        record(uuid, points, applied);
+        return applied;
+    }
+
+    @Override
+    public long grantPoints(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
+        final var applied = service.grantPoints(player, points);
+        record(player.uuid(), points, applied);
+        return applied;
+    }
+
+    @Override
+    public @NonNull Map<String, Long> grantPoints(
+            final @NonNull Iterable<Player> players, final @NonNull LeaderboardPoints points) {
+        final var applied = service.grantPoints(players, points);
+        applied.forEach((uuid, value) -> record(uuid, points, value));
+        return applied;
+    }
+
+    private void record(final @NonNull String uuid, final @NonNull LeaderboardPoints points, final long applied) {
+        if (applied != 0L) {
+            history.record(new PointsHistory.Entry(uuid, points.getName(), applied, clock.instant()));
+        }
+    }
+
+    @Override
+    public long getRank(final @NonNull String uuid) {
+        return service.getRank(uuid);
+    }
+
+    @Override
+    public long getRank(final @NonNull Player player) {
+        return service.getRank(player);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getTopPlayers(final int limit) {
+        return service.getTopPlayers(limit);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getPlayersByRankRange(final long from, final long to) {
+        return service.getPlayersByRankRange(from, to);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getNeighbours(final @NonNull String uuid, final int radius) {
+        return service.getNeighbours(uuid, radius);
+    }
+
+    @Override
+    public void showLeaderboard(final @NonNull Player player) {
+        service.showLeaderboard(player);
+    }
+
+    @Override
+    public void refresh() {
+        service.refresh();
+    }
+
+    @Override
+    public @NonNull Optional<String> getCurrentSeason() {
+        return service.getCurrentSeason();
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardService> getSeason(final @NonNull String season) {
+        return service.getSeason(season);
+    }
+
+    @Override
+    public @NonNull LeaderboardService getAllTime() {
+        // Keep the decorator when the service has no seasons
+        final var allTime = service.getAllTime();
+        return allTime == service ? this : allTime;
+    }
+}
@@ -0,0 +1,679 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.util.Timer;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A leaderboard decorator replicating the points between servers without a shared database. The points of each player
+ * are a {@link PNCounter}, each server only changing its own counters, so the writes stay local and the servers
+ * converge whatever the order of the exchanges. The changed counters are sent to the peers over UDP periodically, and
+ * the other counters are sent less often, a slice at a time and paced, rotating through all the players, which repairs
+ * the lost datagrams. The received counters are merged into the local leaderboard, which still serves all the reads.
+ *
+ * <p>Each datagram is authenticated with an HMAC of a secret shared by the peers, the others are dropped. A replayed
+ * datagram cannot change anything, the merges only keep the highest values of each counter.
+ *
+ * <p>The points cannot go below 0 locally, but concurrent penalties on different servers can, the points are then
+ * clamped to 0 until enough points are granted. Deleting a player only resets its points on the other servers.
+ *
+ * <p>The counters are saved to a state file before each send of the changes and on exit, so a restarted node resumes
+ * from the counters its peers know.
+ */
+final class ReplicatedLeaderboard implements Leaderboard, PluginListener, LeaderboardMetrics.Source {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicatedLeaderboard.class);
+    private static final int MESSAGE_MAGIC = 0x4C425250; // LBRP
+    private static final int STATE_MAGIC = 0x4C425253; // LBRS
+    private static final int MESSAGE_VERSION = 2;
+    private static final int STATE_VERSION = 1;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_SIZE = 32;
+    // The delay between two datagrams of a full sync, so the peers and the network are not flooded
+    private static final long FULL_SYNC_PACING_MILLIS = 5L;
+    // Below the usual MTU, so the datagrams are never fragmented
+    private static final int MAX_DATAGRAM_SIZE = 1400;
+    private static final int MAX_RECEIVE_SIZE = 65535;
+
+    private final Leaderboard leaderboard;
+    private final Path file;
+    private final String node;
+    private final SecretKeySpec key;
+    private final int port;
+    private final List<InetSocketAddress> peers;
+    private final int interval;
+    private final int fullSyncInterval;
+    private final int fullSyncSize;
+    private final Executor executor;
+    private final Map<String, PNCounter> counters = new HashMap<>();
+    // The players changed since the last send, mapped to the time of their first change
+    private final Map<String, Long> dirty = new LinkedHashMap<>();
+    private final AtomicLong modifications = new AtomicLong();
+    private final Object saveLock = new Object();
+    private long savedModifications = 0L;
+    // The players of the running full sync rotation, guarded by syncLock
+    private final Object syncLock = new Object();
+    private List<String> rotation = List.of();
+    private int rotationPosition = 0;
+    private final List<Timer.Task> tasks = new ArrayList<>();
+    private @MonotonicNonNull DatagramSocket socket = null;
+    private List<InetSocketAddress> resolvedPeers = List.of();
+    private Set<InetAddress> peerAddresses = Set.of();
+    private volatile @Nullable LatencyHistogram lag = null;
+
+    ReplicatedLeaderboard(
+            final @NonNull Leaderboard leaderboard,
+            final @NonNull Path file,
+            final @NonNull String node,
+            final @NonNull String secret,
+            final int port,
+            final @NonNull List<InetSocketAddress> peers,
+            final int interval,
+            final int fullSyncInterval,
+            final int fullSyncSize,
+            final @NonNull Executor executor) {
+        if (node.isBlank()) {
+            throw new IllegalArgumentException("The replication node id cannot be blank");
+        }
+        if (secret.isBlank()) {
+            throw new IllegalArgumentException("The replication secret cannot be blank");
+        }
+        this.leaderboard = leaderboard;
+        this.file = file;
+        this.node = node;
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM);
+        this.port = port;
+        this.peers = List.copyOf(peers);
+        this.interval = interval;
+        this.fullSyncInterval = fullSyncInterval;
+        this.fullSyncSize = fullSyncSize;
+        this.executor = executor;
+    }
+
+    /**
+     * Parses a comma-separated list of {@code host:port} peers.
+     */
+    static @NonNull List<InetSocketAddress> parsePeers(final @NonNull String peers) {
+        final var result = new ArrayList<InetSocketAddress>();
+        for (final var peer : peers.split(",")) {
+            if (peer.isBlank()) {
+                continue;
+            }
+            final var separator = peer.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid replication peer, expected host:port: " + peer);
+            }
+            result.add(InetSocketAddress.createUnresolved(
+                    peer.substring(0, separator).trim(),
+                    Integer.parseInt(peer.substring(separator + 1).trim())));
+        }
+        return result;
+    }
+
+    @Override
+    public void onPluginInit() {
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+        synchronized (counters) {
+            counters.clear();
+            if (Files.exists(file)) {
+                load();
+            } else {
+                // First start, the existing points become the increments of this node
+                for (final var player : leaderboard.findAllPlayers()) {
+                    counters.computeIfAbsent(player.getUuid(), k -> new PNCounter())
+                            .add(node, player.getPoints());
+                }
+                modifications.incrementAndGet();
+            }
+        }
+
+        final var resolved = new ArrayList<InetSocketAddress>();
+        for (final var peer : peers) {
+            final var address = new InetSocketAddress(peer.getHostString(), peer.getPort());
+            if (address.isUnresolved()) {
+                logger.warn("Failed to resolve the replication peer {}", peer);
+            } else {
+                resolved.add(address);
+            }
+        }
+        resolvedPeers = List.copyOf(resolved);
+        // Only the datagrams of the peers are merged
+        final var addresses = new HashSet<InetAddress>();
+        resolved.forEach(address -> addresses.add(address.getAddress()));
+        peerAddresses = Set.copyOf(addresses);
+
+        try {
+            socket = new DatagramSocket(port);
+        } catch (final SocketException e) {
+            throw new RuntimeException("Failed to bind the replication socket on port " + port, e);
+        }
+        final var receiver = new Thread(this::receive, "leaderboard-replication");
+        receiver.setDaemon(true);
+        receiver.start();
+
+        if (interval > 0) {
+            // The state is saved before the changes are sent, so the peers never know more recent counters of this
+            // node than the ones it restarts with
+            tasks.add(Timer.schedule(
+                    () -> runAsync(() -> {
+                        save();
+                        sendChanges();
+                    }),
+                    interval,
+                    interval));
+        }
+        if (fullSyncInterval > 0) {
+            tasks.add(Timer.schedule(
+                    () -> runAsync(() -> {
+                        sendFullSync();
+                        save();
+                    }),
+                    fullSyncInterval,
+                    fullSyncInterval));
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        tasks.forEach(Timer.Task::cancel);
+        save();
+        sendChanges();
+        socket.close();
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("replication.pending", this::getPendingCount);
+        lag = metrics.histogram("replication.lag");
+        if (leaderboard instanceof LeaderboardMetrics.Source source) {
+            source.registerMetrics(metrics);
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (counters) {
+            return dirty.size();
+        }
+    }
+
+    private void runAsync(final @NonNull Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (final RejectedExecutionException e) {
+            logger.debug("Skipped leaderboard replication, the executor is shut down");
+        }
+    }
+
+    /**
+     * Sends the counters of this node changed since the last send to the peers.
+     */
+    public void sendChanges() {
+        final var entries = new ArrayList<Entry>();
+        final long oldest;
+        synchronized (counters) {
+            if (dirty.isEmpty()) {
+                return;
+            }
+            oldest = dirty.values().iterator().next();
+            for (final var uuid : dirty.keySet()) {
+                final var counter = counters.get(uuid);
+                if (counter != null) {
+                    final var local = counter.get(node);
+                    entries.add(new Entry(uuid, node, local[0], local[1]));
+                }
+            }
+            dirty.clear();
+        }
+        // The send time of the oldest change, so the receivers measure the lag from the write to the merge
+        send(oldest, entries, 0L);
+    }
+
+    /**
+     * Sends the counters of the next players of the rotation to the peers, including the ones of the other nodes, so a
+     * node that lost its recent state can recover it from its peers. Each call sends at most the full sync size of
+     * players, the rotation going through all the players known when it started over several calls.
+     */
+    public void sendFullSync() {
+        synchronized (syncLock) {
+            final var entries = new ArrayList<Entry>();
+            synchronized (counters) {
+                if (rotationPosition >= rotation.size()) {
+                    rotation = new ArrayList<>(counters.keySet());
+                    rotationPosition = 0;
+                }
+                final var end = Math.min(rotation.size(), rotationPosition + fullSyncSize);
+                for (; rotationPosition < end; rotationPosition++) {
+                    final var uuid = rotation.get(rotationPosition);
+                    final var counter = counters.get(uuid);
+                    if (counter == null) {
+                        continue;
+                    }
+                    for (final var owner : counter.getNodes()) {
+                        final var values = counter.get(owner);
+                        entries.add(new Entry(uuid, owner, values[0], values[1]));
+                    }
+                }
+            }
+            send(0L, entries, FULL_SYNC_PACING_MILLIS);
+        }
+    }
+
+    /**
+     * Sends the entries to the peers, split in datagrams.
+     *
+     * @param pacing the delay in milliseconds between two datagrams
+     */
+    private void send(final long timestamp, final @NonNull List<Entry> entries, final long pacing) {
+        final var socket = this.socket;
+        if (socket == null || socket.isClosed()) {
+            return;
+        }
+        final var mac = createMac();
+        try {
+            var buffer = new ByteArrayOutputStream(MAX_DATAGRAM_SIZE);
+            var output = createMessage(buffer, timestamp);
+            final var header = buffer.size();
+            for (final var entry : entries) {
+                // Worst case of the modified UTF-8 encoding, 3 bytes per character
+                if (buffer.size() + 3 * (entry.uuid().length() + entry.node().length()) + 20 + MAC_SIZE
+                                > MAX_DATAGRAM_SIZE
+                        && buffer.size() > header) {
+                    sendMessage(socket, buffer, mac);
+                    if (pacing > 0L) {
+                        Thread.sleep(pacing);
+                    }
+                    buffer = new ByteArrayOutputStream(MAX_DATAGRAM_SIZE);
+                    output = createMessage(buffer, timestamp);
+                }
+                output.writeUTF(entry.uuid());
+                output.writeUTF(entry.node());
+                output.writeLong(entry.increments());
+                output.writeLong(entry.decrements());
+            }
+            if (buffer.size() > header) {
+                sendMessage(socket, buffer, mac);
+            }
+        } catch (final IOException e) {
+            // Another full sync will repair it
+            logger.error("Failed to send the leaderboard changes to the peers", e);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private @NonNull DataOutputStream createMessage(final @NonNull ByteArrayOutputStream buffer, final long timestamp)
+            throws IOException {
+        final var output = new DataOutputStream(buffer);
+        output.writeInt(MESSAGE_MAGIC);
+        output.writeByte(MESSAGE_VERSION);
+        output.writeUTF(node);
+        output.writeLong(timestamp);
+        return output;
+    }
+
+    /**
+     * Sends the message to the peers, followed by its HMAC.
+     */
+    private void sendMessage(
+            final @NonNull DatagramSocket socket, final @NonNull ByteArrayOutputStream buffer, final @NonNull Mac mac)
+            throws IOException {
+        buffer.write(mac.doFinal(buffer.toByteArray()));
+        final var bytes = buffer.toByteArray();
+        for (final var peer : resolvedPeers) {
+            socket.send(new DatagramPacket(bytes, bytes.length, peer));
+        }
+    }
+
+    private void receive() {
+        final var socket = this.socket;
+        if (socket == null) {
+            return;
+        }
+        final var mac = createMac();
+        final var packet = new DatagramPacket(new byte[MAX_RECEIVE_SIZE], MAX_RECEIVE_SIZE);
+        while (!socket.isClosed()) {
+            try {
+                socket.receive(packet);
+            } catch (final IOException e) {
+                if (!socket.isClosed()) {
+                    logger.error("Failed to receive the leaderboard changes of the peers", e);
+                }
+                continue;
+            }
+            if (!peerAddresses.contains(packet.getAddress())) {
+                logger.debug("Ignored leaderboard changes from the unknown peer {}", packet.getAddress());
+                continue;
+            }
+            final var length = packet.getLength() - MAC_SIZE;
+            if (length <= 0 || !isAuthentic(mac, packet.getData(), length)) {
+                logger.debug("Ignored unauthenticated leaderboard changes from {}", packet.getSocketAddress());
+                continue;
+            }
+            try {
+                merge(packet.getData(), length);
+            } catch (final IOException | RuntimeException e) {
+                logger.error("Failed to merge the leaderboard changes of {}", packet.getSocketAddress(), e);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the message of the given length is followed by its HMAC, compared in constant time.
+     */
+    private static boolean isAuthentic(final @NonNull Mac mac, final byte @NonNull [] data, final int length) {
+        mac.update(data, 0, length);
+        return MessageDigest.isEqual(mac.doFinal(), Arrays.copyOfRange(data, length, length + MAC_SIZE));
+    }
+
+    private @NonNull Mac createMac() {
+        try {
+            final var mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException("The replication requires " + MAC_ALGORITHM, e);
+        }
+    }
+
+    private void merge(final byte @NonNull [] data, final int length) throws IOException {
+        final var input = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+        if (input.readInt() != MESSAGE_MAGIC || input.readByte() != MESSAGE_VERSION) {
+            throw new IOException("Not a leaderboard replication message");
+        }
+        input.readUTF(); // The sender, the entries carry the owner of each counter
+        final var timestamp = input.readLong();
+        final var entries = new ArrayList<Entry>();
+        while (input.available() > 0) {
+            entries.add(new Entry(input.readUTF(), input.readUTF(), input.readLong(), input.readLong()));
+        }
+
+        synchronized (counters) {
+            final var changed = new ArrayList<LeaderboardPlayer>();
+            for (final var entry : entries) {
+                final var counter = counters.computeIfAbsent(entry.uuid(), k -> new PNCounter());
+                if (counter.merge(entry.node(), entry.increments(), entry.decrements())) {
+                    changed.add(withPoints(entry.uuid(), getPoints(counter)));
+                }
+            }
+            if (!changed.isEmpty()) {
+                modifications.incrementAndGet();
+                leaderboard.savePlayers(changed);
+            }
+        }
+
+        final var histogram = lag;
+        if (timestamp > 0L && histogram != null) {
+            histogram.record(Math.max(0L, System.currentTimeMillis() - timestamp) * 1_000_000L);
+        }
+    }
+
+    /**
+     * Saves the counters to the state file, if they changed since the last save.
+     */
+    public void save() {
+        synchronized (saveLock) {
+            final var current = modifications.get();
+            if (current == savedModifications && Files.exists(file)) {
+                return;
+            }
+            final var temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                try (final var output =
+                        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                    output.writeInt(STATE_MAGIC);
+                    output.writeInt(STATE_VERSION);
+                    synchronized (counters) {
+                        output.writeInt(counters.size());
+                        for (final var entry : counters.entrySet()) {
+                            output.writeUTF(entry.getKey());
+                            output.writeInt(entry.getValue().size());
+                            for (final var owner : entry.getValue().getNodes()) {
+                                final var values = entry.getValue().get(owner);
+                                output.writeUTF(owner);
+                                output.writeLong(values[0]);
+                                output.writeLong(values[1]);
+                            }
+                        }
+                    }
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                savedModifications = current;
+            } catch (final IOException e) {
+                logger.error("Failed to save the leaderboard replication state {}", file, e);
+            }
+        }
+    }
+
+    private void load() {
+        try (final var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != STATE_MAGIC) {
+                throw new IOException("Not a leaderboard replication state");
+            }
+            final var version = input.readInt();
+            if (version != STATE_VERSION) {
+                throw new IOException("Unsupported replication state version " + version);
+            }
+            final var count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                final var counter = new PNCounter();
+                counters.put(input.readUTF(), counter);
+                final var owners = input.readInt();
+                for (int j = 0; j < owners; j++) {
+                    counter.merge(input.readUTF(), input.readLong(), input.readLong());
+                }
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException("Failed to load the leaderboard replication state " + file, e);
+        }
+        logger.info("Loaded the replicated points of {} leaderboard players from {}", counters.size(), file);
+    }
+
+    /**
+     * Sets the points of the player by adding the difference with its current points to the counters of this node,
+     * must hold the lock.
+     *
+     * @return the new points of the player
+     */
+    private long setPoints(final @NonNull String uuid, final long points) {
+        final var counter = counters.get(uuid);
+        return addPointsLocked(uuid, points - (counter == null ? 0L : getPoints(counter)));
+    }
+
+    /**
+     * Adds the delta to the counters of this node as is, so the penalties of the peers are kept even while they take
+     * the points below 0. A negative delta only removes the current points of the player, must hold the lock.
+     *
+     * @return the new points of the player
+     */
+    private long addPointsLocked(final @NonNull String uuid, final long delta) {
+        final var counter = counters.computeIfAbsent(uuid, k -> new PNCounter());
+        final var applied = Math.max(delta, -getPoints(counter));
+        if (applied != 0L) {
+            counter.add(node, applied);
+            dirty.putIfAbsent(uuid, System.currentTimeMillis());
+            modifications.incrementAndGet();
+        }
+        return getPoints(counter);
+    }
+
+    /**
+     * Returns the points of the counter, clamped to 0 when the penalties of the nodes exceed their grants.
+     */
+    private static long getPoints(final @NonNull PNCounter counter) {
+        return Math.max(0L, counter.getValue());
+    }
+
+    @Override
+    public void savePlayer(final @NonNull LeaderboardPlayer player) {
+        synchronized (counters) {
+            final var points = setPoints(player.getUuid(), player.getPoints());
+            leaderboard.savePlayer(withPoints(player.getUuid(), points));
+        }
+    }
+
+    @Override
+    public void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        synchronized (counters) {
+            final var saved = new ArrayList<LeaderboardPlayer>(players.size());
+            players.forEach(player ->
+                    saved.add(withPoints(player.getUuid(), setPoints(player.getUuid(), player.getPoints()))));
+            leaderboard.savePlayers(saved);
+        }
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        synchronized (counters) {
+            final var total = addPointsLocked(uuid, delta);
+            leaderboard.savePlayer(withPoints(uuid, total));
+            return total;
+        }
+    }
+
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        final var totals = new HashMap<String, Long>();
+        synchronized (counters) {
+            final var players = new ArrayList<LeaderboardPlayer>(deltas.size());
+            deltas.forEach((uuid, delta) -> {
+                final var total = addPointsLocked(uuid, delta);
+                totals.put(uuid, total);
+                players.add(withPoints(uuid, total));
+            });
+            leaderboard.savePlayers(players);
+        }
+        return totals;
+    }
+
+    @Override
+    public boolean existsPlayerByUuid(final @NonNull String uuid) {
+        return leaderboard.existsPlayerByUuid(uuid);
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid) {
+        return leaderboard.findPlayerByUuid(uuid);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        return leaderboard.findPlayersByUuids(uuids);
+    }
+
+    @Override
+    public @NonNull Iterable<LeaderboardPlayer> findAllPlayers() {
+        return leaderboard.findAllPlayers();
+    }
+
+    @Override
+    public void forEachPlayer(final @NonNull Consumer<LeaderboardPlayer> consumer) {
+        leaderboard.forEachPlayer(consumer);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        return leaderboard.findTopPlayers(limit);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        return leaderboard.findPlayersByRankRange(from, to);
+    }
+
+    @Override
+    public long countPlayers() {
+        return leaderboard.countPlayers();
+    }
+
+    @Override
+    public void deletePlayerByUuid(final @NonNull String uuid) {
+        synchronized (counters) {
+            setPoints(uuid, 0L);
+            leaderboard.deletePlayerByUuid(uuid);
+        }
+    }
+
+    @Override
+    public void deleteAllPlayers() {
+        synchronized (counters) {
+            List.copyOf(counters.keySet()).forEach(uuid -> setPoints(uuid, 0L));
+            leaderboard.deleteAllPlayers();
+        }
+    }
+
+    private static @NonNull LeaderboardPlayer withPoints(final @NonNull String uuid, final long points) {
+        final var player = LeaderboardPlayer.of(uuid);
+        player.addPoints(points);
+        return player;
+    }
+
+    private record Entry(@NonNull String uuid, @NonNull String node, long increments, long decrements) {}
+}
@@ -28,21 +28,24 @@ package com.xpdustry.leaderboard;
 import fr.xpdustry.distributor.api.plugin.PluginListener;
 import fr.xpdustry.distributor.core.database.SQLiteConnectionFactory;
 import fr.xpdustry.distributor.core.dependency.DependencyManager;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import org.aeonbits.owner.ConfigFactory;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.statement.StatementContext;
 import org.slf4j.Logger;
@@ -52,15 +55,34 @@ final class SQLiteLeaderboard implements Leaderboard, PluginListener {
 
     private static final Logger logger = LoggerFactory.getLogger(SQLiteLeaderboard.class);
     private static final int PAGE_SIZE = 500;
+    private static final String UPSERT_PLAYER =
+            "INSERT INTO player(uuid, points) VALUES (:uuid, :points) ON CONFLICT(uuid) DO UPDATE SET points = :points;";
+    private static final String ADD_POINTS =
+            "INSERT INTO player(uuid, points) VALUES (:uuid, MAX(0, :delta)) ON CONFLICT(uuid) DO UPDATE SET points = MAX(0, points + :delta) RETURNING points;";
+    // Well below the default limit of 32766 variables per statement of SQLite
+    private static final int IN_CHUNK_SIZE = 500;
+
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    private static final List<SQLiteMigrator.Migration> MIGRATIONS = List.of(
+            SQLiteMigrator.script(1, "V1__create_player.sql"),
+            new SQLiteMigrator.Migration(2, "player without rowid", SQLiteLeaderboard::migratePlayerWithoutRowid));
 
     private final Path file;
     private final DependencyManager dependencies;
+    private final LeaderboardConfig config;
     private @MonotonicNonNull SQLiteConnectionFactory factory = null;
-    private @MonotonicNonNull Jdbi jdbi = null;
+    private @MonotonicNonNull Handle handle = null;
 
-    SQLiteLeaderboard(final Path file, final DependencyManager dependencies) {
+    SQLiteLeaderboard(final Path file, final DependencyManager dependencies, final LeaderboardConfig config) {
         this.file = file;
         this.dependencies = dependencies;
+        this.config = config;
+    }
+
+    SQLiteLeaderboard(final Path file, final DependencyManager dependencies) {
+        this(file, dependencies, ConfigFactory.create(LeaderboardConfig.class));
     }
 
     @Override
@@ -69,19 +91,46 @@ final class SQLiteLeaderboard implements Leaderboard, PluginListener {
                 "", file, dependencies.createClassLoaderFor(SQLiteConnectionFactory.SQLITE_DRIVER));
         factory.start();
 
-        jdbi = Jdbi.create(factory::getConnection);
+        // A single long-lived connection, SQLite only allows one writer at a time anyway
+        handle = Jdbi.create(factory::getConnection).open();
+        handle.setStatementBuilder(new CachingStatementBuilder(STATEMENT_CACHE_SIZE));
+        applyPragmas();
 
-        try (final var reader = new BufferedReader(new InputStreamReader(
-                Objects.requireNonNull(this.getClass().getResourceAsStream("/com/xpdustry/leaderboard/schema.sql")),
-                StandardCharsets.UTF_8))) {
-            jdbi.withHandle(handle -> handle.execute(reader.lines().collect(Collectors.joining("\n"))));
-        } catch (final IOException e) {
-            throw new RuntimeException("Failed to run schema script", e);
+        final var applied = withHandle(new SQLiteMigrator(MIGRATIONS)::migrate);
+        if (applied > 0) {
+            // Reclaims the pages freed by the rewritten tables, it cannot run in a transaction
+            withHandle(handle -> handle.execute("VACUUM;"));
         }
     }
 
+    private void applyPragmas() {
+        final var pragmas = List.of(
+                "journal_mode = " + requireKeyword(config.sqliteJournalMode()),
+                "synchronous = " + requireKeyword(config.sqliteSynchronous()),
+                "cache_size = " + config.sqliteCacheSize(),
+                "mmap_size = " + config.sqliteMmapSize(),
+                "temp_store = " + requireKeyword(config.sqliteTempStore()));
+        try (final var statement = handle.getConnection().createStatement()) {
+            for (final var pragma : pragmas) {
+                statement.execute("PRAGMA " + pragma + ";");
+            }
+        } catch (final SQLException e) {
+            throw new RuntimeException("Failed to apply the SQLite pragmas", e);
+        }
+    }
+
+    private static @NonNull String requireKeyword(final @NonNull String value) {
+        if (!value.matches("[A-Za-z0-9_]+")) {
+            throw new IllegalArgumentException("Invalid SQLite pragma value: " + value);
+        }
+        return value;
+    }
+
     @Override
     public void onPluginExit() {
+        synchronized (this) {
+            handle.close();
+        }
         try {
             factory.close();
         } catch (final SQLException e) {
@@ -89,19 +138,71 @@ final class SQLiteLeaderboard implements Leaderboard, PluginListener {
         }
     }
 
+    private synchronized <R> R withHandle(final @NonNull HandleCallback<R, RuntimeException> callback) {
+        return callback.withHandle(handle);
+    }
+
+    private synchronized <R> R inTransaction(final @NonNull HandleCallback<R, RuntimeException> callback) {
+        return handle.inTransaction(callback);
+    }
+
     @Override
     public void savePlayer(final @NonNull LeaderboardPlayer player) {
-        jdbi.withHandle(handle -> handle.createUpdate(
-                        "INSERT INTO player(uuid, points) VALUES (:uuid, :points) ON CONFLICT(uuid) DO UPDATE SET points = :points;")
-                .bind("uuid", player.getUuid())
+        withHandle(handle -> handle.createUpdate(UPSERT_PLAYER)
+                .bind("uuid", toKey(player.getUuid()))
                 .bind("points", player.getPoints())
                 .execute());
     }
 
+    @Override
+    public void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        if (players.isEmpty()) {
+            return;
+        }
+        inTransaction(handle -> {
+            final var batch = handle.prepareBatch(UPSERT_PLAYER);
+            for (final var player : players) {
+                batch.bind("uuid", toKey(player.getUuid()))
+                        .bind("points", player.getPoints())
+                        .add();
+            }
+            return batch.execute();
+        });
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        return withHandle(handle -> addPoints(handle, uuid, delta));
+    }
+
+    /**
+     * Runs the upserts of all the players in a single transaction. SQLite does not support {@code RETURNING} in
+     * batches, but the statement is prepared once and the transaction is only synced once.
+     */
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return Map.of();
+        }
+        return inTransaction(handle -> {
+            final var totals = new HashMap<String, Long>();
+            deltas.forEach((uuid, delta) -> totals.put(uuid, addPoints(handle, uuid, delta)));
+            return totals;
+        });
+    }
+
+    private static long addPoints(final @NonNull Handle handle, final @NonNull String uuid, final long delta) {
+        return handle.createQuery(ADD_POINTS)
+                .bind("uuid", toKey(uuid))
+                .bind("delta", delta)
+                .mapTo(Long.class)
+                .one();
+    }
+
     @Override
     public boolean existsPlayerByUuid(final @NonNull String uuid) {
-        return jdbi.withHandle(handle -> handle.select("SELECT COUNT(*) FROM player WHERE player.uuid = ?;")
-                        .bind(0, uuid)
+        return withHandle(handle -> handle.select("SELECT COUNT(*) FROM player WHERE player.uuid = ?;")
+                        .bind(0, toKey(uuid))
                         .mapTo(Integer.class)
                         .first()
                 > 0);
@@ -109,74 +210,208 @@ final class SQLiteLeaderboard implements Leaderboard, PluginListener {
 
     @Override
     public @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid) {
-        return jdbi.withHandle(handle -> handle.select("SELECT * FROM player WHERE uuid = ?")
-                .bind(0, uuid)
-                .map(this::mapPlayer)
+        return withHandle(handle -> handle.select("SELECT * FROM player WHERE uuid = ?")
+                .bind(0, toKey(uuid))
+                .map(SQLiteLeaderboard::mapPlayer)
                 .findFirst());
     }
 
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        if (uuids.isEmpty()) {
+            return List.of();
+        }
+        final var keys = uuids.stream().map(SQLiteLeaderboard::toKey).toList();
+        return withHandle(handle -> {
+            final var players = new ArrayList<LeaderboardPlayer>(keys.size());
+            for (int i = 0; i < keys.size(); i += IN_CHUNK_SIZE) {
+                players.addAll(handle.createQuery("SELECT * FROM player WHERE uuid IN (<uuids>);")
+                        .bindList("uuids", keys.subList(i, Math.min(i + IN_CHUNK_SIZE, keys.size())))
+                        .map(SQLiteLeaderboard::mapPlayer)
+                        .list());
+            }
+            return players;
+        });
+    }
+
     @Override
     public @NonNull Iterable<LeaderboardPlayer> findAllPlayers() {
-        return new Iterable<>() {
-            List<LeaderboardPlayer> players = findAllPlayersPaginated(0);
-            int page = 0;
-            int index = 0;
+        return () -> new Iterator<>() {
+
+            private List<LeaderboardPlayer> page = findPlayersAfter(null);
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < page.size();
+            }
 
             @Override
-            public @NonNull Iterator<LeaderboardPlayer> iterator() {
-                return new Iterator<>() {
-
-                    @Override
-                    public boolean hasNext() {
-                        return index < players.size();
-                    }
-
-                    @Override
-                    public LeaderboardPlayer next() {
-                        if (index >= players.size()) {
-                            throw new NoSuchElementException();
-                        }
-                        final var element = players.get(index++);
-                        if (index == players.size()) {
-                            players = findAllPlayersPaginated(++page);
-                            index = 0;
-                        }
-                        return element;
-                    }
-                };
+            public LeaderboardPlayer next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final var element = page.get(index++);
+                if (index == page.size() && page.size() == PAGE_SIZE) {
+                    page = findPlayersAfter(element);
+                    index = 0;
+                }
+                return element;
             }
         };
     }
 
-    private List<LeaderboardPlayer> findAllPlayersPaginated(final int page) {
-        return jdbi.withHandle(handle -> handle.select("SELECT * FROM player ORDER BY points DESC LIMIT ? OFFSET ?;")
-                .bind(0, PAGE_SIZE)
-                .bind(1, PAGE_SIZE * page)
-                .map(this::mapPlayer)
+    /**
+     * Reads the players by pages of primary keys, each page in its own short read, so the writes can run between the
+     * pages instead of waiting for the whole export.
+     */
+    @Override
+    public void forEachPlayer(final @NonNull Consumer<LeaderboardPlayer> consumer) {
+        @Nullable Object last = null;
+        while (true) {
+            final var page = findPlayersByKeyAfter(last);
+            page.forEach(consumer);
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            last = toKey(page.get(page.size() - 1).getUuid());
+        }
+    }
+
+    /**
+     * Returns the next page of players after the given key, in the order of the keys. The text keys sort before the
+     * blob ones in SQLite, so both kinds of uuids are paged through.
+     */
+    private @NonNull List<LeaderboardPlayer> findPlayersByKeyAfter(final @Nullable Object last) {
+        return withHandle(handle -> {
+            final var query = last == null
+                    ? handle.createQuery("SELECT * FROM player ORDER BY uuid ASC LIMIT :limit;")
+                    : handle.createQuery("SELECT * FROM player WHERE uuid > :uuid ORDER BY uuid ASC LIMIT :limit;")
+                            .bind("uuid", last);
+            return query.bind("limit", PAGE_SIZE)
+                    .map(SQLiteLeaderboard::mapPlayer)
+                    .collectIntoList();
+        });
+    }
+
+    /**
+     * Returns the next page of players ranked after the given one, seeking through the points index
+     * instead of skipping the previous pages with an offset.
+     */
+    private List<LeaderboardPlayer> findPlayersAfter(final @Nullable LeaderboardPlayer last) {
+        if (last == null) {
+            return findTopPlayers(PAGE_SIZE);
+        }
+        return withHandle(handle -> handle.createQuery(
+                        "SELECT * FROM player WHERE points <= :points AND (points < :points OR uuid > :uuid) ORDER BY points DESC, uuid ASC LIMIT :limit;")
+                .bind("points", last.getPoints())
+                .bind("uuid", toKey(last.getUuid()))
+                .bind("limit", PAGE_SIZE)
+                .map(SQLiteLeaderboard::mapPlayer)
+                .collectIntoList());
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        return withHandle(handle -> handle.select("SELECT * FROM player ORDER BY points DESC, uuid ASC LIMIT ?;")
+                .bind(0, limit)
+                .map(SQLiteLeaderboard::mapPlayer)
+                .collectIntoList());
+    }
+
+    /**
+     * SQLite has no order statistics, but the offset is skipped through the points index, which covers the query.
+     */
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        if (from < 1L) {
+            throw new IllegalArgumentException("The ranks start at 1, got " + from);
+        }
+        if (to < from) {
+            return List.of();
+        }
+        return withHandle(handle -> handle.createQuery(
+                        "SELECT * FROM player ORDER BY points DESC, uuid ASC LIMIT :limit OFFSET :offset;")
+                .bind("limit", to - from + 1)
+                .bind("offset", from - 1)
+                .map(SQLiteLeaderboard::mapPlayer)
                 .collectIntoList());
     }
 
     @Override
     public long countPlayers() {
-        return jdbi.withHandle(handle ->
+        return withHandle(handle ->
                 handle.select("SELECT COUNT(*) FROM player;").mapTo(Long.class).first());
     }
 
     @Override
     public void deletePlayerByUuid(final @NonNull String uuid) {
-        jdbi.withHandle(handle -> handle.createUpdate("DELETE FROM player WHERE uuid = ?")
-                .bind(0, uuid)
+        withHandle(handle -> handle.createUpdate("DELETE FROM player WHERE uuid = ?")
+                .bind(0, toKey(uuid))
                 .execute());
     }
 
     @Override
     public void deleteAllPlayers() {
-        jdbi.withHandle(
+        withHandle(
                 handle -> handle.createUpdate("DELETE FROM player WHERE TRUE").execute());
     }
 
-    private LeaderboardPlayer mapPlayer(final ResultSet set, StatementContext ctx) throws SQLException {
-        final var player = LeaderboardPlayer.of(set.getString("uuid"));
+    /**
+     * Moves the players to a {@code WITHOUT ROWID} table keyed by the 8 bytes of {@link PlayerUuids#toBytes(String)}
+     * for the Mindustry uuids, the other uuids being kept as text. The conversion is done here since SQLite cannot
+     * decode base64.
+     */
+    private static void migratePlayerWithoutRowid(final @NonNull Handle handle) {
+        handle.execute(
+                "CREATE TABLE player_v2 (uuid BLOB NOT NULL PRIMARY KEY, points BIGINT NOT NULL DEFAULT 0) WITHOUT ROWID;");
+        final var players = new ArrayList<LeaderboardPlayer>(MIGRATION_BATCH_SIZE);
+        for (final var player :
+                handle.createQuery("SELECT uuid, points FROM player;").map(SQLiteLeaderboard::mapPlayer)) {
+            players.add(player);
+            if (players.size() == MIGRATION_BATCH_SIZE) {
+                insertPlayers(handle, "player_v2", players);
+                players.clear();
+            }
+        }
+        insertPlayers(handle, "player_v2", players);
+        handle.execute("DROP TABLE player;");
+        handle.execute("ALTER TABLE player_v2 RENAME TO player;");
+        handle.execute("CREATE INDEX player_points_idx ON player (points DESC, uuid ASC);");
+    }
+
+    private static void insertPlayers(
+            final @NonNull Handle handle, final @NonNull String table, final @NonNull List<LeaderboardPlayer> players) {
+        if (players.isEmpty()) {
+            return;
+        }
+        final var batch = handle.prepareBatch("INSERT INTO " + table + "(uuid, points) VALUES (:uuid, :points);");
+        for (final var player : players) {
+            batch.bind("uuid", toKey(player.getUuid()))
+                    .bind("points", player.getPoints())
+                    .add();
+        }
+        batch.execute();
+    }
+
+    /**
+     * Returns the stored form of the uuid, a blob for the Mindustry uuids and the text itself otherwise.
+     */
+    private static @NonNull Object toKey(final @NonNull String uuid) {
+        return PlayerUuids.isCanonical(uuid) ? PlayerUuids.toBytes(uuid) : uuid;
+    }
+
+    private static @NonNull String fromKey(final @Nullable Object key) throws SQLException {
+        if (key instanceof byte[] bytes) {
+            return PlayerUuids.fromBytes(bytes);
+        } else if (key instanceof String uuid) {
+            return uuid;
+        }
+        throw new SQLException("Unexpected player uuid: " + key);
+    }
+
+    private static LeaderboardPlayer mapPlayer(final ResultSet set, StatementContext ctx) throws SQLException {
+        final var player = LeaderboardPlayer.of(fromKey(set.getObject("uuid")));
         player.addPoints(set.getLong("points"));
         return player;
     }
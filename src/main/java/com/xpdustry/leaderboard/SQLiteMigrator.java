@@ -0,0 +1,120 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies the missing migrations of a SQLite database in order. The version of the schema is tracked with
+ * {@code PRAGMA user_version}, which is updated in the same transaction as each migration, so a failed migration
+ * leaves the database untouched.
+ */
+final class SQLiteMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SQLiteMigrator.class);
+    private static final String MIGRATIONS_PATH = "/com/xpdustry/leaderboard/migrations/";
+
+    private final List<Migration> migrations;
+
+    SQLiteMigrator(final @NonNull List<Migration> migrations) {
+        this.migrations = migrations.stream()
+                .sorted(Comparator.comparingInt(Migration::version))
+                .toList();
+    }
+
+    /**
+     * Creates a migration running a script from the migrations resource directory.
+     */
+    static @NonNull Migration script(final int version, final @NonNull String name) {
+        return new Migration(version, name, handle -> handle.createScript(readScript(name))
+                .execute());
+    }
+
+    /**
+     * Applies the missing migrations.
+     *
+     * @return the number of applied migrations
+     * @throws IllegalStateException if the database was created by a newer version of the plugin
+     */
+    int migrate(final @NonNull Handle handle) {
+        final var current = getVersion(handle);
+        final var latest = migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+        if (current > latest) {
+            throw new IllegalStateException("The database schema version " + current
+                    + " is newer than the latest supported version " + latest);
+        }
+        var applied = 0;
+        for (final var migration : migrations) {
+            if (migration.version() <= current) {
+                continue;
+            }
+            logger.info("Migrating the leaderboard database to version {}: {}", migration.version(), migration.name());
+            handle.useTransaction(transaction -> {
+                migration.action().useHandle(transaction);
+                // The pragma does not accept bound parameters, the version is an int so it is safe to inline
+                transaction.execute("PRAGMA user_version = " + migration.version() + ";");
+            });
+            applied++;
+        }
+        return applied;
+    }
+
+    static int getVersion(final @NonNull Handle handle) {
+        return handle.createQuery("PRAGMA user_version;").mapTo(Integer.class).one();
+    }
+
+    private static @NonNull String readScript(final @NonNull String name) {
+        try (final var reader = new BufferedReader(new InputStreamReader(
+                Objects.requireNonNull(
+                        SQLiteMigrator.class.getResourceAsStream(MIGRATIONS_PATH + name), "Missing script " + name),
+                StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        } catch (final IOException e) {
+            throw new RuntimeException("Failed to read the migration script " + name, e);
+        }
+    }
+
+    /**
+     * A migration of the database schema.
+     *
+     * @param version the schema version after the migration
+     * @param name    the name of the migration, for the logs
+     * @param action  the migration, run in a transaction
+     */
+    record Migration(int version, @NonNull String name, @NonNull HandleConsumer<RuntimeException> action) {}
+}
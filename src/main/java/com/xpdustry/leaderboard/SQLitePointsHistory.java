@@ -0,0 +1,296 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import fr.xpdustry.distributor.core.database.SQLiteConnectionFactory;
+import fr.xpdustry.distributor.core.dependency.DependencyManager;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.jdbi.v3.core.Handle;
+import org.jdbi.v3.core.HandleCallback;
+import org.jdbi.v3.core.Jdbi;
+import org.jdbi.v3.core.statement.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A points history stored in its own SQLite database. The grants are queued in a bounded queue and written by a
+ * single thread in large transactions. Each transaction appends the raw grants and updates the rollups, the totals
+ * per player and points name, and the hourly points per player and for all the players, so the breakdowns only read
+ * the rollups.
+ */
+final class SQLitePointsHistory implements PointsHistory, PluginListener, LeaderboardMetrics.Source {
+
+    private static final Logger logger = LoggerFactory.getLogger(SQLitePointsHistory.class);
+    private static final long HOUR_SECONDS = 3600L;
+    private static final List<SQLiteMigrator.Migration> MIGRATIONS =
+            List.of(SQLiteMigrator.script(1, "history/V1__create_history.sql"));
+
+    private final Path file;
+    private final DependencyManager dependencies;
+    private final BlockingQueue<Entry> queue;
+    private final int batchSize;
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = false;
+    private @MonotonicNonNull SQLiteConnectionFactory factory = null;
+    private @MonotonicNonNull Handle handle = null;
+    private @MonotonicNonNull Thread writer = null;
+    private volatile @Nullable LatencyHistogram writes = null;
+
+    SQLitePointsHistory(
+            final @NonNull Path file,
+            final @NonNull DependencyManager dependencies,
+            final int queueSize,
+            final int batchSize) {
+        this.file = file;
+        this.dependencies = dependencies;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void onPluginInit() {
+        factory = new SQLiteConnectionFactory(
+                "", file, dependencies.createClassLoaderFor(SQLiteConnectionFactory.SQLITE_DRIVER));
+        factory.start();
+        // The writer and the queries share a single connection, the queries only read the small rollup tables
+        handle = Jdbi.create(factory::getConnection).open();
+        withHandle(handle -> {
+            handle.execute("PRAGMA journal_mode = WAL;");
+            handle.execute("PRAGMA synchronous = NORMAL;");
+            return new SQLiteMigrator(MIGRATIONS).migrate(handle);
+        });
+
+        running = true;
+        writer = new Thread(this::drain, "leaderboard-history");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void onPluginExit() {
+        running = false;
+        if (writer != null) {
+            try {
+                // The writer empties the queue before stopping
+                writer.join(TimeUnit.SECONDS.toMillis(10L));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            handle.close();
+        }
+        try {
+            factory.close();
+        } catch (final SQLException e) {
+            logger.error("Failed to close the points history database", e);
+        }
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("history.queue", queue::size);
+        metrics.gauge("history.dropped", dropped::sum);
+        writes = metrics.histogram("history.write");
+    }
+
+    @Override
+    public boolean record(final @NonNull Entry entry) {
+        if (queue.offer(entry)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private void drain() {
+        final var batch = new ArrayList<Entry>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                final var first = queue.poll(1L, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            final var start = System.nanoTime();
+            try {
+                write(batch);
+                final var histogram = writes;
+                if (histogram != null) {
+                    histogram.record(System.nanoTime() - start);
+                }
+            } catch (final RuntimeException e) {
+                logger.error("Failed to write {} grants to the points history", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Appends the grants and applies them to the rollups, pre-aggregated so each rollup row is only updated once.
+     */
+    private void write(final @NonNull List<Entry> entries) {
+        final var totals = new HashMap<List<Object>, long[]>();
+        final var playerHourly = new HashMap<List<Object>, long[]>();
+        final var hourly = new HashMap<List<Object>, long[]>();
+        for (final var entry : entries) {
+            final var hour = entry.timestamp().getEpochSecond() / HOUR_SECONDS;
+            accumulate(totals, List.of(entry.uuid(), entry.name()), entry.delta());
+            accumulate(playerHourly, List.of(entry.uuid(), hour, entry.name()), entry.delta());
+            accumulate(hourly, List.of(hour, entry.name()), entry.delta());
+        }
+
+        inTransaction(handle -> {
+            final var insert = handle.prepareBatch(
+                    "INSERT INTO history(uuid, name, delta, timestamp) VALUES (:uuid, :name, :delta, :timestamp);");
+            for (final var entry : entries) {
+                insert.bind("uuid", entry.uuid())
+                        .bind("name", entry.name())
+                        .bind("delta", entry.delta())
+                        .bind("timestamp", entry.timestamp().toEpochMilli())
+                        .add();
+            }
+            insert.execute();
+
+            final var total = handle.prepareBatch(
+                    "INSERT INTO history_total(uuid, name, points, grants) VALUES (:uuid, :name, :points, :grants) ON CONFLICT(uuid, name) DO UPDATE SET points = points + :points, grants = grants + :grants;");
+            totals.forEach((key, value) -> total.bind("uuid", key.get(0))
+                    .bind("name", key.get(1))
+                    .bind("points", value[0])
+                    .bind("grants", value[1])
+                    .add());
+            total.execute();
+
+            final var player = handle.prepareBatch(
+                    "INSERT INTO history_player_hourly(uuid, hour, name, points) VALUES (:uuid, :hour, :name, :points) ON CONFLICT(uuid, hour, name) DO UPDATE SET points = points + :points;");
+            playerHourly.forEach((key, value) -> player.bind("uuid", key.get(0))
+                    .bind("hour", key.get(1))
+                    .bind("name", key.get(2))
+                    .bind("points", value[0])
+                    .add());
+            player.execute();
+
+            final var global = handle.prepareBatch(
+                    "INSERT INTO history_hourly(hour, name, points, grants) VALUES (:hour, :name, :points, :grants) ON CONFLICT(hour, name) DO UPDATE SET points = points + :points, grants = grants + :grants;");
+            hourly.forEach((key, value) -> global.bind("hour", key.get(0))
+                    .bind("name", key.get(1))
+                    .bind("points", value[0])
+                    .bind("grants", value[1])
+                    .add());
+            global.execute();
+            return null;
+        });
+    }
+
+    private static void accumulate(
+            final @NonNull Map<List<Object>, long[]> rollup, final @NonNull List<Object> key, final long delta) {
+        final var value = rollup.computeIfAbsent(key, k -> new long[2]);
+        value[0] += delta;
+        value[1]++;
+    }
+
+    @Override
+    public @NonNull Map<String, Long> getBreakdown(final @NonNull String uuid) {
+        return withHandle(handle -> toBreakdown(handle.createQuery(
+                        "SELECT name, points FROM history_total WHERE uuid = :uuid ORDER BY points DESC;")
+                .bind("uuid", uuid)));
+    }
+
+    @Override
+    public @NonNull Map<String, Long> getBreakdown(
+            final @NonNull String uuid, final @NonNull Instant from, final @NonNull Instant to) {
+        return withHandle(handle -> toBreakdown(handle.createQuery(
+                        "SELECT name, SUM(points) AS points FROM history_player_hourly WHERE uuid = :uuid AND hour >= :from AND hour < :to GROUP BY name ORDER BY points DESC;")
+                .bind("uuid", uuid)
+                .bind("from", toHour(from, false))
+                .bind("to", toHour(to, true))));
+    }
+
+    @Override
+    public @NonNull Map<String, Long> getBreakdown(final @NonNull Instant from, final @NonNull Instant to) {
+        return withHandle(handle -> toBreakdown(handle.createQuery(
+                        "SELECT name, SUM(points) AS points FROM history_hourly WHERE hour >= :from AND hour < :to GROUP BY name ORDER BY points DESC;")
+                .bind("from", toHour(from, false))
+                .bind("to", toHour(to, true))));
+    }
+
+    @Override
+    public @NonNull List<Entry> getEntries(final @NonNull String uuid, final int limit) {
+        return withHandle(handle -> handle.createQuery(
+                        "SELECT uuid, name, delta, timestamp FROM history WHERE uuid = :uuid ORDER BY timestamp DESC, id DESC LIMIT :limit;")
+                .bind("uuid", uuid)
+                .bind("limit", limit)
+                .map((set, ctx) -> new Entry(
+                        set.getString("uuid"),
+                        set.getString("name"),
+                        set.getLong("delta"),
+                        Instant.ofEpochMilli(set.getLong("timestamp"))))
+                .list());
+    }
+
+    private static @NonNull Map<String, Long> toBreakdown(final @NonNull Query query) {
+        final var breakdown = new LinkedHashMap<String, Long>();
+        query.map((set, ctx) -> Map.entry(set.getString("name"), set.getLong("points")))
+                .forEach(entry -> breakdown.put(entry.getKey(), entry.getValue()));
+        return breakdown;
+    }
+
+    /**
+     * Returns the hour of the instant, rounded up if {@code ceil} is set.
+     */
+    private static long toHour(final @NonNull Instant instant, final boolean ceil) {
+        final var seconds = instant.getEpochSecond();
+        return ceil ? Math.floorDiv(seconds + HOUR_SECONDS - 1, HOUR_SECONDS) : Math.floorDiv(seconds, HOUR_SECONDS);
+    }
+
+    private synchronized <R> R withHandle(final @NonNull HandleCallback<R, RuntimeException> callback) {
+        return callback.withHandle(handle);
+    }
+
+    private synchronized <R> R inTransaction(final @NonNull HandleCallback<R, RuntimeException> callback) {
+        return handle.inTransaction(callback);
+    }
+}
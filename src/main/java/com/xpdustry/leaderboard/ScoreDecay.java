@@ -0,0 +1,112 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * An exponential decay of the points, halving them every half-life. Instead of decaying every player periodically,
+ * the points are stored as a score, the fixed-point logarithm of the points scaled back to a fixed epoch. The decay
+ * being the same for all the players, a player's score only changes when they receive points and the scores keep the
+ * order of the decayed points, so the stores and their indexes can rank them as regular points. The decayed points are
+ * only computed from the score when they are read.
+ */
+public final class ScoreDecay {
+
+    /**
+     * The epoch of the scores, changing it would change the meaning of all the stored scores.
+     */
+    private static final Instant EPOCH = Instant.parse("2023-01-01T00:00:00Z");
+
+    // The scores have 24 fractional bits, which gives a relative precision of about 1e-7 on the decayed points
+    private static final double SCALE = 1 << 24;
+
+    private final double rate;
+    private final Clock clock;
+
+    private ScoreDecay(final @NonNull Duration halfLife, final @NonNull Clock clock) {
+        if (halfLife.isZero() || halfLife.isNegative()) {
+            throw new IllegalArgumentException("The half-life must be positive, got " + halfLife);
+        }
+        this.rate = Math.log(2D) / (halfLife.toMillis() / 1000D);
+        this.clock = clock;
+    }
+
+    public static @NonNull ScoreDecay of(final @NonNull Duration halfLife) {
+        return new ScoreDecay(halfLife, Clock.systemUTC());
+    }
+
+    static @NonNull ScoreDecay of(final @NonNull Duration halfLife, final @NonNull Clock clock) {
+        return new ScoreDecay(halfLife, clock);
+    }
+
+    /**
+     * Returns the score after adding points to the decayed points of the given score, at the current time.
+     *
+     * @param score the current score of the player, 0 if they have no points
+     * @param delta the points to add, can be negative
+     * @return the new score, 0 if the decayed points dropped to 0
+     */
+    public long add(final long score, final long delta) {
+        final var elapsed = elapsed();
+        // Log-add-exp, the exponential is only taken on the difference with the current time so it never overflows
+        final var points = decay(score, elapsed) + delta;
+        if (points <= 0D) {
+            return 0L;
+        }
+        return Math.max(1L, Math.round((Math.log(points) + elapsed) * SCALE) + 1L);
+    }
+
+    /**
+     * Returns the decayed points of the given score at the current time, rounded to the nearest integer.
+     */
+    public long getPoints(final long score) {
+        return Math.round(decay(score, elapsed()));
+    }
+
+    /**
+     * Returns a copy of the player with its decayed points instead of its score.
+     */
+    @NonNull LeaderboardPlayer materialize(final @NonNull LeaderboardPlayer player) {
+        final var copy = LeaderboardPlayer.of(player.getUuid());
+        copy.addPoints(getPoints(player.getPoints()));
+        return copy;
+    }
+
+    private static double decay(final long score, final double elapsed) {
+        return score == 0L ? 0D : Math.exp((score - 1L) / SCALE - elapsed);
+    }
+
+    /**
+     * Returns the decay accumulated since the epoch, as the natural logarithm of the decay factor.
+     */
+    private double elapsed() {
+        return rate * (Duration.between(EPOCH, clock.instant()).toMillis() / 1000D);
+    }
+}
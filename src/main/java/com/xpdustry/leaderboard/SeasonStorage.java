@@ -0,0 +1,60 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Function;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Where the leaderboards of the seasons are stored, one partition per season.
+ */
+interface SeasonStorage {
+
+    /**
+     * Stores each season in its own subdirectory.
+     *
+     * @param directory the parent directory of the seasons
+     * @param factory   creates the leaderboard of a season from its directory
+     */
+    static @NonNull SeasonStorage directory(
+            final @NonNull Path directory, final @NonNull Function<Path, Leaderboard> factory) {
+        return new DirectorySeasonStorage(directory, factory);
+    }
+
+    /**
+     * Creates the leaderboard of the season, or the leaderboard of an existing season. It is not initialized yet.
+     */
+    @NonNull Leaderboard open(final @NonNull String season);
+
+    /**
+     * Returns the ids of the stored seasons, in chronological order.
+     */
+    @NonNull List<String> list();
+
+    void delete(final @NonNull String season);
+}
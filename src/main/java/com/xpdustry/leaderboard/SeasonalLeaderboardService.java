@@ -0,0 +1,356 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.util.Timer;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import mindustry.gen.Player;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A service splitting the leaderboard in seasons, each one stored in its own partition of a {@link SeasonStorage}.
+ * The grants go to both the current season and the all-time leaderboard, so the all-time totals are always up to
+ * date. The rollover only opens the empty partition of the new season, the previous one is closed and the seasons
+ * past the retention are deleted in the background.
+ */
+final class SeasonalLeaderboardService implements LeaderboardService, PluginListener, LeaderboardMetrics.Source {
+
+    private static final Logger logger = LoggerFactory.getLogger(SeasonalLeaderboardService.class);
+
+    private final SimpleLeaderboardService allTime;
+    private final SeasonStorage storage;
+    private final LeaderboardConfig.SeasonPeriod period;
+    private final int retention;
+    private final int checkInterval;
+    private final @Nullable ScoreDecay decay;
+    private final GrantNotifier notifier;
+    private final PlayerNameCache names;
+    private final Executor executor;
+    private final Clock clock;
+    // The operations on the current season hold the read lock, so the rollover never closes a season while it is used
+    private final ReadWriteLock rolloverLock = new ReentrantReadWriteLock();
+    private final Map<String, Season> archived = new HashMap<>();
+    private volatile @MonotonicNonNull Season current = null;
+    private Timer.@Nullable Task task = null;
+
+    SeasonalLeaderboardService(
+            final @NonNull Leaderboard allTime,
+            final @NonNull SeasonStorage storage,
+            final LeaderboardConfig.@NonNull SeasonPeriod period,
+            final int retention,
+            final int checkInterval,
+            final @Nullable ScoreDecay decay,
+            final @NonNull GrantNotifier notifier,
+            final @NonNull PlayerNameCache names,
+            final @NonNull Executor executor,
+            final @NonNull Clock clock) {
+        this.allTime = new SimpleLeaderboardService(allTime, decay, notifier, names);
+        this.storage = storage;
+        this.period = period;
+        this.retention = retention;
+        this.checkInterval = checkInterval;
+        this.decay = decay;
+        this.notifier = notifier;
+        this.names = names;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    @Override
+    public void onPluginInit() {
+        allTime.onPluginInit();
+        current = Season.open(storage, decay, notifier, names, period.getSeason(clock.instant()));
+        logger.info("The current leaderboard season is {}", current.id());
+        if (checkInterval > 0) {
+            task = Timer.schedule(() -> runAsync(this::checkRollover), checkInterval, checkInterval);
+        }
+        runAsync(this::prune);
+    }
+
+    @Override
+    public void onPluginExit() {
+        if (task != null) {
+            task.cancel();
+        }
+        rolloverLock.writeLock().lock();
+        try {
+            current.close();
+            synchronized (archived) {
+                archived.values().forEach(Season::close);
+                archived.clear();
+            }
+        } finally {
+            rolloverLock.writeLock().unlock();
+        }
+        allTime.onPluginExit();
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        allTime.registerMetrics(metrics);
+        metrics.gauge("season.index.size", () -> current == null ? 0 : current.service().index.size());
+    }
+
+    /**
+     * Switches to a new season if the current one is over.
+     */
+    synchronized void checkRollover() {
+        final var next = period.getSeason(clock.instant());
+        if (next.equals(current.id())) {
+            return;
+        }
+        final Season previous;
+        final var season = Season.open(storage, decay, notifier, names, next);
+        rolloverLock.writeLock().lock();
+        try {
+            previous = current;
+            current = season;
+        } finally {
+            rolloverLock.writeLock().unlock();
+        }
+        logger.info("The leaderboard season {} is over, the new season is {}", previous.id(), next);
+        runAsync(() -> {
+            previous.close();
+            prune();
+        });
+    }
+
+    /**
+     * Deletes the oldest seasons, keeping the current one and the {@code retention} previous ones.
+     */
+    void prune() {
+        final var id = current.id();
+        final var past = storage.list().stream()
+                .filter(season -> season.compareTo(id) < 0)
+                .toList();
+        for (int i = 0; i < past.size() - retention; i++) {
+            final var season = past.get(i);
+            // Deleted while holding the lock, so getSeason cannot open the season again meanwhile
+            synchronized (archived) {
+                final var opened = archived.remove(season);
+                if (opened != null) {
+                    opened.close();
+                }
+                try {
+                    storage.delete(season);
+                    logger.info("Deleted the leaderboard season {}", season);
+                } catch (final RuntimeException e) {
+                    logger.error("Failed to delete the leaderboard season {}", season, e);
+                }
+            }
+        }
+    }
+
+    private void runAsync(final @NonNull Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (final RejectedExecutionException e) {
+            logger.debug("Skipped leaderboard season maintenance, the executor is shut down");
+        }
+    }
+
+    @Override
+    public @NonNull Optional<String> getCurrentSeason() {
+        return Optional.of(current.id());
+    }
+
+    /**
+     * Returns the service of the season. The past seasons are opened on demand and kept open until they are pruned
+     * or the plugin exits.
+     */
+    @Override
+    public @NonNull Optional<LeaderboardService> getSeason(final @NonNull String season) {
+        final var active = current;
+        if (active.id().equals(season)) {
+            return Optional.of(active.service());
+        }
+        synchronized (archived) {
+            final var opened = archived.get(season);
+            if (opened != null) {
+                return Optional.of(opened.service());
+            }
+            if (!storage.list().contains(season)) {
+                return Optional.empty();
+            }
+            final var loaded = Season.open(storage, decay, notifier, names, season);
+            archived.put(season, loaded);
+            return Optional.of(loaded.service());
+        }
+    }
+
+    @Override
+    public @NonNull LeaderboardService getAllTime() {
+        return allTime;
+    }
+
+    /**
+     * Only refreshes the all-time ranking, the leaderboards of the seasons are only written by this service.
+     */
+    @Override
+    public void refresh() {
+        allTime.refresh();
+    }
+
+    @Override
+    public long getPoints(final @NonNull String uuid) {
+        rolloverLock.readLock().lock();
+        try {
+            return current.service().getPoints(uuid);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Grants the points to the player in the current season and in the all-time leaderboard.
+     *
+     * @return the points actually added to the all-time points of the player
+     */
+    @Override
+    public long grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points) {
+        rolloverLock.readLock().lock();
+        try {
+            current.service().grantPoints(uuid, points);
+            return allTime.grantPoints(uuid, points);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long grantPoints(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
+        rolloverLock.readLock().lock();
+        try {
+            current.service().grantPoints(player, points);
+            return allTime.grantPoints(player.uuid(), points);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NonNull Map<String, Long> grantPoints(
+            final @NonNull Iterable<Player> players, final @NonNull LeaderboardPoints points) {
+        rolloverLock.readLock().lock();
+        try {
+            current.service().grantPoints(players, points);
+            // The players are only notified once
+            return allTime.grantPoints(players, LeaderboardPoints.of(points.getName(), points.getPoints(), true));
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getRank(final @NonNull String uuid) {
+        // Can register the player in the season
+        rolloverLock.readLock().lock();
+        try {
+            return current.service().getRank(uuid);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getTopPlayers(final int limit) {
+        rolloverLock.readLock().lock();
+        try {
+            return current.service().getTopPlayers(limit);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getPlayersByRankRange(final long from, final long to) {
+        rolloverLock.readLock().lock();
+        try {
+            return current.service().getPlayersByRankRange(from, to);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getNeighbours(final @NonNull String uuid, final int radius) {
+        rolloverLock.readLock().lock();
+        try {
+            return current.service().getNeighbours(uuid, radius);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void showLeaderboard(final @NonNull Player player) {
+        rolloverLock.readLock().lock();
+        try {
+            current.service().showLeaderboard(player);
+        } finally {
+            rolloverLock.readLock().unlock();
+        }
+    }
+
+    private record Season(
+            @NonNull String id, @NonNull Leaderboard leaderboard, @NonNull SimpleLeaderboardService service) {
+
+        private static @NonNull Season open(
+                final @NonNull SeasonStorage storage,
+                final @Nullable ScoreDecay decay,
+                final @NonNull GrantNotifier notifier,
+                final @NonNull PlayerNameCache names,
+                final @NonNull String id) {
+            final var leaderboard = storage.open(id);
+            if (leaderboard instanceof PluginListener listener) {
+                listener.onPluginInit();
+            }
+            final var service = new SimpleLeaderboardService(leaderboard, decay, notifier, names);
+            service.onPluginInit();
+            return new Season(id, leaderboard, service);
+        }
+
+        private void close() {
+            service.onPluginExit();
+            if (leaderboard instanceof PluginListener listener) {
+                listener.onPluginExit();
+            }
+        }
+    }
+}
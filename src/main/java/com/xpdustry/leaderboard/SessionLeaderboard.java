@@ -0,0 +1,527 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.Events;
+import arc.func.Cons;
+import arc.util.Timer;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import mindustry.game.EventType;
+import mindustry.gen.Groups;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A leaderboard decorator keeping the online players in memory. A player is loaded when joining, its points are then
+ * read and updated in memory, and written to the underlying leaderboard when leaving, on each checkpoint and on exit.
+ * The players loads and the checkpoints run on the given executor, except the one on exit. Each player has its own
+ * lock, so the grants of a player never wait for the reads of the underlying leaderboard made for the other ones.
+ */
+final class SessionLeaderboard implements Leaderboard, PluginListener, LeaderboardMetrics.Source {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionLeaderboard.class);
+
+    private final Leaderboard leaderboard;
+    private final int checkpointInterval;
+    private final Executor executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // The players being loaded, marked as stale when written to meanwhile so the load is retried
+    private final Map<String, Boolean> loading = new ConcurrentHashMap<>();
+    // The locks of the players in use, removed once released by all their holders
+    private final Map<String, PlayerLock> locks = new ConcurrentHashMap<>();
+    // The last open or close of each player, the next one waiting for it so they run in the order of the events
+    private final Map<String, CompletableFuture<Void>> transitions = new ConcurrentHashMap<>();
+    // Incremented when a deletion of all the players starts and ends, which outdates the players loaded meanwhile
+    private final AtomicLong deletions = new AtomicLong();
+    private final Cons<EventType.PlayerJoin> onPlayerJoin = e -> openAsync(e.player.uuid());
+    private final Cons<EventType.PlayerLeave> onPlayerLeave = e -> closeAsync(e.player.uuid());
+    private Timer.@Nullable Task task = null;
+    private volatile boolean closed = false;
+
+    SessionLeaderboard(
+            final @NonNull Leaderboard leaderboard, final int checkpointInterval, final @NonNull Executor executor) {
+        this.leaderboard = leaderboard;
+        this.checkpointInterval = checkpointInterval;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onPluginInit() {
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+        if (checkpointInterval > 0) {
+            task = Timer.schedule(() -> runAsync(this::checkpoint), checkpointInterval, checkpointInterval);
+        }
+        // The players already online, when the leaderboard is opened during a game such as on a season rollover
+        Groups.player.each(player -> openAsync(player.uuid()));
+        Events.on(EventType.PlayerJoin.class, onPlayerJoin);
+        Events.on(EventType.PlayerLeave.class, onPlayerLeave);
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("session.size", sessions::size);
+        if (leaderboard instanceof LeaderboardMetrics.Source source) {
+            source.registerMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        if (task != null) {
+            task.cancel();
+        }
+        Events.remove(EventType.PlayerJoin.class, onPlayerJoin);
+        Events.remove(EventType.PlayerLeave.class, onPlayerLeave);
+        // The tasks already queued are ignored
+        closed = true;
+        checkpoint();
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    /**
+     * Loads the player on the executor, after the previous open or close of the player.
+     */
+    void openAsync(final @NonNull String uuid) {
+        runInOrder(uuid, () -> open(uuid));
+    }
+
+    /**
+     * Closes the player on the executor, after the previous open or close of the player.
+     */
+    void closeAsync(final @NonNull String uuid) {
+        runInOrder(uuid, () -> close(uuid));
+    }
+
+    /**
+     * Loads the player in memory, until {@link #close(String)} is called. The player is read without holding its
+     * lock, so its grants are not held back by the read. If the player is written to meanwhile, the read is retried.
+     */
+    void open(final @NonNull String uuid) {
+        long epoch;
+        final var lock = lock(uuid);
+        try {
+            if (closed || sessions.containsKey(uuid) || loading.putIfAbsent(uuid, false) != null) {
+                return;
+            }
+            epoch = deletions.get();
+        } finally {
+            unlock(lock);
+        }
+        while (true) {
+            final long points;
+            try {
+                points = leaderboard
+                        .findPlayerByUuid(uuid)
+                        .map(LeaderboardPlayer::getPoints)
+                        .orElse(0L);
+            } catch (final RuntimeException e) {
+                loading.remove(uuid);
+                throw e;
+            }
+            final var retry = lock(uuid);
+            try {
+                final var stale = loading.remove(uuid);
+                // Closed while loading
+                if (stale == null || closed) {
+                    return;
+                }
+                // Unless all the players were deleted while reading
+                if (!stale && epoch % 2 == 0 && deletions.get() == epoch) {
+                    sessions.put(uuid, new Session(points));
+                    return;
+                }
+                loading.put(uuid, false);
+                epoch = deletions.get();
+            } finally {
+                unlock(retry);
+            }
+        }
+    }
+
+    /**
+     * Writes the player to the underlying leaderboard and removes it from memory. The player is flushed right away if
+     * the underlying leaderboard buffers the changes.
+     */
+    void close(final @NonNull String uuid) {
+        final var lock = lock(uuid);
+        try {
+            loading.remove(uuid);
+            if (closed) {
+                return;
+            }
+            final var session = sessions.remove(uuid);
+            if (session == null || !session.dirty) {
+                return;
+            }
+            leaderboard.savePlayer(toPlayer(uuid, session));
+        } finally {
+            unlock(lock);
+        }
+        if (leaderboard instanceof WriteBehindLeaderboard buffer) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Writes the players changed since the last checkpoint to the underlying leaderboard.
+     */
+    void checkpoint() {
+        final var dirty = new ArrayList<String>();
+        sessions.forEach((uuid, session) -> {
+            if (session.dirty) {
+                dirty.add(uuid);
+            }
+        });
+        if (dirty.isEmpty()) {
+            return;
+        }
+        // The players are written while holding their locks, so a newer write of a leaving player is never overridden
+        final var held = lockAll(dirty);
+        try {
+            final var players = new ArrayList<LeaderboardPlayer>();
+            for (final var uuid : dirty) {
+                final var session = sessions.get(uuid);
+                if (session != null && session.dirty) {
+                    players.add(toPlayer(uuid, session));
+                }
+            }
+            if (players.isEmpty()) {
+                return;
+            }
+            try {
+                leaderboard.savePlayers(players);
+                players.forEach(player -> {
+                    final var session = sessions.get(player.getUuid());
+                    if (session != null) {
+                        session.dirty = false;
+                    }
+                });
+            } catch (final RuntimeException e) {
+                logger.error("Failed to save {} online players, will retry on the next checkpoint", players.size(), e);
+            }
+        } finally {
+            unlockAll(held);
+        }
+    }
+
+    int getSessionCount() {
+        return sessions.size();
+    }
+
+    private void runAsync(final @NonNull Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (final RejectedExecutionException e) {
+            // The executor is shutting down, the exit checkpoint will take care of it
+            logger.debug("Skipped leaderboard session task, the executor is shut down");
+        }
+    }
+
+    private void runInOrder(final @NonNull String uuid, final @NonNull Runnable runnable) {
+        final var next = new CompletableFuture<Void>();
+        final var previous = transitions.put(uuid, next);
+        (previous == null ? CompletableFuture.<Void>completedFuture(null) : previous)
+                .thenRunAsync(runnable, executor)
+                .whenComplete((ignored, throwable) -> {
+                    final var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                    if (cause instanceof RejectedExecutionException) {
+                        // The executor is shutting down, the exit checkpoint will take care of it
+                        logger.debug("Skipped leaderboard session task, the executor is shut down");
+                    } else if (cause != null) {
+                        logger.error("Failed to load or save the leaderboard session of {}", uuid, cause);
+                    }
+                    transitions.remove(uuid, next);
+                    next.complete(null);
+                });
+    }
+
+    @Override
+    public void savePlayer(final @NonNull LeaderboardPlayer player) {
+        final var lock = lock(player.getUuid());
+        try {
+            final var session = sessions.get(player.getUuid());
+            if (session != null) {
+                session.set(player.getPoints());
+                return;
+            }
+            markStale(player.getUuid());
+            leaderboard.savePlayer(player);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    @Override
+    public void savePlayers(final @NonNull Collection<LeaderboardPlayer> players) {
+        final var offline = new ArrayList<LeaderboardPlayer>();
+        final var held = lockAll(players.stream().map(LeaderboardPlayer::getUuid).toList());
+        try {
+            for (final var player : players) {
+                final var session = sessions.get(player.getUuid());
+                if (session != null) {
+                    session.set(player.getPoints());
+                } else {
+                    markStale(player.getUuid());
+                    offline.add(player);
+                }
+            }
+            if (!offline.isEmpty()) {
+                leaderboard.savePlayers(offline);
+            }
+        } finally {
+            unlockAll(held);
+        }
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        final var lock = lock(uuid);
+        try {
+            final var session = sessions.get(uuid);
+            if (session != null) {
+                session.set(Math.max(0L, session.points + delta));
+                return session.points;
+            }
+            markStale(uuid);
+            return leaderboard.addPoints(uuid, delta);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        final var totals = new HashMap<String, Long>();
+        final var offline = new HashMap<String, Long>();
+        final var held = lockAll(deltas.keySet());
+        try {
+            deltas.forEach((uuid, delta) -> {
+                final var session = sessions.get(uuid);
+                if (session != null) {
+                    session.set(Math.max(0L, session.points + delta));
+                    totals.put(uuid, session.points);
+                } else {
+                    markStale(uuid);
+                    offline.put(uuid, delta);
+                }
+            });
+            if (!offline.isEmpty()) {
+                totals.putAll(leaderboard.addPointsBatch(offline));
+            }
+        } finally {
+            unlockAll(held);
+        }
+        return totals;
+    }
+
+    @Override
+    public boolean existsPlayerByUuid(final @NonNull String uuid) {
+        return sessions.containsKey(uuid) || leaderboard.existsPlayerByUuid(uuid);
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid) {
+        final var session = sessions.get(uuid);
+        if (session != null) {
+            return Optional.of(toPlayer(uuid, session));
+        }
+        return leaderboard.findPlayerByUuid(uuid);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        final var players = new ArrayList<LeaderboardPlayer>(uuids.size());
+        final var missing = new ArrayList<String>();
+        for (final var uuid : uuids) {
+            final var session = sessions.get(uuid);
+            if (session != null) {
+                players.add(toPlayer(uuid, session));
+            } else {
+                missing.add(uuid);
+            }
+        }
+        if (!missing.isEmpty()) {
+            players.addAll(leaderboard.findPlayersByUuids(missing));
+        }
+        return players;
+    }
+
+    @Override
+    public @NonNull Iterable<LeaderboardPlayer> findAllPlayers() {
+        checkpoint();
+        return leaderboard.findAllPlayers();
+    }
+
+    @Override
+    public void forEachPlayer(final @NonNull Consumer<LeaderboardPlayer> consumer) {
+        checkpoint();
+        leaderboard.forEachPlayer(consumer);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        checkpoint();
+        return leaderboard.findTopPlayers(limit);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        checkpoint();
+        return leaderboard.findPlayersByRankRange(from, to);
+    }
+
+    @Override
+    public long countPlayers() {
+        checkpoint();
+        return leaderboard.countPlayers();
+    }
+
+    @Override
+    public void deletePlayerByUuid(final @NonNull String uuid) {
+        final var lock = lock(uuid);
+        try {
+            final var session = sessions.get(uuid);
+            if (session != null) {
+                session.points = 0L;
+                session.dirty = false;
+            }
+            markStale(uuid);
+            leaderboard.deletePlayerByUuid(uuid);
+        } finally {
+            unlock(lock);
+        }
+    }
+
+    @Override
+    public void deleteAllPlayers() {
+        deletions.incrementAndGet();
+        final var held = lockAll(sessions.keySet());
+        try {
+            sessions.values().forEach(session -> {
+                session.points = 0L;
+                session.dirty = false;
+            });
+            loading.replaceAll((uuid, stale) -> true);
+            leaderboard.deleteAllPlayers();
+        } finally {
+            unlockAll(held);
+            deletions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks the player as stale if it is being loaded. Must hold the lock of the player.
+     */
+    private void markStale(final @NonNull String uuid) {
+        loading.replace(uuid, true);
+    }
+
+    private @NonNull PlayerLock lock(final @NonNull String uuid) {
+        final var lock = locks.compute(uuid, (key, current) -> {
+            final var result = current != null ? current : new PlayerLock(key);
+            result.holders++;
+            return result;
+        });
+        lock.lock();
+        return lock;
+    }
+
+    private void unlock(final @NonNull PlayerLock lock) {
+        lock.unlock();
+        locks.computeIfPresent(lock.uuid, (key, current) -> --current.holders == 0 ? null : current);
+    }
+
+    /**
+     * Takes the locks of all the players in a fixed order, so two batches cannot deadlock.
+     */
+    private @NonNull List<PlayerLock> lockAll(final @NonNull Collection<String> uuids) {
+        final var held = new ArrayList<PlayerLock>(uuids.size());
+        for (final var uuid : new TreeSet<>(uuids)) {
+            held.add(lock(uuid));
+        }
+        return held;
+    }
+
+    private void unlockAll(final @NonNull List<PlayerLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            unlock(held.get(i));
+        }
+    }
+
+    private static @NonNull LeaderboardPlayer toPlayer(final @NonNull String uuid, final @NonNull Session session) {
+        final var player = LeaderboardPlayer.of(uuid);
+        player.addPoints(session.points);
+        return player;
+    }
+
+    private static final class Session {
+
+        // Written under the lock of the player, volatile for the lock-free reads
+        private volatile long points;
+        private volatile boolean dirty = false;
+
+        private Session(final long points) {
+            this.points = points;
+        }
+
+        private void set(final long points) {
+            this.points = points;
+            this.dirty = true;
+        }
+    }
+
+    private static final class PlayerLock extends ReentrantLock {
+
+        private final String uuid;
+        // Guarded by the map of the locks
+        private int holders = 0;
+
+        private PlayerLock(final @NonNull String uuid) {
+            this.uuid = uuid;
+        }
+    }
+}
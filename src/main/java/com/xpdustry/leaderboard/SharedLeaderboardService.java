@@ -0,0 +1,239 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.util.Timer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A service for a leaderboard shared with other servers, through a database or the replication. Its ranking is
+ * reloaded periodically, since the grants of the other servers only reach it when this server grants points to the
+ * same players.
+ * <p>
+ * The grants can also be buffered, so the server thread never waits for a remote database. The ranking is updated
+ * right away with the expected totals, and the buffered points are added to the leaderboard in batches on the
+ * executor, the actual totals replacing the expected ones once written.
+ */
+final class SharedLeaderboardService extends SimpleLeaderboardService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedLeaderboardService.class);
+
+    private final int refreshInterval;
+    private final boolean buffered;
+    private final int flushInterval;
+    private final int flushThreshold;
+    private final Executor executor;
+    // The buffered points in order. The points of a player are merged with the ones of the last batch only if they
+    // have the same sign, since the totals are clamped at 0 after each addition.
+    private final List<Map<String, Long>> pending = new ArrayList<>();
+    private int pendingCount = 0;
+    // Whether the first batch is being written, the new points going to another batch meanwhile
+    private boolean writing = false;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Object flushLock = new Object();
+    private final List<Timer.Task> tasks = new ArrayList<>();
+
+    /**
+     * @param refreshInterval the interval in seconds between two reloads of the ranking, 0 to disable them
+     * @param buffered        whether the grants are buffered, for the leaderboards with slow writes
+     * @param flushInterval   the interval in seconds between two flushes of the buffered grants, 0 to only flush them
+     *                        on the threshold and on exit
+     * @param flushThreshold  the number of buffered players that triggers an early flush
+     */
+    SharedLeaderboardService(
+            final @NonNull Leaderboard leaderboard,
+            final @NonNull GrantNotifier notifier,
+            final @NonNull PlayerNameCache names,
+            final int refreshInterval,
+            final boolean buffered,
+            final int flushInterval,
+            final int flushThreshold,
+            final @NonNull Executor executor) {
+        super(leaderboard, null, notifier, names);
+        this.refreshInterval = refreshInterval;
+        this.buffered = buffered;
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onPluginInit() {
+        super.onPluginInit();
+        if (refreshInterval > 0) {
+            tasks.add(Timer.schedule(() -> runAsync(this::refresh), refreshInterval, refreshInterval));
+        }
+        if (buffered && flushInterval > 0) {
+            tasks.add(Timer.schedule(() -> runAsync(this::flush), flushInterval, flushInterval));
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        tasks.forEach(Timer.Task::cancel);
+        tasks.clear();
+        flush();
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        super.registerMetrics(metrics);
+        metrics.gauge("service.shared.pending", this::getPendingCount);
+    }
+
+    /**
+     * Returns the number of buffered grants, each batch counting the players it contains.
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pendingCount;
+        }
+    }
+
+    @Override
+    protected long addPoints(final @NonNull String uuid, final long delta) {
+        if (!buffered) {
+            return super.addPoints(uuid, delta);
+        }
+        buffer(uuid, delta);
+        return Math.max(0L, index.getPoints(uuid) + delta);
+    }
+
+    @Override
+    protected @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        if (!buffered) {
+            return super.addPointsBatch(deltas);
+        }
+        final var totals = new HashMap<String, Long>();
+        deltas.forEach((uuid, delta) -> {
+            buffer(uuid, delta);
+            totals.put(uuid, Math.max(0L, index.getPoints(uuid) + delta));
+        });
+        return totals;
+    }
+
+    @Override
+    protected long reconcile(final @NonNull String uuid, final long points) {
+        // The reloaded points do not include the buffered ones yet
+        var total = points;
+        synchronized (pending) {
+            for (final var batch : pending) {
+                final var delta = batch.get(uuid);
+                if (delta != null) {
+                    total = Math.max(0L, total + delta);
+                }
+            }
+        }
+        return total;
+    }
+
+    private void buffer(final @NonNull String uuid, final long delta) {
+        final boolean full;
+        synchronized (pending) {
+            final var last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+            final var previous = last == null ? null : last.get(uuid);
+            if (last == null || (writing && pending.size() == 1) || (previous != null && previous * delta < 0L)) {
+                final var batch = new LinkedHashMap<String, Long>();
+                batch.put(uuid, delta);
+                pending.add(batch);
+                pendingCount++;
+            } else if (previous == null) {
+                last.put(uuid, delta);
+                pendingCount++;
+            } else {
+                last.put(uuid, previous + delta);
+            }
+            full = pendingCount >= flushThreshold;
+        }
+        if (full && flushScheduled.compareAndSet(false, true)) {
+            runAsync(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Adds the buffered points to the leaderboard, batch by batch, then replaces the expected totals in the ranking by
+     * the written ones. On failure, the remaining batches are kept for the next flush.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            while (true) {
+                final Map<String, Long> batch;
+                synchronized (pending) {
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    batch = pending.get(0);
+                    writing = true;
+                }
+                // The write, the removal of the batch and the update of the ranking happen under the refresh lock,
+                // so a refresh sees either the batch still pending or its points written, never both
+                synchronized (getRefreshLock()) {
+                    final Map<String, Long> totals;
+                    try {
+                        totals = leaderboard.addPointsBatch(batch);
+                    } catch (final RuntimeException e) {
+                        logger.error("Failed to add the buffered points to the leaderboard, retrying later", e);
+                        synchronized (pending) {
+                            writing = false;
+                        }
+                        return;
+                    }
+                    synchronized (pending) {
+                        pending.remove(0);
+                        pendingCount -= batch.size();
+                        writing = false;
+                    }
+                    totals.forEach((uuid, total) -> {
+                        synchronized (getGrantLock(uuid)) {
+                            updateIndex(uuid, reconcile(uuid, total));
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    private void runAsync(final @NonNull Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (final RejectedExecutionException e) {
+            logger.debug("Skipped a leaderboard task, the executor is shut down");
+        }
+    }
+}
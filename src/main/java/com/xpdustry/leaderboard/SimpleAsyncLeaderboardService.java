@@ -0,0 +1,104 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.Core;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+final class SimpleAsyncLeaderboardService implements AsyncLeaderboardService {
+
+    private final LeaderboardService service;
+    private final Executor executor;
+
+    SimpleAsyncLeaderboardService(final @NonNull LeaderboardService service, final @NonNull Executor executor) {
+        this.service = service;
+        this.executor = executor;
+    }
+
+    @Override
+    public @NonNull LeaderboardService getSync() {
+        return service;
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Long> getPoints(final @NonNull String uuid) {
+        return supply(() -> service.getPoints(uuid));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Void> grantPoints(
+            final @NonNull String uuid, final @NonNull LeaderboardPoints points) {
+        return supply(() -> {
+            service.grantPoints(uuid, points);
+            return null;
+        });
+    }
+
+    @Override
+    public @NonNull CompletableFuture<Long> getRank(final @NonNull String uuid) {
+        return supply(() -> service.getRank(uuid));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<List<LeaderboardPlayer>> getTopPlayers(final int limit) {
+        return supply(() -> service.getTopPlayers(limit));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<List<LeaderboardPlayer>> getPlayersByRankRange(final long from, final long to) {
+        return supply(() -> service.getPlayersByRankRange(from, to));
+    }
+
+    @Override
+    public @NonNull CompletableFuture<List<LeaderboardPlayer>> getNeighbours(
+            final @NonNull String uuid, final int radius) {
+        return supply(() -> service.getNeighbours(uuid, radius));
+    }
+
+    private <T> @NonNull CompletableFuture<T> supply(final @NonNull Supplier<T> supplier) {
+        return supply(supplier, executor);
+    }
+
+    /**
+     * Runs the supplier on the executor, the returned future being completed on the server thread.
+     */
+    static <T> @NonNull CompletableFuture<T> supply(
+            final @NonNull Supplier<T> supplier, final @NonNull Executor executor) {
+        final var future = new CompletableFuture<T>();
+        CompletableFuture.supplyAsync(supplier, executor).whenComplete((result, throwable) -> Core.app.post(() -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else {
+                future.complete(result);
+            }
+        }));
+        return future;
+    }
+}
@@ -25,83 +25,425 @@
  */
 package com.xpdustry.leaderboard;
 
-import arc.util.Strings;
-import java.util.Optional;
-import mindustry.Vars;
-import mindustry.gen.Call;
-import mindustry.gen.Groups;
-import mindustry.gen.Iconc;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import mindustry.gen.InfoToastCallPacket;
 import mindustry.gen.Player;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
-public class SimpleLeaderboardService implements LeaderboardService {
+public class SimpleLeaderboardService implements LeaderboardService, PluginListener, LeaderboardMetrics.Source {
+
+    private static final int BOARD_SIZE = 10;
+    // The names on the board are resolved again as often as the cached names expire
+    private static final long NAME_TTL = PlayerNameCache.DEFAULT_EXPIRY;
+    // The decayed points shown on the board go down over time, so the toast is rendered again at least every minute
+    private static final long DECAYED_BOARD_TTL = 60_000_000_000L;
+    // The grants of a player are serialized, but the ones of different players rarely wait for each other
+    private static final int GRANT_LOCK_STRIPES = 64;
 
     protected final Leaderboard leaderboard;
+    protected final RankIndex index = new RankIndex();
+    // When set, the leaderboard and the index hold the scores of the players instead of their points
+    protected final @Nullable ScoreDecay decay;
+    private final GrantNotifier notifier;
+    private final PlayerNameCache names;
+    private final Object[] grantLocks = new Object[GRANT_LOCK_STRIPES];
+    private final Object refreshLock = new Object();
+    // The players whose points changed since the refresh started, their reloaded points being already outdated
+    private volatile @Nullable Set<String> touched = null;
+    private volatile List<BoardEntry> board = List.of();
+    // Incremented by each change that can outdate the board, the board being built again when it differs from the
+    // value read before the last build, so a change landing during a build is never lost
+    private final AtomicLong boardChanges = new AtomicLong();
+    private long builtChanges = -1L;
+    private volatile boolean building = false;
+    private long boardVersion = 0L;
+    private long boardTime = 0L;
+    private @Nullable InfoToastCallPacket boardPacket = null;
+    private long boardPacketVersion = -1L;
+    private long boardPacketTime = 0L;
+    private final LongAdder boardHits = new LongAdder();
+    private final LongAdder boardMisses = new LongAdder();
 
     SimpleLeaderboardService(final @NonNull Leaderboard leaderboard) {
+        this(leaderboard, null);
+    }
+
+    SimpleLeaderboardService(final @NonNull Leaderboard leaderboard, final @Nullable ScoreDecay decay) {
+        this(leaderboard, decay, GrantNotifier.immediate(), PlayerNameCache.create());
+    }
+
+    SimpleLeaderboardService(
+            final @NonNull Leaderboard leaderboard,
+            final @Nullable ScoreDecay decay,
+            final @NonNull GrantNotifier notifier,
+            final @NonNull PlayerNameCache names) {
         this.leaderboard = leaderboard;
+        this.decay = decay;
+        this.notifier = notifier;
+        this.names = names;
+        for (int i = 0; i < GRANT_LOCK_STRIPES; i++) {
+            grantLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void onPluginInit() {
+        index.clear();
+        refresh();
+    }
+
+    /**
+     * Reloads the points of all the players into the index, to pick up the changes made by the other servers sharing
+     * the leaderboard. The index is updated in place, so the ranking stays available meanwhile.
+     */
+    @Override
+    public void refresh() {
+        synchronized (refreshLock) {
+            final Set<String> touched = ConcurrentHashMap.newKeySet();
+            this.touched = touched;
+            try {
+                for (final var player : leaderboard.findAllPlayers()) {
+                    final var uuid = player.getUuid();
+                    synchronized (getGrantLock(uuid)) {
+                        if (!touched.contains(uuid)) {
+                            index.update(uuid, reconcile(uuid, player.getPoints()));
+                        }
+                    }
+                }
+            } finally {
+                this.touched = null;
+            }
+            boardChanges.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("service.index.size", index::size);
+        names.registerMetrics(metrics);
+        metrics.gauge("service.board.hit-ratio", () -> {
+            final var hits = boardHits.sum();
+            final var total = hits + boardMisses.sum();
+            return total == 0L ? 0D : (double) hits / total;
+        });
     }
 
     @Override
     public long getPoints(final @NonNull String uuid) {
-        return leaderboard
-                .findPlayerByUuid(uuid)
-                .map(LeaderboardPlayer::getPoints)
-                .orElse(0L);
+        final var points = index.getPoints(uuid);
+        return decay == null ? points : decay.getPoints(points);
     }
 
     @Override
-    public void grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points) {
-        final var player = leaderboard.findPlayerByUuid(uuid).orElseGet(() -> LeaderboardPlayer.of(uuid));
-        player.addPoints(points);
-        leaderboard.savePlayer(player);
+    public long grantPoints(final @NonNull String uuid, final @NonNull LeaderboardPoints points) {
+        // The grants of a player are serialized so the index always ends up with its latest total
+        synchronized (getGrantLock(uuid)) {
+            final var before = getPoints(uuid);
+            final long total;
+            if (decay == null) {
+                total = addPoints(uuid, points.getPoints());
+            } else {
+                final var player = leaderboard.findPlayerByUuid(uuid).orElseGet(() -> LeaderboardPlayer.of(uuid));
+                total = decay.add(player.getPoints(), points.getPoints());
+                leaderboard.savePlayer(withPoints(uuid, total));
+            }
+            updateIndex(uuid, total);
+            return getApplied(points.getPoints(), before, total);
+        }
     }
 
     @Override
-    public void grantPoints(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
-        grantPoints(player.uuid(), points);
-        if (points.isSilent()) return;
-        Call.warningToast(
-                player.con(),
-                Iconc.power,
-                Strings.format(
-                        "[yellow]@[] [cyan]>[] [@]@[]",
-                        points.getName(),
-                        points.getPoints() > 0 ? "green" : "red",
-                        points.getPoints()));
+    public long grantPoints(final @NonNull Player player, final @NonNull LeaderboardPoints points) {
+        final var applied = grantPoints(player.uuid(), points);
+        notifier.notify(player, points);
+        return applied;
+    }
+
+    @Override
+    public @NonNull Map<String, Long> grantPoints(
+            final @NonNull Iterable<Player> players, final @NonNull LeaderboardPoints points) {
+        final var targets = new LinkedHashMap<String, Player>();
+        players.forEach(player -> targets.putIfAbsent(player.uuid(), player));
+        if (targets.isEmpty()) {
+            return Map.of();
+        }
+        final var deltas = new HashMap<String, Long>();
+        targets.keySet().forEach(uuid -> deltas.put(uuid, points.getPoints()));
+        final var applied = new LinkedHashMap<String, Long>();
+        withGrantLocks(deltas.keySet(), () -> {
+            final var before = new HashMap<String, Long>();
+            deltas.keySet().forEach(uuid -> before.put(uuid, getPoints(uuid)));
+            final var totals = decay == null ? addPointsBatch(deltas) : addScores(decay, deltas);
+            totals.forEach(this::updateIndex);
+            targets.keySet().forEach(uuid -> applied.put(
+                    uuid, getApplied(points.getPoints(), before.get(uuid), totals.get(uuid))));
+        });
+        targets.values().forEach(player -> notifier.notify(player, points));
+        return applied;
+    }
+
+    /**
+     * Returns the points actually added by a grant, from the points of the player before it, read under the grant
+     * lock, and its new total. Only a penalty emptying the points of the player can be limited.
+     */
+    private static long getApplied(final long delta, final long before, final long total) {
+        return delta >= 0L || total > 0L ? delta : Math.max(delta, -before);
+    }
+
+    /**
+     * Adds the points to the player in the leaderboard and returns the new total, called while holding the grant lock
+     * of the player.
+     */
+    protected long addPoints(final @NonNull String uuid, final long delta) {
+        return leaderboard.addPoints(uuid, delta);
+    }
+
+    /**
+     * Adds the points to the players in the leaderboard and returns their new totals, called while holding the grant
+     * locks of the players.
+     */
+    protected @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        return leaderboard.addPointsBatch(deltas);
+    }
+
+    /**
+     * Returns the points of the player to index for the points reloaded from the leaderboard, called while holding
+     * the grant lock of the player.
+     */
+    protected long reconcile(final @NonNull String uuid, final long points) {
+        return points;
+    }
+
+    /**
+     * Returns the lock held while the points of all the players are reloaded.
+     */
+    protected final @NonNull Object getRefreshLock() {
+        return refreshLock;
+    }
+
+    /**
+     * Returns the lock serializing the changes of the points of the player.
+     */
+    protected final @NonNull Object getGrantLock(final @NonNull String uuid) {
+        return grantLocks[getGrantStripe(uuid)];
+    }
+
+    /**
+     * Runs the action while holding the grant locks of all the players, taken in a fixed order so two batches cannot
+     * deadlock.
+     */
+    private void withGrantLocks(final @NonNull Collection<String> uuids, final @NonNull Runnable action) {
+        final var stripes = uuids.stream()
+                .mapToInt(SimpleLeaderboardService::getGrantStripe)
+                .distinct()
+                .sorted()
+                .toArray();
+        withGrantLocks(stripes, 0, action);
+    }
+
+    private void withGrantLocks(final int @NonNull [] stripes, final int next, final @NonNull Runnable action) {
+        if (next == stripes.length) {
+            action.run();
+            return;
+        }
+        synchronized (grantLocks[stripes[next]]) {
+            withGrantLocks(stripes, next + 1, action);
+        }
+    }
+
+    private static int getGrantStripe(final @NonNull String uuid) {
+        return Math.floorMod(uuid.hashCode(), GRANT_LOCK_STRIPES);
+    }
+
+    /**
+     * Sets the points of the player in the index, must be called while holding the grant lock of the player.
+     */
+    protected final void updateIndex(final @NonNull String uuid, final long total) {
+        index.update(uuid, total);
+        final var touched = this.touched;
+        if (touched != null) {
+            touched.add(uuid);
+        }
+        invalidateBoard(uuid, total);
+    }
+
+    /**
+     * Adds the points to the scores of the players, the scores being read and written in a batch each.
+     */
+    private @NonNull Map<String, Long> addScores(
+            final @NonNull ScoreDecay decay, final @NonNull Map<String, Long> deltas) {
+        final var totals = new HashMap<String, Long>();
+        leaderboard
+                .findPlayersByUuids(deltas.keySet())
+                .forEach(player -> totals.put(player.getUuid(), player.getPoints()));
+        final var players = new ArrayList<LeaderboardPlayer>(deltas.size());
+        deltas.forEach((uuid, delta) -> {
+            final var total = decay.add(totals.getOrDefault(uuid, 0L), delta);
+            totals.put(uuid, total);
+            players.add(withPoints(uuid, total));
+        });
+        leaderboard.savePlayers(players);
+        return totals;
     }
 
     @Override
     public long getRank(final @NonNull String uuid) {
-        if (!leaderboard.existsPlayerByUuid(uuid)) {
-            leaderboard.savePlayer(LeaderboardPlayer.of(uuid));
+        if (!index.contains(uuid)) {
+            synchronized (getGrantLock(uuid)) {
+                updateIndex(uuid, addPoints(uuid, 0L));
+            }
         }
-        final var players = leaderboard.findAllPlayers().iterator();
-        var rank = 1;
-        while (players.hasNext()) {
-            if (players.next().getUuid().equals(uuid)) return rank;
-            rank++;
+        return index.getRank(uuid);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getTopPlayers(final int limit) {
+        return materialize(index.getRange(0, limit));
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getPlayersByRankRange(final long from, final long to) {
+        if (from < 1L) {
+            throw new IllegalArgumentException("The ranks start at 1, got " + from);
+        }
+        if (to < from || from > Integer.MAX_VALUE) {
+            return List.of();
+        }
+        return materialize(index.getRange((int) (from - 1), (int) Math.min(to - from + 1, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> getNeighbours(final @NonNull String uuid, final int radius) {
+        // Registers the player if needed, then holds the lock of the index so the rank cannot move before the range
+        // is read
+        getRank(uuid);
+        synchronized (index) {
+            final var rank = index.getRank(uuid);
+            final var from = Math.max(1L, rank - radius);
+            return materialize(index.getRange((int) (from - 1), (int) (rank + radius - from + 1)));
         }
-        throw new IllegalStateException();
     }
 
     @Override
     public void showLeaderboard(final @NonNull Player player) {
+        player.con.send(getBoardPacket(), true);
+    }
+
+    /**
+     * Returns the version of the board, incremented each time its content changes.
+     */
+    public synchronized long getBoardVersion() {
+        getBoard();
+        return boardVersion;
+    }
+
+    /**
+     * Returns the rendered board toast, shared by all the viewers and only rendered again when the board changes.
+     */
+    protected synchronized @NonNull InfoToastCallPacket getBoardPacket() {
+        final var entries = getBoard();
+        final var now = System.nanoTime();
+        if (boardPacket != null
+                && boardPacketVersion == boardVersion
+                && (decay == null || now - boardPacketTime < DECAYED_BOARD_TTL)) {
+            return boardPacket;
+        }
+
         final var builder = new StringBuilder().append("[yellow]Leaderboard:[]");
-        final var players = leaderboard.findAllPlayers().iterator();
         var rank = 1;
+        for (final var entry : entries) {
+            builder.append("\n#").append(rank++);
+            builder.append(" [white]: ").append(entry.name()).append("[white] - ");
+            builder.append(decay == null ? entry.points() : decay.getPoints(entry.points()));
+        }
 
-        while (players.hasNext() && rank <= 10) {
-            final var leaderboardPlayer = players.next();
-            final var name = Optional.ofNullable(
-                            Groups.player.find(p -> p.uuid().equals(leaderboardPlayer.getUuid())))
-                    .map(Player::name)
-                    .orElseGet(() -> Vars.netServer.admins.getInfo(leaderboardPlayer.getUuid()).lastName);
+        final var packet = new InfoToastCallPacket();
+        packet.message = builder.toString();
+        packet.duration = 10f;
+        boardPacket = packet;
+        boardPacketVersion = boardVersion;
+        boardPacketTime = now;
+        return packet;
+    }
 
-            builder.append("\n#").append(rank++);
-            builder.append(" [white]: ").append(name).append("[white] - ").append(leaderboardPlayer.getPoints());
+    /**
+     * Returns the cached top of the leaderboard with the resolved player names, recomputing it if a grant changed it
+     * or if the names may be outdated.
+     */
+    protected synchronized @NonNull List<BoardEntry> getBoard() {
+        final var now = System.nanoTime();
+        final var changes = boardChanges.get();
+        if (changes == builtChanges && now - boardTime < NAME_TTL) {
+            boardHits.increment();
+            return board;
+        }
+        boardMisses.increment();
+        final var entries = new ArrayList<BoardEntry>(BOARD_SIZE);
+        building = true;
+        try {
+            for (final var player : index.getRange(0, BOARD_SIZE)) {
+                // The names of the offline players come from the name cache, which expires them
+                entries.add(new BoardEntry(player.getUuid(), names.getName(player.getUuid()), player.getPoints()));
+            }
+        } finally {
+            building = false;
+        }
+        builtChanges = changes;
+        boardTime = now;
+        if (!entries.equals(board)) {
+            board = List.copyOf(entries);
+            boardVersion++;
         }
+        return board;
+    }
+
+    /**
+     * Marks the board as outdated if the new total of the player can change it, meaning the board is being built, the
+     * player is already on the board, the board is not full or the player reached the lowest score of the board.
+     */
+    private void invalidateBoard(final @NonNull String uuid, final long total) {
+        final var current = board;
+        if (building
+                || current.size() < BOARD_SIZE
+                || total >= current.get(current.size() - 1).points()
+                || current.stream().anyMatch(entry -> entry.uuid().equals(uuid))) {
+            boardChanges.incrementAndGet();
+        }
+    }
+
+    /**
+     * Replaces the scores of the players by their decayed points, if the points decay.
+     */
+    private @NonNull List<LeaderboardPlayer> materialize(final @NonNull List<LeaderboardPlayer> players) {
+        if (decay == null) {
+            return players;
+        }
+        final var result = new ArrayList<LeaderboardPlayer>(players.size());
+        for (final var player : players) {
+            result.add(decay.materialize(player));
+        }
+        return result;
+    }
 
-        Call.infoToast(player.con, builder.toString(), 10f);
+    private static @NonNull LeaderboardPlayer withPoints(final @NonNull String uuid, final long points) {
+        final var player = LeaderboardPlayer.of(uuid);
+        player.addPoints(points);
+        return player;
     }
+
+    /**
+     * An entry of the board, the points being the score of the player if the points decay.
+     */
+    protected record BoardEntry(String uuid, String name, long points) {}
 }
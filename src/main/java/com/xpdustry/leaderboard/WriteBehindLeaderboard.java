@@ -0,0 +1,410 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import arc.Events;
+import arc.func.Cons;
+import arc.util.Timer;
+import fr.xpdustry.distributor.api.plugin.PluginListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import mindustry.game.EventType;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A leaderboard decorator that buffers the saved players in memory and writes them to the underlying leaderboard
+ * in a single batch, either periodically, when the buffer reaches a threshold, when a player leaves or on exit.
+ * Only the latest state of each player is kept, so repeated grants to the same player cost a single write. The
+ * players being flushed are still read from the buffer until their batch is committed.
+ * The flushes run on the given executor, except the one on exit.
+ */
+final class WriteBehindLeaderboard implements Leaderboard, PluginListener, LeaderboardMetrics.Source {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindLeaderboard.class);
+
+    private final Leaderboard leaderboard;
+    private final int flushInterval;
+    private final int flushThreshold;
+    private final Executor executor;
+    private final Map<String, LeaderboardPlayer> pending = new LinkedHashMap<>();
+    // The batch written by the running flush, still read from until it is committed, guarded by pending
+    private Map<String, LeaderboardPlayer> inFlight = Map.of();
+    // Incremented when a flush starts, and when a deletion starts and ends, which outdates the players read from the
+    // underlying leaderboard before, guarded by pending
+    private long epoch = 0L;
+    private final Object flushLock = new Object();
+    private final AtomicBoolean thresholdFlush = new AtomicBoolean();
+    private final Cons<EventType.PlayerLeave> onPlayerLeave = e -> flushAsync();
+    private Timer.@Nullable Task task = null;
+    private volatile @Nullable LatencyHistogram flushes = null;
+
+    WriteBehindLeaderboard(
+            final @NonNull Leaderboard leaderboard,
+            final int flushInterval,
+            final int flushThreshold,
+            final @NonNull Executor executor) {
+        this.leaderboard = leaderboard;
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+        this.executor = executor;
+    }
+
+    @Override
+    public void onPluginInit() {
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginInit();
+        }
+        if (flushInterval > 0) {
+            task = Timer.schedule(this::flushAsync, flushInterval, flushInterval);
+        }
+        Events.on(EventType.PlayerLeave.class, onPlayerLeave);
+    }
+
+    @Override
+    public void registerMetrics(final @NonNull LeaderboardMetrics metrics) {
+        metrics.gauge("write-behind.pending", this::getPendingCount);
+        flushes = metrics.histogram("write-behind.flush");
+        if (leaderboard instanceof LeaderboardMetrics.Source source) {
+            source.registerMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void onPluginExit() {
+        if (task != null) {
+            task.cancel();
+        }
+        Events.remove(EventType.PlayerLeave.class, onPlayerLeave);
+        flush();
+        if (leaderboard instanceof PluginListener listener) {
+            listener.onPluginExit();
+        }
+    }
+
+    /**
+     * Writes the buffered players to the underlying leaderboard.
+     */
+    public void flush() {
+        // Flushes are serialized so an older batch can never be written over a newer one
+        synchronized (flushLock) {
+            final Map<String, LeaderboardPlayer> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                inFlight = batch;
+                epoch++;
+            }
+            final var start = System.nanoTime();
+            try {
+                leaderboard.savePlayers(batch.values());
+                synchronized (pending) {
+                    inFlight = Map.of();
+                }
+                final var histogram = flushes;
+                if (histogram != null) {
+                    histogram.record(System.nanoTime() - start);
+                }
+            } catch (final RuntimeException e) {
+                logger.error(
+                        "Failed to flush {} leaderboard players, will retry on the next flush", batch.size(), e);
+                synchronized (pending) {
+                    // Do not override the players updated since the flush started
+                    batch.forEach(pending::putIfAbsent);
+                    inFlight = Map.of();
+                }
+            }
+        }
+    }
+
+    void flushAsync() {
+        try {
+            executor.execute(this::flush);
+        } catch (final RejectedExecutionException e) {
+            // The executor is shutting down, the exit flush will take care of it
+            logger.debug("Skipped leaderboard flush, the executor is shut down");
+        }
+    }
+
+    /**
+     * Flushes in the background if the buffer is full, unless such a flush is already waiting to run. The size is
+     * compared with {@code >=}, since a failed flush or a batch can take the buffer past the threshold.
+     */
+    private void flushIfFull(final int size) {
+        if (size < flushThreshold || !thresholdFlush.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                thresholdFlush.set(false);
+                flush();
+            });
+        } catch (final RejectedExecutionException e) {
+            thresholdFlush.set(false);
+            logger.debug("Skipped leaderboard flush, the executor is shut down");
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    @Override
+    public void savePlayer(final @NonNull LeaderboardPlayer player) {
+        final int size;
+        synchronized (pending) {
+            pending.put(player.getUuid(), copy(player));
+            size = pending.size();
+        }
+        flushIfFull(size);
+    }
+
+    @Override
+    public long addPoints(final @NonNull String uuid, final long delta) {
+        final long points;
+        final int size;
+        while (true) {
+            final long start;
+            synchronized (pending) {
+                final var player = getPending(uuid);
+                if (player != null) {
+                    player.addPoints(delta);
+                    return player.getPoints();
+                }
+                start = epoch;
+            }
+            // Read without holding any lock, the player is only used if no flush nor deletion started meanwhile,
+            // the players being written by the running flush are copied from the in-flight batch instead
+            final var loaded = leaderboard.findPlayerByUuid(uuid).orElseGet(() -> LeaderboardPlayer.of(uuid));
+            synchronized (pending) {
+                var player = getPending(uuid);
+                if (player == null && start == epoch) {
+                    pending.put(uuid, loaded);
+                    player = loaded;
+                }
+                if (player != null) {
+                    player.addPoints(delta);
+                    points = player.getPoints();
+                    size = pending.size();
+                    break;
+                }
+            }
+        }
+        flushIfFull(size);
+        return points;
+    }
+
+    @Override
+    public @NonNull Map<String, Long> addPointsBatch(final @NonNull Map<String, Long> deltas) {
+        final var totals = new HashMap<String, Long>();
+        var missing = new ArrayList<String>();
+        long start;
+        synchronized (pending) {
+            for (final var entry : deltas.entrySet()) {
+                final var player = getPending(entry.getKey());
+                if (player != null) {
+                    player.addPoints(entry.getValue());
+                    totals.put(entry.getKey(), player.getPoints());
+                } else {
+                    missing.add(entry.getKey());
+                }
+            }
+            start = epoch;
+        }
+        // Same as addPoints, but the missing players are loaded with a single query
+        while (!missing.isEmpty()) {
+            final var loaded = new HashMap<String, LeaderboardPlayer>();
+            leaderboard.findPlayersByUuids(missing).forEach(player -> loaded.put(player.getUuid(), player));
+            synchronized (pending) {
+                final var retry = new ArrayList<String>();
+                for (final var uuid : missing) {
+                    var player = getPending(uuid);
+                    if (player == null && start == epoch) {
+                        player = loaded.getOrDefault(uuid, LeaderboardPlayer.of(uuid));
+                        pending.put(uuid, player);
+                    }
+                    if (player != null) {
+                        player.addPoints(deltas.get(uuid));
+                        totals.put(uuid, player.getPoints());
+                    } else {
+                        retry.add(uuid);
+                    }
+                }
+                missing = retry;
+                start = epoch;
+            }
+        }
+        flushIfFull(getPendingCount());
+        return totals;
+    }
+
+    /**
+     * Returns the buffered player to update, copying it from the running flush if needed, must hold the lock of
+     * pending.
+     */
+    private @Nullable LeaderboardPlayer getPending(final @NonNull String uuid) {
+        var player = pending.get(uuid);
+        if (player == null) {
+            final var flushing = inFlight.get(uuid);
+            if (flushing != null) {
+                player = copy(flushing);
+                pending.put(uuid, player);
+            }
+        }
+        return player;
+    }
+
+    @Override
+    public boolean existsPlayerByUuid(final @NonNull String uuid) {
+        synchronized (pending) {
+            if (getBuffered(uuid) != null) {
+                return true;
+            }
+        }
+        return leaderboard.existsPlayerByUuid(uuid);
+    }
+
+    @Override
+    public @NonNull Optional<LeaderboardPlayer> findPlayerByUuid(final @NonNull String uuid) {
+        synchronized (pending) {
+            final var player = getBuffered(uuid);
+            if (player != null) {
+                return Optional.of(copy(player));
+            }
+        }
+        return leaderboard.findPlayerByUuid(uuid);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByUuids(final @NonNull Collection<String> uuids) {
+        final var players = new ArrayList<LeaderboardPlayer>(uuids.size());
+        final var missing = new ArrayList<String>();
+        synchronized (pending) {
+            for (final var uuid : uuids) {
+                final var player = getBuffered(uuid);
+                if (player != null) {
+                    players.add(copy(player));
+                } else {
+                    missing.add(uuid);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            players.addAll(leaderboard.findPlayersByUuids(missing));
+        }
+        return players;
+    }
+
+    @Override
+    public @NonNull Iterable<LeaderboardPlayer> findAllPlayers() {
+        flush();
+        return leaderboard.findAllPlayers();
+    }
+
+    @Override
+    public void forEachPlayer(final @NonNull Consumer<LeaderboardPlayer> consumer) {
+        flush();
+        leaderboard.forEachPlayer(consumer);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findTopPlayers(final int limit) {
+        flush();
+        return leaderboard.findTopPlayers(limit);
+    }
+
+    @Override
+    public @NonNull List<LeaderboardPlayer> findPlayersByRankRange(final long from, final long to) {
+        flush();
+        return leaderboard.findPlayersByRankRange(from, to);
+    }
+
+    @Override
+    public long countPlayers() {
+        flush();
+        return leaderboard.countPlayers();
+    }
+
+    @Override
+    public void deletePlayerByUuid(final @NonNull String uuid) {
+        // Waits for the running flush, so it cannot write the player back after the deletion
+        synchronized (flushLock) {
+            synchronized (pending) {
+                pending.remove(uuid);
+                epoch++;
+            }
+            leaderboard.deletePlayerByUuid(uuid);
+            // The players read before the deletion completed are outdated too
+            synchronized (pending) {
+                epoch++;
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllPlayers() {
+        synchronized (flushLock) {
+            synchronized (pending) {
+                pending.clear();
+                epoch++;
+            }
+            leaderboard.deleteAllPlayers();
+            synchronized (pending) {
+                epoch++;
+            }
+        }
+    }
+
+    /**
+     * Returns the latest buffered state of the player, either pending or being flushed. Must hold the pending lock.
+     */
+    private @Nullable LeaderboardPlayer getBuffered(final @NonNull String uuid) {
+        final var player = pending.get(uuid);
+        return player != null ? player : inFlight.get(uuid);
+    }
+
+    private static @NonNull LeaderboardPlayer copy(final @NonNull LeaderboardPlayer player) {
+        final var copy = LeaderboardPlayer.of(player.getUuid());
+        copy.addPoints(player.getPoints());
+        return copy;
+    }
+}
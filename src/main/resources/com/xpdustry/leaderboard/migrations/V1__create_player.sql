@@ -2,3 +2,5 @@ CREATE TABLE IF NOT EXISTS player (
     uuid    VARCHAR(16)     NOT NULL PRIMARY KEY,
     points  BIGINT          NOT NULL DEFAULT 0
 );
+
+CREATE INDEX IF NOT EXISTS player_points_idx ON player (points DESC, uuid ASC);
@@ -0,0 +1,37 @@
+-- The raw grants, append-only
+CREATE TABLE IF NOT EXISTS history (
+    id          INTEGER         NOT NULL PRIMARY KEY,
+    uuid        VARCHAR(64)     NOT NULL,
+    name        VARCHAR(64)     NOT NULL,
+    delta       BIGINT          NOT NULL,
+    timestamp   BIGINT          NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS history_uuid_idx ON history (uuid, timestamp);
+
+-- The all-time points of each player per points name
+CREATE TABLE IF NOT EXISTS history_total (
+    uuid        VARCHAR(64)     NOT NULL,
+    name        VARCHAR(64)     NOT NULL,
+    points      BIGINT          NOT NULL,
+    grants      BIGINT          NOT NULL,
+    PRIMARY KEY (uuid, name)
+) WITHOUT ROWID;
+
+-- The points of each player per hour and points name
+CREATE TABLE IF NOT EXISTS history_player_hourly (
+    uuid        VARCHAR(64)     NOT NULL,
+    hour        BIGINT          NOT NULL,
+    name        VARCHAR(64)     NOT NULL,
+    points      BIGINT          NOT NULL,
+    PRIMARY KEY (uuid, hour, name)
+) WITHOUT ROWID;
+
+-- The points of all the players per hour and points name
+CREATE TABLE IF NOT EXISTS history_hourly (
+    hour        BIGINT          NOT NULL,
+    name        VARCHAR(64)     NOT NULL,
+    points      BIGINT          NOT NULL,
+    grants      BIGINT          NOT NULL,
+    PRIMARY KEY (hour, name)
+) WITHOUT ROWID;
@@ -0,0 +1,147 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class CompactPlayerStoreTest {
+
+    private CompactPlayerStore store;
+    private Random random;
+
+    @BeforeEach
+    void setup() {
+        store = new CompactPlayerStore();
+        random = new Random(42);
+    }
+
+    @Test
+    void test_store_update_and_remove() {
+        final var canonical = createUuid();
+        final var other = "not-a-mindustry-uuid";
+        store.update(canonical, 50);
+        store.update(other, 150);
+        store.update(canonical, 200);
+
+        assertEquals(2, store.size());
+        assertEquals(200, store.getPoints(canonical));
+        assertEquals(150, store.getPoints(other));
+
+        store.remove(canonical);
+        store.remove(other);
+        assertFalse(store.contains(canonical));
+        assertFalse(store.contains(other));
+        assertEquals(0, store.getPoints(canonical));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void test_store_matches_map() {
+        final var expected = new HashMap<String, Long>();
+        final var uuids = new ArrayList<String>();
+        for (int i = 0; i < 5000; i++) {
+            uuids.add(createUuid());
+        }
+        // Enough operations to resize the table and shift the removed entries many times
+        for (int i = 0; i < 50_000; i++) {
+            final var uuid = uuids.get(random.nextInt(uuids.size()));
+            if (random.nextInt(4) == 0) {
+                store.remove(uuid);
+                expected.remove(uuid);
+            } else {
+                final long points = random.nextInt(1000);
+                store.update(uuid, points);
+                expected.put(uuid, points);
+            }
+        }
+
+        assertEquals(expected.size(), store.size());
+        for (final var uuid : uuids) {
+            assertEquals(expected.containsKey(uuid), store.contains(uuid));
+            assertEquals((long) expected.getOrDefault(uuid, 0L), store.getPoints(uuid));
+        }
+        final var visited = new HashMap<String, Long>();
+        store.forEach(visited::put);
+        assertEquals(expected, visited);
+
+        // The ranking is updated along the table
+        final var ranked = new ArrayList<LeaderboardPlayer>();
+        expected.forEach((uuid, points) -> {
+            final var player = LeaderboardPlayer.of(uuid);
+            player.addPoints(points);
+            ranked.add(player);
+        });
+        ranked.sort(Comparator.comparingLong(LeaderboardPlayer::getPoints)
+                .reversed()
+                .thenComparing(LeaderboardPlayer::getUuid));
+        assertEquals(ranked, store.getRange(0, ranked.size()));
+    }
+
+    @Test
+    void test_store_matches_sorted_list() {
+        final var players = new ArrayList<LeaderboardPlayer>();
+        for (int i = 0; i < 1000; i++) {
+            // Mix both kinds of uuids, with many ties
+            final var player = LeaderboardPlayer.of(i % 10 == 0 ? UUID.randomUUID().toString() : createUuid());
+            player.addPoints(random.nextInt(20));
+            players.add(player);
+            store.update(player.getUuid(), player.getPoints());
+        }
+        players.sort(Comparator.comparingLong(LeaderboardPlayer::getPoints)
+                .reversed()
+                .thenComparing(LeaderboardPlayer::getUuid));
+
+        assertEquals(players, store.getRange(0, players.size()));
+        assertEquals(players.subList(10, 20), store.getRange(10, 10));
+        assertEquals(players.subList(995, 1000), store.getRange(995, 10));
+        assertTrue(store.getRange(1000, 10).isEmpty());
+
+        store.update(players.get(999).getUuid(), 1000);
+        assertEquals(List.of(players.get(999).getUuid()), uuids(store.getRange(0, 1)));
+    }
+
+    private String createUuid() {
+        final var bytes = new byte[8];
+        random.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static List<String> uuids(final List<LeaderboardPlayer> players) {
+        return players.stream().map(LeaderboardPlayer::getUuid).toList();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import mindustry.gen.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class GrantNotifierTest {
+
+    private static final LeaderboardPoints KILL = LeaderboardPoints.of("Kill", +50);
+    private static final LeaderboardPoints BUILD = LeaderboardPoints.of("Build", +50);
+    private static final LeaderboardPoints GRIEF = LeaderboardPoints.of("Grief", -500);
+    private static final int WINDOW_MILLIS = 1000;
+    private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(WINDOW_MILLIS);
+
+    private final List<String> sent = new ArrayList<>();
+    private long now;
+    private GrantNotifier notifier;
+
+    @BeforeEach
+    void setup() {
+        sent.clear();
+        now = 0L;
+        notifier = GrantNotifier.windowed(
+                WINDOW_MILLIS, () -> now, (player, message) -> sent.add(player.uuid() + " " + message));
+    }
+
+    @Test
+    void test_summary() {
+        final var player = Player.create();
+        final var summary = new GrantNotifier.Summary(player);
+        for (int i = 0; i < 5; i++) {
+            summary.add(player, KILL);
+        }
+        summary.add(player, BUILD);
+        summary.add(player, BUILD);
+        assertEquals("[green]+350[] [lightgray](Kill x5, Build x2)[]", summary.render());
+    }
+
+    @Test
+    void test_summary_single() {
+        final var player = Player.create();
+        final var summary = new GrantNotifier.Summary(player);
+        summary.add(player, BUILD);
+        assertEquals("[green]+50[] [lightgray](Build)[]", summary.render());
+    }
+
+    @Test
+    void test_summary_negative() {
+        final var player = Player.create();
+        final var summary = new GrantNotifier.Summary(player);
+        summary.add(player, KILL);
+        summary.add(player, GRIEF);
+        assertEquals("[red]-450[] [lightgray](Kill, Grief)[]", summary.render());
+
+        final var zero = new GrantNotifier.Summary(player);
+        zero.add(player, LeaderboardPoints.of("Kill", +10));
+        zero.add(player, LeaderboardPoints.of("Death", -10));
+        assertEquals("[white]0[] [lightgray](Kill, Death)[]", zero.render());
+    }
+
+    @Test
+    void test_no_window() {
+        assertSame(GrantNotifier.immediate(), GrantNotifier.windowed(0));
+
+        notifier = GrantNotifier.windowed(0, () -> now, (player, message) -> sent.add(message));
+        notifier.notify(LeaderboardFixtures.createPlayer("A"), KILL);
+        assertEquals(List.of("[yellow]Kill[] [cyan]>[] [green]50[]"), sent);
+    }
+
+    @Test
+    void test_window() {
+        final var player = LeaderboardFixtures.createPlayer("A");
+        notifier.notify(player, KILL);
+        notifier.notify(player, KILL);
+        notifier.notify(player, BUILD);
+
+        now += WINDOW_NANOS - 1L;
+        notifier.flush();
+        assertTrue(sent.isEmpty());
+
+        now += 1L;
+        notifier.flush();
+        assertEquals(List.of("A [green]+150[] [lightgray](Kill x2, Build)[]"), sent);
+    }
+
+    @Test
+    void test_window_per_player() {
+        notifier.notify(LeaderboardFixtures.createPlayer("A"), KILL);
+        notifier.notify(LeaderboardFixtures.createPlayer("B"), GRIEF);
+        now += WINDOW_NANOS;
+        notifier.flush();
+        assertEquals(2, sent.size());
+        assertTrue(sent.contains("A [green]+50[] [lightgray](Kill)[]"));
+        assertTrue(sent.contains("B [red]-500[] [lightgray](Grief)[]"));
+    }
+
+    @Test
+    void test_swap() {
+        final var player = LeaderboardFixtures.createPlayer("A");
+        notifier.notify(player, KILL);
+        now += WINDOW_NANOS;
+        notifier.flush();
+
+        // The grants of the next window go to the other map, the sent ones are not sent again
+        notifier.notify(player, BUILD);
+        now += WINDOW_NANOS;
+        notifier.flush();
+        now += WINDOW_NANOS;
+        notifier.flush();
+        assertEquals(
+                List.of("A [green]+50[] [lightgray](Kill)[]", "A [green]+50[] [lightgray](Build)[]"), sent);
+    }
+
+    @Test
+    void test_silent() {
+        notifier.notify(LeaderboardFixtures.createPlayer("A"), LeaderboardPoints.of("Kill", 50, true));
+        now += WINDOW_NANOS;
+        notifier.flush();
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void test_disconnected() {
+        final var player = LeaderboardFixtures.createPlayer("A");
+        notifier.notify(player, KILL);
+        player.con.close();
+        now += WINDOW_NANOS;
+        notifier.flush();
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void test_empty_flush_does_not_allocate() {
+        final var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        // Warms up the flush, so the measure does not include the class loading and the compilation
+        for (int i = 0; i < 10_000; i++) {
+            now += WINDOW_NANOS;
+            notifier.flush();
+        }
+        final var before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            now += WINDOW_NANOS;
+            notifier.flush();
+        }
+        final var allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 1024L, "Allocated " + allocated + " bytes");
+    }
+}
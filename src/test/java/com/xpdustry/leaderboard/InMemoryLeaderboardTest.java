@@ -0,0 +1,116 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class InMemoryLeaderboardTest {
+
+    private LeaderboardPlayer playerA;
+    private LeaderboardPlayer playerB;
+    private LeaderboardPlayer playerC;
+    private InMemoryLeaderboard leaderboard;
+
+    @TempDir
+    private Path snapshotDir;
+
+    @BeforeEach
+    void setup() {
+        playerA = LeaderboardPlayer.of(UUID.randomUUID().toString());
+        playerB = LeaderboardPlayer.of(UUID.randomUUID().toString());
+        playerC = LeaderboardPlayer.of(UUID.randomUUID().toString());
+        leaderboard = create();
+        leaderboard.onPluginInit();
+    }
+
+    @Test
+    void test_leaderboard_add_points() {
+        assertEquals(100, leaderboard.addPoints(playerA.getUuid(), 100));
+        assertEquals(0, leaderboard.addPoints(playerA.getUuid(), -200));
+        assertTrue(leaderboard.existsPlayerByUuid(playerA.getUuid()));
+        assertFalse(leaderboard.existsPlayerByUuid(playerB.getUuid()));
+        assertEquals(1, leaderboard.countPlayers());
+    }
+
+    @Test
+    void test_leaderboard_order() {
+        playerA.addPoints(50);
+        playerB.addPoints(150);
+        leaderboard.savePlayers(List.of(playerA, playerB, playerC));
+
+        assertEquals(List.of(playerB, playerA, playerC), leaderboard.findTopPlayers(10));
+        assertEquals(List.of(playerB, playerA, playerC), List.copyOf(toList(leaderboard.findAllPlayers())));
+    }
+
+    @Test
+    void test_leaderboard_rank_range() {
+        LeaderboardFixtures.assertRankRanges(leaderboard);
+        assertThrows(IllegalArgumentException.class, () -> leaderboard.findPlayersByRankRange(0, 10));
+    }
+
+    @Test
+    void test_leaderboard_snapshot() {
+        playerA.addPoints(50);
+        playerB.addPoints(150);
+        leaderboard.savePlayers(List.of(playerA, playerB, playerC));
+        leaderboard.onPluginExit();
+
+        final var reloaded = create();
+        reloaded.onPluginInit();
+        assertEquals(3, reloaded.countPlayers());
+        assertEquals(playerB, reloaded.findPlayerByUuid(playerB.getUuid()).get());
+        assertEquals(List.of(playerB, playerA, playerC), reloaded.findTopPlayers(3));
+
+        reloaded.deleteAllPlayers();
+        reloaded.onPluginExit();
+
+        final var emptied = create();
+        emptied.onPluginInit();
+        assertEquals(0, emptied.countPlayers());
+    }
+
+    private InMemoryLeaderboard create() {
+        return new InMemoryLeaderboard(snapshotDir.resolve("leaderboard.bin"), 0, ForkJoinPool.commonPool());
+    }
+
+    private static List<LeaderboardPlayer> toList(final Iterable<LeaderboardPlayer> players) {
+        final var list = new ArrayList<LeaderboardPlayer>();
+        players.forEach(list::add);
+        return list;
+    }
+}
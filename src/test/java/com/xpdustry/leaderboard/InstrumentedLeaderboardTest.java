@@ -0,0 +1,57 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class InstrumentedLeaderboardTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void test_find_all_players_iteration() {
+        final var metrics = new LeaderboardMetrics();
+        final var storage = new InMemoryLeaderboard(directory.resolve("leaderboard.bin"), 0, Runnable::run);
+        LeaderboardFixtures.saveRankedPlayers(storage, 3);
+        final var leaderboard = new InstrumentedLeaderboard(storage, metrics);
+        final var histogram = metrics.getHistograms().get("leaderboard.findAllPlayers");
+
+        final var iterator = leaderboard.findAllPlayers().iterator();
+        iterator.next();
+        // Recorded once the iteration is complete
+        assertEquals(0L, histogram.getCount());
+        iterator.next();
+        iterator.next();
+        iterator.hasNext();
+        iterator.hasNext();
+        assertEquals(1L, histogram.getCount());
+    }
+}
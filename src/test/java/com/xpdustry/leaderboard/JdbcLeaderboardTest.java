@@ -0,0 +1,163 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import org.h2.tools.Server;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class JdbcLeaderboardTest {
+
+    private Server server;
+    private String url;
+    private final List<JdbcLeaderboard> leaderboards = new ArrayList<>();
+
+    @TempDir
+    private Path databaseDir;
+
+    @BeforeEach
+    void setup() throws SQLException {
+        // A H2 server, like the one the servers sharing a leaderboard would connect to
+        server = Server.createTcpServer("-tcpPort", "0", "-baseDir", databaseDir.toString(), "-ifNotExists")
+                .start();
+        url = "jdbc:h2:tcp://localhost:" + server.getPort() + "/leaderboard";
+    }
+
+    @AfterEach
+    void close() {
+        leaderboards.forEach(JdbcLeaderboard::onPluginExit);
+        server.stop();
+    }
+
+    @Test
+    void test_add_points() {
+        final var leaderboard = createLeaderboard();
+        final var uuid = UUID.randomUUID().toString();
+        assertFalse(leaderboard.existsPlayerByUuid(uuid));
+        assertEquals(100L, leaderboard.addPoints(uuid, 100L));
+        assertEquals(50L, leaderboard.addPoints(uuid, -50L));
+        assertEquals(0L, leaderboard.addPoints(uuid, -200L));
+        assertTrue(leaderboard.existsPlayerByUuid(uuid));
+        assertEquals(1L, leaderboard.countPlayers());
+    }
+
+    @Test
+    void test_add_points_batch() {
+        final var leaderboard = createLeaderboard();
+        final var deltas = new HashMap<String, Long>();
+        for (int i = 0; i < 1200; i++) {
+            deltas.put(UUID.randomUUID().toString(), (long) i);
+        }
+        assertEquals(deltas, leaderboard.addPointsBatch(deltas));
+        assertTrue(leaderboard.addPointsBatch(Map.of()).isEmpty());
+        final var doubled = new HashMap<String, Long>();
+        deltas.forEach((uuid, points) -> doubled.put(uuid, points * 2));
+        assertEquals(doubled, leaderboard.addPointsBatch(deltas));
+        assertEquals(1200L, leaderboard.countPlayers());
+    }
+
+    @Test
+    void test_shared_increments() {
+        // Two servers granting points to the same players concurrently, no grant must be lost
+        final var server1 = createLeaderboard();
+        final var server2 = createLeaderboard();
+        final var uuids = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final var futures = new ArrayList<CompletableFuture<?>>();
+            for (int i = 0; i < 200; i++) {
+                final var leaderboard = i % 2 == 0 ? server1 : server2;
+                futures.add(CompletableFuture.runAsync(
+                        () -> leaderboard.addPointsBatch(Map.of(uuids.get(0), 1L, uuids.get(1), 2L)), executor));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(200L, server1.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+        assertEquals(400L, server2.findPlayerByUuid(uuids.get(1)).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_find_all_players() {
+        final var leaderboard = createLeaderboard();
+        final var players = new ArrayList<LeaderboardPlayer>();
+        for (int i = 0; i < 1234; i++) {
+            final var player = LeaderboardPlayer.of(UUID.randomUUID().toString());
+            player.addPoints(i % 100);
+            players.add(player);
+        }
+        leaderboard.savePlayers(players);
+        players.sort((a, b) -> a.getPoints() != b.getPoints()
+                ? Long.compare(b.getPoints(), a.getPoints())
+                : a.getUuid().compareTo(b.getUuid()));
+
+        final var all = new ArrayList<LeaderboardPlayer>();
+        leaderboard.findAllPlayers().forEach(all::add);
+        assertEquals(players, all);
+        assertEquals(players.subList(9, 20), leaderboard.findPlayersByRankRange(10, 20));
+        assertEquals(players.subList(0, 5), leaderboard.findTopPlayers(5));
+    }
+
+    @Test
+    void test_for_each_player() {
+        final var leaderboard = createLeaderboard();
+        final var players = new HashSet<LeaderboardPlayer>();
+        for (int i = 0; i < 2345; i++) {
+            final var player = LeaderboardPlayer.of(UUID.randomUUID().toString());
+            player.addPoints(i);
+            players.add(player);
+        }
+        leaderboard.savePlayers(players);
+
+        final var all = new HashSet<LeaderboardPlayer>();
+        leaderboard.forEachPlayer(all::add);
+        assertEquals(players, all);
+    }
+
+    private JdbcLeaderboard createLeaderboard() {
+        final var leaderboard = new JdbcLeaderboard(url, "", "", 4, 5, dialect -> getClass().getClassLoader());
+        leaderboard.onPluginInit();
+        leaderboards.add(leaderboard);
+        return leaderboard;
+    }
+}
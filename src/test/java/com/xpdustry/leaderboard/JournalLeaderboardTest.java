@@ -0,0 +1,175 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class JournalLeaderboardTest {
+
+    private LeaderboardPlayer playerA;
+    private LeaderboardPlayer playerB;
+    private LeaderboardPlayer playerC;
+
+    @TempDir
+    private Path journalDir;
+
+    @BeforeEach
+    void setup() {
+        playerA = LeaderboardPlayer.of(UUID.randomUUID().toString());
+        playerB = LeaderboardPlayer.of(UUID.randomUUID().toString());
+        playerC = LeaderboardPlayer.of(UUID.randomUUID().toString());
+    }
+
+    @Test
+    void test_leaderboard_add_points() {
+        final var leaderboard = create(1024);
+        assertEquals(100, leaderboard.addPoints(playerA.getUuid(), 100));
+        assertEquals(0, leaderboard.addPoints(playerA.getUuid(), -200));
+        assertTrue(leaderboard.existsPlayerByUuid(playerA.getUuid()));
+        assertFalse(leaderboard.existsPlayerByUuid(playerB.getUuid()));
+        assertThrows(IllegalArgumentException.class, () -> leaderboard.addPoints("x".repeat(100), 1));
+    }
+
+    @Test
+    void test_leaderboard_batch() {
+        final var leaderboard = create(1024);
+        leaderboard.addPoints(playerA.getUuid(), 100);
+
+        final var totals = leaderboard.addPointsBatch(Map.of(playerA.getUuid(), -150L, playerB.getUuid(), 20L));
+        assertEquals(Map.of(playerA.getUuid(), 0L, playerB.getUuid(), 20L), totals);
+        assertEquals(
+                Set.of(playerB.getUuid(), playerA.getUuid()),
+                leaderboard.findPlayersByUuids(List.of(playerA.getUuid(), playerB.getUuid(), playerC.getUuid()))
+                        .stream()
+                        .map(LeaderboardPlayer::getUuid)
+                        .collect(Collectors.toSet()));
+
+        final var recovered = create(1024);
+        assertEquals(20, recovered.findPlayerByUuid(playerB.getUuid()).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_leaderboard_replay_without_exit() {
+        final var leaderboard = create(64 * JournalLeaderboard.RECORD_SIZE);
+        leaderboard.addPoints(playerA.getUuid(), 50);
+        leaderboard.addPoints(playerB.getUuid(), 200);
+        leaderboard.addPoints(playerB.getUuid(), -50);
+        leaderboard.savePlayer(playerC);
+        leaderboard.deletePlayerByUuid(playerC.getUuid());
+
+        // No exit, like a crash of the server
+        final var recovered = create(64 * JournalLeaderboard.RECORD_SIZE);
+        assertEquals(2, recovered.countPlayers());
+        assertEquals(150, recovered.findPlayerByUuid(playerB.getUuid()).orElseThrow().getPoints());
+        assertEquals(50, recovered.findPlayerByUuid(playerA.getUuid()).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_leaderboard_compaction() throws IOException {
+        // Small segments so the grants span many of them
+        final var leaderboard = create(4 * JournalLeaderboard.RECORD_SIZE);
+        for (int i = 0; i < 100; i++) {
+            leaderboard.addPoints(playerA.getUuid(), 1);
+            leaderboard.addPoints(playerB.getUuid(), 2);
+        }
+        leaderboard.onPluginExit();
+
+        try (final var files = Files.list(journalDir)) {
+            assertEquals(2, files.count());
+        }
+        final var reloaded = create(4 * JournalLeaderboard.RECORD_SIZE);
+        playerA.addPoints(100);
+        playerB.addPoints(200);
+        assertEquals(List.of(playerB, playerA), reloaded.findTopPlayers(10));
+    }
+
+    @Test
+    void test_leaderboard_background_compaction() throws IOException {
+        final var tasks = new ArrayList<Runnable>();
+        final var leaderboard =
+                new JournalLeaderboard(journalDir, 4 * JournalLeaderboard.RECORD_SIZE, false, tasks::add);
+        leaderboard.onPluginInit();
+        for (int i = 0; i < 10; i++) {
+            leaderboard.addPoints(playerA.getUuid(), 1);
+            leaderboard.addPoints(playerB.getUuid(), 2);
+        }
+        // The full segments are only folded by the compactions, which run out of order
+        assertEquals(4, tasks.size());
+        for (int i = tasks.size() - 1; i >= 0; i--) {
+            tasks.get(i).run();
+        }
+
+        // No exit, like a crash of the server
+        final var recovered = create(4 * JournalLeaderboard.RECORD_SIZE);
+        assertEquals(10, recovered.findPlayerByUuid(playerA.getUuid()).orElseThrow().getPoints());
+        assertEquals(20, recovered.findPlayerByUuid(playerB.getUuid()).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_leaderboard_torn_record() throws IOException {
+        final var leaderboard = create(64 * JournalLeaderboard.RECORD_SIZE);
+        leaderboard.addPoints(playerA.getUuid(), 10);
+        leaderboard.addPoints(playerA.getUuid(), 20);
+
+        // Corrupt the value of the last record
+        try (final var files = Files.list(journalDir)) {
+            final var segment = files.filter(file -> file.toString().endsWith(".log"))
+                    .findFirst()
+                    .orElseThrow();
+            try (final var channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[] {42}), JournalLeaderboard.RECORD_SIZE + 60);
+            }
+        }
+
+        final var recovered = create(64 * JournalLeaderboard.RECORD_SIZE);
+        assertEquals(10, recovered.findPlayerByUuid(playerA.getUuid()).orElseThrow().getPoints());
+    }
+
+    private JournalLeaderboard create(final int segmentSize) {
+        final var leaderboard = new JournalLeaderboard(journalDir, segmentSize, false, Runnable::run);
+        leaderboard.onPluginInit();
+        return leaderboard;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import mindustry.gen.Player;
+import mindustry.net.NetConnection;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class LeaderboardFixtures {
+
+    private LeaderboardFixtures() {}
+
+    /**
+     * Saves {@code count} players holding 0 to {@code count - 1} points, and returns them from the first rank to the
+     * last.
+     */
+    static List<LeaderboardPlayer> saveRankedPlayers(final Leaderboard leaderboard, final int count) {
+        final var players = new ArrayList<LeaderboardPlayer>();
+        for (int i = 0; i < count; i++) {
+            final var player = LeaderboardPlayer.of(UUID.randomUUID().toString());
+            player.addPoints(i);
+            players.add(player);
+        }
+        leaderboard.savePlayers(players);
+        Collections.reverse(players);
+        return players;
+    }
+
+    /**
+     * Checks the rank ranges shared by all the backends, over 100 ranked players.
+     */
+    static void assertRankRanges(final Leaderboard leaderboard) {
+        final var players = saveRankedPlayers(leaderboard, 100);
+        assertEquals(players.subList(0, 10), leaderboard.findPlayersByRankRange(1, 10));
+        assertEquals(players.subList(41, 46), leaderboard.findPlayersByRankRange(42, 46));
+        assertEquals(players.subList(95, 100), leaderboard.findPlayersByRankRange(96, 200));
+        assertTrue(leaderboard.findPlayersByRankRange(101, 110).isEmpty());
+    }
+
+    /**
+     * Returns a player connected with the given uuid.
+     */
+    static Player createPlayer(final String uuid) {
+        final var player = Player.create();
+        player.con = new TestConnection(uuid);
+        return player;
+    }
+
+    private static final class TestConnection extends NetConnection {
+
+        private boolean connected = true;
+
+        private TestConnection(final String uuid) {
+            super("127.0.0.1");
+            this.uuid = uuid;
+        }
+
+        @Override
+        public void send(final Object object, final boolean reliable) {}
+
+        @Override
+        public void close() {
+            connected = false;
+        }
+
+        @Override
+        public boolean isConnected() {
+            return connected;
+        }
+    }
+}
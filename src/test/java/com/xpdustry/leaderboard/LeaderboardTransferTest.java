@@ -0,0 +1,122 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public final class LeaderboardTransferTest {
+
+    private static final int PLAYERS = 2500;
+
+    private InMemoryLeaderboard source;
+    private Map<String, Long> expected;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void setup() {
+        source = create("source.bin");
+        expected = new HashMap<>();
+        final var random = new Random(42L);
+        for (int i = 0; i < PLAYERS; i++) {
+            final var bytes = new byte[8];
+            random.nextBytes(bytes);
+            final var uuid = Base64.getEncoder().encodeToString(bytes);
+            expected.put(uuid, source.addPoints(uuid, random.nextInt(100_000)));
+        }
+        // Not Mindustry uuids, kept as strings
+        expected.put("not-a-uuid", source.addPoints("not-a-uuid", 7));
+        expected.put("with,\"quotes\"", source.addPoints("with,\"quotes\"", 8));
+    }
+
+    @Test
+    void test_transfer_binary() throws IOException {
+        test_transfer(directory.resolve("export.bin"));
+    }
+
+    @Test
+    void test_transfer_csv() throws IOException {
+        test_transfer(directory.resolve("export.csv"));
+        assertEquals("uuid,points", Files.readAllLines(directory.resolve("export.csv")).get(0));
+    }
+
+    private void test_transfer(final Path file) throws IOException {
+        final var format = LeaderboardTransfer.Format.fromFile(file);
+        final var exported = LeaderboardTransfer.exportTo(source, file, format);
+        assertEquals(expected.size(), exported.players());
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+
+        final var target = create("target.bin");
+        // Added to by the import
+        target.addPoints("not-a-uuid", 1000);
+        // Kept by the import
+        target.addPoints("only-in-target", 1);
+        final var imported = LeaderboardTransfer.importFrom(target, file, format, 100);
+        assertEquals(expected.size(), imported.players());
+        assertEquals(expected.size() + 1, target.countPlayers());
+        expected.merge("not-a-uuid", 1000L, Long::sum);
+
+        final var actual = new HashMap<String, Long>();
+        target.forEachPlayer(player -> actual.put(player.getUuid(), player.getPoints()));
+        actual.remove("only-in-target");
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void test_import_invalid() throws IOException {
+        final var file = directory.resolve("invalid.bin");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(
+                IOException.class,
+                () -> LeaderboardTransfer.importFrom(source, file, LeaderboardTransfer.Format.BINARY, 100));
+
+        final var csv = directory.resolve("invalid.csv");
+        Files.writeString(csv, "uuid,points\nabc,twelve\n");
+        assertThrows(
+                IOException.class,
+                () -> LeaderboardTransfer.importFrom(source, csv, LeaderboardTransfer.Format.CSV, 100));
+    }
+
+    private InMemoryLeaderboard create(final String name) {
+        final var leaderboard = new InMemoryLeaderboard(directory.resolve(name), 0, Runnable::run);
+        leaderboard.onPluginInit();
+        return leaderboard;
+    }
+}
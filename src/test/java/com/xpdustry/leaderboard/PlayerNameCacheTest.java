@@ -0,0 +1,107 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public final class PlayerNameCacheTest {
+
+    @Test
+    void test_cache_hits() {
+        final var loaded = new ArrayList<String>();
+        final var cache = new PlayerNameCache(2, uuid -> {
+            loaded.add(uuid);
+            return "name-" + uuid;
+        });
+        assertEquals("name-a", cache.get("a"));
+        assertEquals("name-a", cache.get("a"));
+        assertEquals(List.of("a"), loaded);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void test_cache_eviction() {
+        final var loaded = new ArrayList<String>();
+        final var cache = new PlayerNameCache(2, uuid -> {
+            loaded.add(uuid);
+            return "name-" + uuid;
+        });
+        cache.get("a");
+        cache.get("b");
+        // Makes b the least recently used
+        cache.get("a");
+        cache.get("c");
+        assertEquals(2, cache.size());
+        cache.get("a");
+        cache.get("b");
+        assertEquals(List.of("a", "b", "c", "b"), loaded);
+    }
+
+    @Test
+    void test_cache_expiry() {
+        final var time = new AtomicLong();
+        final var loaded = new ArrayList<String>();
+        final var cache = new PlayerNameCache(2, 10L, time::get, uuid -> {
+            loaded.add(uuid);
+            return "name-" + loaded.size();
+        });
+        assertEquals("name-1", cache.get("a"));
+        time.set(9L);
+        assertEquals("name-1", cache.get("a"));
+        time.set(10L);
+        assertEquals("name-2", cache.get("a"));
+        assertEquals(List.of("a", "a"), loaded);
+    }
+
+    @Test
+    void test_cache_online() {
+        final var cache = new PlayerNameCache(2, uuid -> "offline");
+        final var player = LeaderboardFixtures.createPlayer("a");
+        player.name = "online";
+        cache.join(player);
+        assertEquals("online", cache.getName("a"));
+        // The name at the time of leaving is kept
+        player.name = "renamed";
+        cache.leave(player);
+        assertEquals("renamed", cache.getName("a"));
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    void test_cache_unknown() {
+        final var cache = new PlayerNameCache(2, uuid -> null);
+        assertEquals("unknown", cache.get("unknown"));
+        assertEquals(0, cache.size());
+        cache.put("unknown", "known");
+        assertEquals("known", cache.get("unknown"));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PlayerUuidsTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void test_uuid_encoding() {
+        var previous = createUuid();
+        for (int i = 0; i < 1000; i++) {
+            final var uuid = createUuid();
+            assertTrue(PlayerUuids.isCanonical(uuid));
+            assertEquals(uuid, PlayerUuids.encode(PlayerUuids.decode(uuid)));
+            assertEquals(uuid, PlayerUuids.fromBytes(PlayerUuids.toBytes(uuid)));
+            assertEquals(
+                    Integer.signum(uuid.compareTo(previous)),
+                    Integer.signum(Long.compareUnsigned(PlayerUuids.decode(uuid), PlayerUuids.decode(previous))));
+            assertEquals(
+                    Integer.signum(uuid.compareTo(previous)),
+                    Integer.signum(
+                            Arrays.compareUnsigned(PlayerUuids.toBytes(uuid), PlayerUuids.toBytes(previous))));
+            previous = uuid;
+        }
+    }
+
+    @Test
+    void test_uuid_non_canonical() {
+        assertFalse(PlayerUuids.isCanonical(UUID.randomUUID().toString()));
+        assertFalse(PlayerUuids.isCanonical("AAAAAAAAAAB="));
+        assertFalse(PlayerUuids.isCanonical("AAAAAAAAAA-="));
+        assertFalse(PlayerUuids.isCanonical("AAAAAAAAAAA"));
+    }
+
+    private String createUuid() {
+        final var bytes = new byte[8];
+        random.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
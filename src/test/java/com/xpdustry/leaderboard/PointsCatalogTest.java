@@ -0,0 +1,96 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class PointsCatalogTest {
+
+    private static final LeaderboardPoints KILL = LeaderboardPoints.of("kill", "Killed an enemy", +10);
+    private static final LeaderboardPoints BUILD = LeaderboardPoints.of("build", +5);
+    private static final LeaderboardPoints GRIEF = LeaderboardPoints.of("grief", -100);
+
+    @Test
+    void test_lookup() {
+        final var catalog = new PointsCatalog();
+        assertTrue(catalog.getPoints("kill").isEmpty());
+        catalog.addRegistry(PointsRegistry.of(KILL, GRIEF));
+        catalog.addRegistry(PointsRegistry.of(BUILD, LeaderboardPoints.of("kill", +1)));
+
+        assertSame(KILL, catalog.getPoints("kill").orElseThrow());
+        assertSame(BUILD, catalog.getPoints("build").orElseThrow());
+        assertTrue(catalog.getPoints("unknown").isEmpty());
+        assertEquals(4, catalog.getAllPoints().size());
+        assertSame(BUILD, catalog.getAllPoints().get(0));
+        assertSame(KILL, catalog.getAllPoints().get(2));
+    }
+
+    @Test
+    void test_pages() {
+        final var catalog = new PointsCatalog();
+        assertEquals(0, catalog.getPageCount());
+        assertEquals(Optional.empty(), catalog.getPage(0));
+
+        catalog.addRegistry(PointsRegistry.of(KILL, BUILD, GRIEF));
+        assertEquals(1, catalog.getPageCount());
+        assertEquals(
+                "LeaderboardPoints (page 0):"
+                        + "\n[cyan]-[white] build [green]+5"
+                        + "\n[cyan]-[white] grief [red]-100"
+                        + "\n[cyan]-[white] kill[cyan]:[white] Killed an enemy [green]+10",
+                catalog.getPage(0).orElseThrow());
+        assertEquals(Optional.empty(), catalog.getPage(1));
+        assertEquals(Optional.empty(), catalog.getPage(-1));
+
+        catalog.addRegistry(new SimplePointsRegistry(IntStream.range(0, PointsCatalog.PAGE_SIZE)
+                .mapToObj(i -> LeaderboardPoints.of("points-" + i, i))
+                .toList()));
+        assertEquals(2, catalog.getPageCount());
+        assertTrue(catalog.getPage(1).orElseThrow().endsWith("points-9 [green]+9"));
+    }
+
+    @Test
+    void test_cache() {
+        final var catalog = new PointsCatalog();
+        catalog.addRegistry(PointsRegistry.of(KILL));
+        final var page = catalog.getPage(0).orElseThrow();
+        assertSame(page, catalog.getPage(0).orElseThrow());
+
+        catalog.addRegistry(PointsRegistry.of(BUILD));
+        final var updated = catalog.getPage(0).orElseThrow();
+        assertNotSame(page, updated);
+        assertTrue(updated.contains("build"));
+        assertEquals(List.of(BUILD, KILL), catalog.getAllPoints());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class RankIndexTest {
+
+    private RankIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new RankIndex();
+    }
+
+    @Test
+    void test_index_rank() {
+        index.update("a", 50);
+        index.update("b", 150);
+        index.update("c", 0);
+
+        assertEquals(1, index.getRank("b"));
+        assertEquals(2, index.getRank("a"));
+        assertEquals(3, index.getRank("c"));
+        assertEquals(-1, index.getRank("d"));
+    }
+
+    @Test
+    void test_index_update_and_remove() {
+        index.update("a", 50);
+        index.update("b", 150);
+        index.update("a", 200);
+
+        assertEquals(2, index.size());
+        assertEquals(200, index.getPoints("a"));
+        assertEquals(1, index.getRank("a"));
+
+        index.remove("a");
+        assertFalse(index.contains("a"));
+        assertEquals(0, index.getPoints("a"));
+        assertEquals(1, index.getRank("b"));
+    }
+
+    @Test
+    void test_index_ties_are_ordered_by_uuid() {
+        index.update("b", 10);
+        index.update("a", 10);
+        index.update("c", 10);
+
+        assertEquals(List.of("a", "b", "c"), uuids(index.getRange(0, 3)));
+    }
+
+    @Test
+    void test_index_matches_sorted_list() {
+        final var random = new Random(42);
+        final var players = new ArrayList<LeaderboardPlayer>();
+        for (int i = 0; i < 1000; i++) {
+            final var player = LeaderboardPlayer.of(UUID.randomUUID().toString());
+            player.addPoints(random.nextInt(100));
+            players.add(player);
+            index.update(player.getUuid(), player.getPoints());
+        }
+        players.sort(Comparator.comparingLong(LeaderboardPlayer::getPoints)
+                .reversed()
+                .thenComparing(LeaderboardPlayer::getUuid));
+
+        assertEquals(players, index.getRange(0, players.size()));
+        assertEquals(players.subList(10, 20), index.getRange(10, 10));
+        assertEquals(players.subList(995, 1000), index.getRange(995, 10));
+        assertTrue(index.getRange(1000, 10).isEmpty());
+        for (int i = 0; i < players.size(); i++) {
+            assertEquals(i + 1, index.getRank(players.get(i).getUuid()));
+        }
+    }
+
+    private static List<String> uuids(final List<LeaderboardPlayer> players) {
+        return players.stream().map(LeaderboardPlayer::getUuid).toList();
+    }
+}
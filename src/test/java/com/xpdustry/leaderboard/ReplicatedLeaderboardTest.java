@@ -0,0 +1,235 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ReplicatedLeaderboardTest {
+
+    private static final int NODES = 3;
+    private static final String SECRET = "secret";
+
+    private final List<ReplicatedLeaderboard> nodes = new ArrayList<>();
+    private final List<LeaderboardMetrics> metrics = new ArrayList<>();
+    private int[] ports;
+    private String playerA;
+    private String playerB;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void setup() throws IOException {
+        playerA = UUID.randomUUID().toString();
+        playerB = UUID.randomUUID().toString();
+        ports = new int[NODES];
+        for (int i = 0; i < NODES; i++) {
+            try (final var socket = new DatagramSocket(0)) {
+                ports[i] = socket.getLocalPort();
+            }
+        }
+        for (int i = 0; i < NODES; i++) {
+            nodes.add(createNode(i));
+        }
+    }
+
+    @AfterEach
+    void close() {
+        nodes.forEach(ReplicatedLeaderboard::onPluginExit);
+    }
+
+    @Test
+    void test_replication() {
+        assertEquals(100L, nodes.get(0).addPoints(playerA, 100L));
+        nodes.get(0).sendChanges();
+        awaitPoints(playerA, 100L);
+        assertTrue(metrics.get(1).getHistograms().get("replication.lag").getCount() > 0L);
+        assertEquals(0, nodes.get(0).getPendingCount());
+    }
+
+    @Test
+    void test_concurrent_writes() {
+        // Each node grants points to the same players before hearing from the others
+        for (int i = 0; i < NODES; i++) {
+            nodes.get(i).addPointsBatch(Map.of(playerA, 100L, playerB, 10L * (i + 1)));
+        }
+        nodes.get(1).addPoints(playerA, -50L);
+        nodes.forEach(ReplicatedLeaderboard::sendChanges);
+        awaitPoints(playerA, 250L);
+        awaitPoints(playerB, 60L);
+        nodes.forEach(node -> assertEquals(
+                List.of(playerA, playerB),
+                node.findTopPlayers(10).stream().map(LeaderboardPlayer::getUuid).toList()));
+    }
+
+    @Test
+    void test_concurrent_penalties() {
+        nodes.get(0).addPoints(playerA, 100L);
+        nodes.get(0).sendChanges();
+        awaitPoints(playerA, 100L);
+
+        // Both penalties apply to the 100 points, taking the counter to -50
+        nodes.get(1).addPoints(playerA, -100L);
+        nodes.get(2).addPoints(playerA, -50L);
+        nodes.forEach(ReplicatedLeaderboard::sendChanges);
+        // The first node received the changes of both peers
+        await(() -> metrics.get(0).getHistograms().get("replication.lag").getCount() == 2L);
+        awaitPoints(playerA, 0L);
+
+        // The grants pay the penalties back before the points go up again
+        assertEquals(0L, nodes.get(0).addPoints(playerA, 10L));
+        assertEquals(10L, nodes.get(0).addPoints(playerA, 50L));
+        nodes.get(0).sendChanges();
+        awaitPoints(playerA, 10L);
+    }
+
+    @Test
+    void test_restart() {
+        nodes.get(0).addPoints(playerA, 100L);
+        nodes.get(0).sendChanges();
+        awaitPoints(playerA, 100L);
+
+        // The counters of the node are restored, so its next changes are not hidden by the ones the peers know
+        nodes.get(0).onPluginExit();
+        nodes.set(0, createNode(0));
+        assertEquals(150L, nodes.get(0).addPoints(playerA, 50L));
+        nodes.get(0).sendChanges();
+        awaitPoints(playerA, 150L);
+    }
+
+    @Test
+    void test_full_sync() {
+        nodes.get(0).addPoints(playerA, 100L);
+        // As if the changes were lost, only the full sync reaches the peers
+        nodes.get(0).sendFullSync();
+        awaitPoints(playerA, 100L);
+    }
+
+    @Test
+    void test_full_sync_rotation() {
+        nodes.get(0).onPluginExit();
+        nodes.set(0, createNode(0, SECRET, 1));
+        nodes.get(0).addPoints(playerA, 100L);
+        nodes.get(0).addPoints(playerB, 10L);
+
+        // One player per full sync
+        nodes.get(0).sendFullSync();
+        await(() -> nodes.get(1).countPlayers() == 1L);
+        nodes.get(0).sendFullSync();
+        awaitPoints(playerA, 100L);
+        awaitPoints(playerB, 10L);
+    }
+
+    @Test
+    void test_unauthenticated_changes() throws IOException {
+        try (final var socket = new DatagramSocket(0)) {
+            ports = new int[] {ports[0], ports[1], ports[2], socket.getLocalPort()};
+        }
+        // A node of the same host, but with another secret
+        final var rogue = createNode(3, "other", 1000);
+        try {
+            rogue.addPoints(playerA, 1000L);
+            rogue.sendChanges();
+            nodes.get(0).addPoints(playerB, 10L);
+            nodes.get(0).sendChanges();
+            awaitPoints(playerB, 10L);
+            assertTrue(nodes.get(1).findPlayerByUuid(playerA).isEmpty());
+        } finally {
+            rogue.onPluginExit();
+        }
+    }
+
+    private ReplicatedLeaderboard createNode(final int index) {
+        return createNode(index, SECRET, 1000);
+    }
+
+    private ReplicatedLeaderboard createNode(final int index, final String secret, final int fullSyncSize) {
+        final var peers = new ArrayList<InetSocketAddress>();
+        for (int i = 0; i < ports.length; i++) {
+            if (i != index) {
+                peers.add(InetSocketAddress.createUnresolved("127.0.0.1", ports[i]));
+            }
+        }
+        final var node = new ReplicatedLeaderboard(
+                new InMemoryLeaderboard(directory.resolve("leaderboard-" + index + ".bin"), 0, Runnable::run),
+                directory.resolve("replication-" + index + ".bin"),
+                "node-" + index,
+                secret,
+                ports[index],
+                peers,
+                0,
+                0,
+                fullSyncSize,
+                Runnable::run);
+        final var registry = new LeaderboardMetrics();
+        node.registerMetrics(registry);
+        if (metrics.size() > index) {
+            metrics.set(index, registry);
+        } else {
+            metrics.add(registry);
+        }
+        node.onPluginInit();
+        return node;
+    }
+
+    private void awaitPoints(final String uuid, final long points) {
+        for (final var node : nodes) {
+            await(() -> node.findPlayerByUuid(uuid)
+                    .map(LeaderboardPlayer::getPoints)
+                    .orElse(0L)
+                    .equals(points));
+        }
+    }
+
+    private static void await(final BooleanSupplier condition) {
+        final var deadline = System.currentTimeMillis() + 5000L;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out while waiting for the replication");
+            }
+            try {
+                Thread.sleep(10L);
+            } catch (final InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
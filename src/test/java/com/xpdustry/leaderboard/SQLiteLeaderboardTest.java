@@ -26,12 +26,22 @@
 package com.xpdustry.leaderboard;
 
 import arc.struct.Seq;
+import fr.xpdustry.distributor.core.database.SQLiteConnectionFactory;
 import fr.xpdustry.distributor.core.dependency.DependencyManager;
 import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
+import org.jdbi.v3.core.Jdbi;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -109,6 +119,48 @@ public final class SQLiteLeaderboardTest {
         assertEquals(playerC, leaderboard.findPlayerByUuid(playerC.getUuid()).get());
     }
 
+    @Test
+    void test_leaderboard_add_points() {
+        assertEquals(100, leaderboard.addPoints(playerA.getUuid(), 100));
+        assertEquals(150, leaderboard.addPoints(playerA.getUuid(), 50));
+        assertEquals(150, leaderboard.findPlayerByUuid(playerA.getUuid()).get().getPoints());
+
+        // Points are clamped at 0
+        assertEquals(0, leaderboard.addPoints(playerA.getUuid(), -200));
+        assertEquals(0, leaderboard.addPoints(playerB.getUuid(), -200));
+        assertTrue(leaderboard.existsPlayerByUuid(playerB.getUuid()));
+    }
+
+    @Test
+    void test_leaderboard_batch() {
+        playerA.addPoints(100);
+        leaderboard.savePlayers(List.of(playerA, playerB));
+
+        assertEquals(
+                Set.of(playerA, playerB),
+                new HashSet<>(leaderboard.findPlayersByUuids(
+                        List.of(playerA.getUuid(), playerB.getUuid(), playerC.getUuid()))));
+        assertTrue(leaderboard.findPlayersByUuids(List.of()).isEmpty());
+
+        final var totals = leaderboard.addPointsBatch(
+                Map.of(playerA.getUuid(), -150L, playerB.getUuid(), 20L, playerC.getUuid(), 30L));
+        assertEquals(Map.of(playerA.getUuid(), 0L, playerB.getUuid(), 20L, playerC.getUuid(), 30L), totals);
+        assertEquals(3, leaderboard.countPlayers());
+        assertEquals(30, leaderboard.findPlayerByUuid(playerC.getUuid()).get().getPoints());
+    }
+
+    @Test
+    void test_leaderboard_batch_chunks() {
+        final var players = new ArrayList<LeaderboardPlayer>();
+        for (int i = 0; i < 1234; i++) {
+            players.add(LeaderboardPlayer.of(UUID.randomUUID().toString()));
+        }
+        leaderboard.savePlayers(players);
+
+        final var uuids = players.stream().map(LeaderboardPlayer::getUuid).toList();
+        assertEquals(new HashSet<>(players), new HashSet<>(leaderboard.findPlayersByUuids(uuids)));
+    }
+
     @Test
     void test_leaderboard_order() {
         playerA.addPoints(POINTS_B);
@@ -125,6 +177,43 @@ public final class SQLiteLeaderboardTest {
                 Seq.with(leaderboard.findAllPlayers()).list()));
     }
 
+    @Test
+    void test_leaderboard_pagination() {
+        final var players = new ArrayList<LeaderboardPlayer>();
+        for (int i = 0; i < 1234; i++) {
+            final var player = LeaderboardPlayer.of(UUID.randomUUID().toString());
+            player.addPoints(i % 7);
+            players.add(player);
+        }
+        leaderboard.savePlayers(players);
+
+        final var result = Seq.with(leaderboard.findAllPlayers()).list();
+        assertEquals(players.size(), result.size());
+        assertEquals(players.size(), new HashSet<>(result).size());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getPoints() >= result.get(i).getPoints());
+        }
+    }
+
+    @Test
+    void test_leaderboard_top() {
+        playerA.addPoints(POINTS_B);
+        leaderboard.savePlayer(playerA); // 50 points
+
+        playerB.addPoints(POINTS_A);
+        leaderboard.savePlayer(playerB); // 100 points
+
+        leaderboard.savePlayer(playerC); // 0 points
+
+        assertEquals(List.of(playerB, playerA), leaderboard.findTopPlayers(2));
+    }
+
+    @Test
+    void test_leaderboard_rank_range() {
+        LeaderboardFixtures.assertRankRanges(leaderboard);
+        assertTrue(leaderboard.findPlayersByRankRange(10, 9).isEmpty());
+    }
+
     @Test
     void test_leaderboard_delete() {
         leaderboard.savePlayer(playerA);
@@ -149,6 +238,90 @@ public final class SQLiteLeaderboardTest {
         assertTrue(Seq.with(leaderboard.findAllPlayers()).isEmpty());
     }
 
+    @Test
+    void test_leaderboard_mindustry_uuids() {
+        final var players = new ArrayList<LeaderboardPlayer>();
+        for (final var uuid : createMindustryUuids(100)) {
+            final var player = LeaderboardPlayer.of(uuid);
+            player.addPoints(10);
+            players.add(player);
+        }
+        leaderboard.savePlayers(players);
+
+        // Ties are ordered by uuid, like with the text keys
+        players.sort(Comparator.comparing(LeaderboardPlayer::getUuid));
+        assertEquals(players, leaderboard.findTopPlayers(100));
+        assertEquals(players, Seq.with(leaderboard.findAllPlayers()).list());
+        assertEquals(players.get(0), leaderboard.findPlayerByUuid(players.get(0).getUuid()).get());
+        assertEquals(20, leaderboard.addPoints(players.get(0).getUuid(), 10));
+    }
+
+    @Test
+    void test_leaderboard_migration() throws SQLException {
+        final var file = databaseDir.resolve("legacy.sqlite");
+        final var uuids = createMindustryUuids(3);
+        final var legacy = new SQLiteConnectionFactory(
+                "", file, DEPENDENCIES.createClassLoaderFor(SQLiteConnectionFactory.SQLITE_DRIVER));
+        legacy.start();
+        Jdbi.create(legacy::getConnection).useHandle(handle -> {
+            handle.execute("CREATE TABLE player (uuid VARCHAR(16) NOT NULL PRIMARY KEY, points BIGINT NOT NULL DEFAULT 0);");
+            handle.execute("INSERT INTO player(uuid, points) VALUES (?, 10), (?, 20), (?, 30);", (Object[]) uuids);
+            handle.execute("INSERT INTO player(uuid, points) VALUES (?, 40);", playerA.getUuid());
+        });
+        legacy.close();
+
+        final var migrated = new SQLiteLeaderboard(file, DEPENDENCIES);
+        migrated.onPluginInit();
+        try {
+            assertEquals(4, migrated.countPlayers());
+            assertEquals(
+                    List.of(playerA.getUuid(), uuids[2], uuids[1], uuids[0]),
+                    migrated.findTopPlayers(4).stream()
+                            .map(LeaderboardPlayer::getUuid)
+                            .toList());
+            assertEquals(15, migrated.addPoints(uuids[0], 5));
+        } finally {
+            migrated.onPluginExit();
+        }
+
+        // Reopening must not migrate again
+        final var reopened = new SQLiteLeaderboard(file, DEPENDENCIES);
+        reopened.onPluginInit();
+        try {
+            assertEquals(15, reopened.findPlayerByUuid(uuids[0]).get().getPoints());
+        } finally {
+            reopened.onPluginExit();
+        }
+    }
+
+    @Test
+    void test_leaderboard_for_each_player() {
+        final var players = new HashSet<LeaderboardPlayer>();
+        // Both kinds of uuids, stored as text and as blobs, on several pages
+        final var uuids = createMindustryUuids(617);
+        for (int i = 0; i < 1234; i++) {
+            final var player = LeaderboardPlayer.of(i % 2 == 0 ? uuids[i / 2] : UUID.randomUUID().toString());
+            player.addPoints(i);
+            players.add(player);
+        }
+        leaderboard.savePlayers(players);
+
+        final var all = new HashSet<LeaderboardPlayer>();
+        leaderboard.forEachPlayer(all::add);
+        assertEquals(players, all);
+    }
+
+    private static String[] createMindustryUuids(final int size) {
+        final var random = new Random(42);
+        final var uuids = new String[size];
+        final var bytes = new byte[8];
+        for (int i = 0; i < size; i++) {
+            random.nextBytes(bytes);
+            uuids[i] = Base64.getEncoder().encodeToString(bytes);
+        }
+        return uuids;
+    }
+
     <T> boolean areCollectionEquals(final Collection<T> collectionA, final Collection<T> collectionB) {
         if (collectionA.size() != collectionB.size()) {
             return false;
@@ -0,0 +1,161 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import fr.xpdustry.distributor.core.dependency.DependencyManager;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SQLitePointsHistoryTest {
+
+    private static final Instant START = Instant.parse("2024-03-01T12:00:00Z");
+
+    @TempDir
+    private static Path DEPENDENCY_DIR;
+
+    private static DependencyManager DEPENDENCIES;
+
+    private String playerA;
+    private String playerB;
+    private SQLitePointsHistory history;
+
+    @TempDir
+    private Path databaseDir;
+
+    @BeforeAll
+    static void init() {
+        DEPENDENCIES = new DependencyManager(DEPENDENCY_DIR);
+        DEPENDENCIES.addMavenCentral();
+    }
+
+    @BeforeEach
+    void setup() {
+        playerA = UUID.randomUUID().toString();
+        playerB = UUID.randomUUID().toString();
+        history = createHistory(16);
+        history.onPluginInit();
+    }
+
+    @AfterEach
+    void close() {
+        history.onPluginExit();
+    }
+
+    @Test
+    void test_breakdown() {
+        record(playerA, "kill", 10, START);
+        record(playerA, "kill", 10, START.plusSeconds(10));
+        record(playerA, "build", 5, START.plusSeconds(20));
+        record(playerA, "grief", -30, START.plusSeconds(30));
+        record(playerB, "kill", 10, START);
+        reopen();
+
+        assertEquals(List.of("kill", "build", "grief"), List.copyOf(history.getBreakdown(playerA).keySet()));
+        assertEquals(Map.of("kill", 20L, "build", 5L, "grief", -30L), history.getBreakdown(playerA));
+        assertEquals(Map.of("kill", 10L), history.getBreakdown(playerB));
+        assertTrue(history.getBreakdown(UUID.randomUUID().toString()).isEmpty());
+    }
+
+    @Test
+    void test_breakdown_range() {
+        record(playerA, "kill", 10, START);
+        record(playerA, "kill", 20, START.plus(Duration.ofHours(2)));
+        record(playerB, "kill", 5, START.plus(Duration.ofHours(2)));
+        record(playerB, "build", 1, START.plus(Duration.ofDays(2)));
+        reopen();
+
+        assertEquals(Map.of("kill", 10L), history.getBreakdown(playerA, START, START.plus(Duration.ofMinutes(1))));
+        assertEquals(Map.of("kill", 30L), history.getBreakdown(playerA, START, START.plus(Duration.ofHours(3))));
+        // The range is widened to whole hours
+        assertEquals(
+                Map.of("kill", 20L),
+                history.getBreakdown(
+                        playerA, START.plus(Duration.ofMinutes(121)), START.plus(Duration.ofMinutes(150))));
+        assertEquals(
+                Map.of("kill", 35L, "build", 1L),
+                history.getBreakdown(START.minus(Duration.ofDays(1)), START.plus(Duration.ofDays(3))));
+        assertEquals(
+                Map.of("kill", 25L),
+                history.getBreakdown(START.plus(Duration.ofHours(1)), START.plus(Duration.ofDays(1))));
+    }
+
+    @Test
+    void test_entries() {
+        for (int i = 0; i < 10; i++) {
+            record(playerA, "kill", i, START.plusSeconds(i));
+        }
+        reopen();
+
+        final var entries = history.getEntries(playerA, 3);
+        assertEquals(3, entries.size());
+        assertEquals(new PointsHistory.Entry(playerA, "kill", 9, START.plusSeconds(9)), entries.get(0));
+        assertEquals(new PointsHistory.Entry(playerA, "kill", 7, START.plusSeconds(7)), entries.get(2));
+        assertTrue(history.getEntries(playerB, 3).isEmpty());
+    }
+
+    @Test
+    void test_full_queue() {
+        history.onPluginExit();
+        // Not started, so nothing drains the queue
+        history = createHistory(2);
+        assertTrue(history.record(new PointsHistory.Entry(playerA, "kill", 1, START)));
+        assertTrue(history.record(new PointsHistory.Entry(playerA, "kill", 1, START)));
+        assertFalse(history.record(new PointsHistory.Entry(playerA, "kill", 1, START)));
+        history.onPluginInit();
+    }
+
+    private SQLitePointsHistory createHistory(final int queueSize) {
+        return new SQLitePointsHistory(databaseDir.resolve("history.sqlite"), DEPENDENCIES, queueSize, 4);
+    }
+
+    private void record(final String uuid, final String name, final long delta, final Instant timestamp) {
+        while (!history.record(new PointsHistory.Entry(uuid, name, delta, timestamp))) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Closes the history, which writes the queued grants, then opens it again.
+     */
+    private void reopen() {
+        history.onPluginExit();
+        history = createHistory(16);
+        history.onPluginInit();
+    }
+}
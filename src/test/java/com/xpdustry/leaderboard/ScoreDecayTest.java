@@ -0,0 +1,110 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class ScoreDecayTest {
+
+    private static final Duration HALF_LIFE = Duration.ofDays(7L);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2024-06-01T00:00:00Z"));
+    private final ScoreDecay decay = ScoreDecay.of(HALF_LIFE, clock);
+
+    @TempDir
+    private Path directory;
+
+    private String playerA;
+    private String playerB;
+
+    @BeforeEach
+    void setup() {
+        playerA = UUID.randomUUID().toString();
+        playerB = UUID.randomUUID().toString();
+    }
+
+    @Test
+    void test_decay() {
+        final var score = decay.add(0L, 1000L);
+        assertEquals(1000L, decay.getPoints(score));
+        clock.advance(HALF_LIFE);
+        assertEquals(500L, decay.getPoints(score));
+        clock.advance(HALF_LIFE);
+        assertEquals(250L, decay.getPoints(score));
+        assertEquals(350L, decay.getPoints(decay.add(score, 100L)));
+    }
+
+    @Test
+    void test_decay_negative() {
+        final var score = decay.add(0L, 100L);
+        assertEquals(40L, decay.getPoints(decay.add(score, -60L)));
+        assertEquals(0L, decay.add(score, -100L));
+        assertEquals(0L, decay.add(score, -200L));
+        assertEquals(0L, decay.getPoints(0L));
+    }
+
+    @Test
+    void test_decay_order() {
+        final var older = decay.add(0L, 1000L);
+        clock.advance(HALF_LIFE);
+        // 600 recent points beat 1000 points decayed to 500
+        final var recent = decay.add(0L, 600L);
+        assertTrue(recent > older);
+        clock.advance(HALF_LIFE.multipliedBy(10L));
+        // The order of the untouched scores never changes
+        assertTrue(recent > older);
+        assertTrue(decay.getPoints(recent) > decay.getPoints(older));
+    }
+
+    @Test
+    void test_decayed_service() {
+        final var leaderboard = new InMemoryLeaderboard(directory.resolve("leaderboard.bin"), 0, Runnable::run);
+        final var service = LeaderboardService.decayed(leaderboard, decay);
+        service.grantPoints(playerA, LeaderboardPoints.of("A", 1000));
+        clock.advance(HALF_LIFE);
+        service.grantPoints(playerB, LeaderboardPoints.of("B", 600));
+
+        final var top = service.getTopPlayers(10).stream().map(LeaderboardPlayer::getUuid).toList();
+        assertEquals(List.of(playerB, playerA), top);
+        assertEquals(500L, service.getPoints(playerA));
+        assertEquals(600L, service.getTopPlayers(1).get(0).getPoints());
+        // The leaderboard holds the scores, so a new service ranks the players the same way
+        final var reloaded = (SimpleLeaderboardService) LeaderboardService.decayed(leaderboard, decay);
+        reloaded.onPluginInit();
+        assertEquals(1L, reloaded.getRank(playerB));
+        assertEquals(2L, reloaded.getRank(playerA));
+    }
+}
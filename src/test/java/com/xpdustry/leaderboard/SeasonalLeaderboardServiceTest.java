@@ -0,0 +1,148 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SeasonalLeaderboardServiceTest {
+
+    private static final LeaderboardPoints POINTS = LeaderboardPoints.of("A", 100);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2023-01-15T12:00:00Z"));
+    private String playerA;
+    private String playerB;
+    private InMemoryLeaderboard allTime;
+    private SeasonalLeaderboardService service;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    void setup() {
+        playerA = UUID.randomUUID().toString();
+        playerB = UUID.randomUUID().toString();
+        allTime = new InMemoryLeaderboard(directory.resolve("leaderboard.bin"), 0, Runnable::run);
+        allTime.onPluginInit();
+        service = createService(1);
+        service.onPluginInit();
+    }
+
+    @AfterEach
+    void close() {
+        service.onPluginExit();
+        allTime.onPluginExit();
+    }
+
+    @Test
+    void test_season_period() {
+        final var instant = Instant.parse("2023-01-01T12:00:00Z");
+        assertEquals("2023-01", LeaderboardConfig.SeasonPeriod.MONTHLY.getSeason(instant));
+        // The first days of 2023 are in the last ISO week of 2022
+        assertEquals("2022-W52", LeaderboardConfig.SeasonPeriod.WEEKLY.getSeason(instant));
+    }
+
+    @Test
+    void test_season_grants() {
+        service.grantPoints(playerA, POINTS);
+        assertEquals("2023-01", service.getCurrentSeason().orElseThrow());
+        assertEquals(100, service.getPoints(playerA));
+        assertEquals(100, service.getAllTime().getPoints(playerA));
+        assertEquals(100, allTime.findPlayerByUuid(playerA).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_season_applied_points() {
+        service.grantPoints(playerA, POINTS);
+        clock.set(Instant.parse("2023-02-01T00:00:00Z"));
+        service.checkRollover();
+
+        // The applied points are the all-time ones, the player having no points in the new season
+        assertEquals(-50, service.grantPoints(playerA, LeaderboardPoints.of("A", -50)));
+        assertEquals(0, service.getPoints(playerA));
+        assertEquals(50, service.getAllTime().getPoints(playerA));
+    }
+
+    @Test
+    void test_season_rollover() {
+        service.grantPoints(playerA, POINTS);
+        clock.set(Instant.parse("2023-02-01T00:00:00Z"));
+        service.checkRollover();
+
+        assertEquals("2023-02", service.getCurrentSeason().orElseThrow());
+        assertEquals(0, service.getPoints(playerA));
+        service.grantPoints(playerB, POINTS);
+        assertEquals(List.of(playerB), uuids(service.getTopPlayers(10)));
+
+        // The past season is still readable and the all-time totals span both seasons
+        assertEquals(100, service.getSeason("2023-01").orElseThrow().getPoints(playerA));
+        assertTrue(service.getSeason("2022-12").isEmpty());
+        assertEquals(2, service.getAllTime().getTopPlayers(10).size());
+    }
+
+    @Test
+    void test_season_prune() {
+        for (final var month : List.of("2023-02", "2023-03", "2023-04")) {
+            clock.set(Instant.parse(month + "-01T00:00:00Z"));
+            service.checkRollover();
+        }
+        assertFalse(Files.exists(directory.resolve("seasons").resolve("2023-01")));
+        assertFalse(Files.exists(directory.resolve("seasons").resolve("2023-02")));
+        assertTrue(Files.exists(directory.resolve("seasons").resolve("2023-03")));
+        assertTrue(Files.exists(directory.resolve("seasons").resolve("2023-04")));
+    }
+
+    private SeasonalLeaderboardService createService(final int retention) {
+        return new SeasonalLeaderboardService(
+                allTime,
+                SeasonStorage.directory(
+                        directory.resolve("seasons"),
+                        path -> new InMemoryLeaderboard(path.resolve("leaderboard.bin"), 0, Runnable::run)),
+                LeaderboardConfig.SeasonPeriod.MONTHLY,
+                retention,
+                0,
+                null,
+                GrantNotifier.immediate(),
+                new PlayerNameCache(16, uuid -> null),
+                Runnable::run,
+                clock);
+    }
+
+    private static List<String> uuids(final List<LeaderboardPlayer> players) {
+        return players.stream().map(LeaderboardPlayer::getUuid).toList();
+    }
+}
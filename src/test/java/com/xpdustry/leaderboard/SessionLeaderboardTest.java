@@ -0,0 +1,246 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SessionLeaderboardTest {
+
+    private String online;
+    private String offline;
+    private InMemoryLeaderboard storage;
+    private SessionLeaderboard leaderboard;
+
+    @TempDir
+    private Path snapshotDir;
+
+    @BeforeEach
+    void setup() {
+        online = UUID.randomUUID().toString();
+        offline = UUID.randomUUID().toString();
+        storage = new InMemoryLeaderboard(snapshotDir.resolve("leaderboard.bin"), 0, Runnable::run);
+        storage.onPluginInit();
+        // Not initialized, the join and leave events are simulated with open and close
+        leaderboard = new SessionLeaderboard(storage, 0, Runnable::run);
+    }
+
+    @Test
+    void test_session_load() {
+        storage.addPoints(online, 100);
+        leaderboard.open(online);
+        assertEquals(1, leaderboard.getSessionCount());
+        assertEquals(150, leaderboard.addPoints(online, 50));
+        assertEquals(150, leaderboard.findPlayerByUuid(online).orElseThrow().getPoints());
+        // Kept in memory until the player leaves
+        assertEquals(100, storage.findPlayerByUuid(online).orElseThrow().getPoints());
+
+        leaderboard.close(online);
+        assertEquals(0, leaderboard.getSessionCount());
+        assertEquals(150, storage.findPlayerByUuid(online).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_session_load_retry() {
+        storage.addPoints(online, 100);
+        final var hooked = new HookedLeaderboard(storage);
+        final var leaderboard = new SessionLeaderboard(hooked, 0, Runnable::run);
+        // A grant lands while the player is read, outside of the lock
+        hooked.onFind = () -> {
+            hooked.onFind = null;
+            leaderboard.addPoints(online, 10);
+        };
+        leaderboard.open(online);
+        assertEquals(1, leaderboard.getSessionCount());
+        assertEquals(110, leaderboard.findPlayerByUuid(online).orElseThrow().getPoints());
+
+        // The player leaves while being read
+        hooked.onFind = () -> leaderboard.close(offline);
+        leaderboard.open(offline);
+        assertEquals(1, leaderboard.getSessionCount());
+    }
+
+    @Test
+    void test_session_offline() {
+        leaderboard.open(online);
+        assertEquals(10, leaderboard.addPoints(offline, 10));
+        assertEquals(10, storage.findPlayerByUuid(offline).orElseThrow().getPoints());
+
+        final var totals = leaderboard.addPointsBatch(Map.of(online, 5L, offline, 5L));
+        assertEquals(Map.of(online, 5L, offline, 15L), totals);
+        assertEquals(15, storage.findPlayerByUuid(offline).orElseThrow().getPoints());
+        assertTrue(storage.findPlayerByUuid(online).isEmpty());
+    }
+
+    @Test
+    void test_session_checkpoint() {
+        leaderboard.open(online);
+        leaderboard.addPoints(online, 20);
+        final var player = LeaderboardPlayer.of(offline);
+        player.addPoints(30);
+        leaderboard.savePlayers(List.of(player));
+        assertTrue(storage.findPlayerByUuid(online).isEmpty());
+        assertEquals(30, storage.findPlayerByUuid(offline).orElseThrow().getPoints());
+
+        leaderboard.checkpoint();
+        assertEquals(20, storage.findPlayerByUuid(online).orElseThrow().getPoints());
+        assertEquals(1, leaderboard.getSessionCount());
+        // The ranking queries see the points of the online players
+        leaderboard.addPoints(online, 20);
+        assertEquals(online, leaderboard.findTopPlayers(1).get(0).getUuid());
+    }
+
+    @Test
+    void test_session_exit() {
+        leaderboard.open(online);
+        leaderboard.addPoints(online, 20);
+        leaderboard.onPluginExit();
+        final var reloaded = new InMemoryLeaderboard(snapshotDir.resolve("leaderboard.bin"), 0, Runnable::run);
+        reloaded.onPluginInit();
+        assertEquals(20, reloaded.findPlayerByUuid(online).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_session_transitions_in_order() {
+        final var tasks = new ArrayList<Runnable>();
+        final var leaderboard = new SessionLeaderboard(storage, 0, tasks::add);
+        leaderboard.openAsync(online);
+        leaderboard.closeAsync(online);
+        leaderboard.openAsync(online);
+        // The close waits for the open, and the second open for the close
+        assertEquals(1, tasks.size());
+        while (!tasks.isEmpty()) {
+            tasks.remove(0).run();
+        }
+        assertEquals(1, leaderboard.getSessionCount());
+    }
+
+    @Test
+    void test_session_close_flush() {
+        final var buffer = new WriteBehindLeaderboard(storage, 0, 1000, Runnable::run);
+        final var leaderboard = new SessionLeaderboard(buffer, 0, Runnable::run);
+        leaderboard.open(online);
+        leaderboard.addPoints(online, 20);
+        leaderboard.close(online);
+        assertEquals(0, buffer.getPendingCount());
+        assertEquals(20, storage.findPlayerByUuid(online).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_session_offline_write_not_shared() throws Exception {
+        final var hooked = new HookedLeaderboard(storage);
+        final var leaderboard = new SessionLeaderboard(hooked, 0, Runnable::run);
+        leaderboard.open(online);
+        final var granted = new AtomicLong(-1L);
+        // The grant of the online player does not wait for the write of the offline one
+        hooked.onAdd = () -> {
+            hooked.onAdd = null;
+            final var thread = new Thread(() -> granted.set(leaderboard.addPoints(online, 10)));
+            thread.start();
+            try {
+                thread.join(5000L);
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        leaderboard.addPoints(offline, 5);
+        assertEquals(10, granted.get());
+        assertEquals(5, storage.findPlayerByUuid(offline).orElseThrow().getPoints());
+    }
+
+    /**
+     * A leaderboard running a hook before each player lookup and each addition.
+     */
+    private static final class HookedLeaderboard implements Leaderboard {
+
+        private final Leaderboard leaderboard;
+        private volatile Runnable onFind = null;
+        private volatile Runnable onAdd = null;
+
+        private HookedLeaderboard(final Leaderboard leaderboard) {
+            this.leaderboard = leaderboard;
+        }
+
+        @Override
+        public void savePlayer(final LeaderboardPlayer player) {
+            leaderboard.savePlayer(player);
+        }
+
+        @Override
+        public long addPoints(final String uuid, final long delta) {
+            final var hook = onAdd;
+            if (hook != null) {
+                hook.run();
+            }
+            return leaderboard.addPoints(uuid, delta);
+        }
+
+        @Override
+        public boolean existsPlayerByUuid(final String uuid) {
+            return leaderboard.existsPlayerByUuid(uuid);
+        }
+
+        @Override
+        public Optional<LeaderboardPlayer> findPlayerByUuid(final String uuid) {
+            final var hook = onFind;
+            if (hook != null) {
+                hook.run();
+            }
+            return leaderboard.findPlayerByUuid(uuid);
+        }
+
+        @Override
+        public Iterable<LeaderboardPlayer> findAllPlayers() {
+            return leaderboard.findAllPlayers();
+        }
+
+        @Override
+        public long countPlayers() {
+            return leaderboard.countPlayers();
+        }
+
+        @Override
+        public void deletePlayerByUuid(final String uuid) {
+            leaderboard.deletePlayerByUuid(uuid);
+        }
+
+        @Override
+        public void deleteAllPlayers() {
+            leaderboard.deleteAllPlayers();
+        }
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class SharedLeaderboardServiceTest {
+
+    private static final int FLUSH_THRESHOLD = 3;
+
+    private ControlledLeaderboard storage;
+    private List<Runnable> tasks;
+    private SharedLeaderboardService service;
+
+    @TempDir
+    private Path snapshotDir;
+
+    @BeforeEach
+    void setup() {
+        final var memory = new InMemoryLeaderboard(snapshotDir.resolve("leaderboard.bin"), 0, Runnable::run);
+        memory.onPluginInit();
+        storage = new ControlledLeaderboard(memory);
+        tasks = new ArrayList<>();
+        // No timers, the async flushes are queued and run by the tests
+        service = new SharedLeaderboardService(
+                storage,
+                GrantNotifier.immediate(),
+                new PlayerNameCache(16, key -> null),
+                0,
+                true,
+                0,
+                FLUSH_THRESHOLD,
+                tasks::add);
+    }
+
+    @Test
+    void test_buffered_grant() {
+        final var uuid = UUID.randomUUID().toString();
+        service.onPluginInit();
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 10));
+
+        // Ranked right away, but only written on flush
+        assertEquals(10, service.getPoints(uuid));
+        assertEquals(1, service.getRank(uuid));
+        assertTrue(storage.findPlayerByUuid(uuid).isEmpty());
+        assertEquals(1, service.getPendingCount());
+
+        service.onPluginExit();
+        assertEquals(10, storage.findPlayerByUuid(uuid).orElseThrow().getPoints());
+        assertEquals(0, service.getPendingCount());
+    }
+
+    @Test
+    void test_threshold_flush() {
+        final var uuids = createUuids(FLUSH_THRESHOLD);
+        service.onPluginInit();
+        service.grantPoints(uuids.get(0), LeaderboardPoints.of("test", 10));
+        service.grantPoints(uuids.get(1), LeaderboardPoints.of("test", 10));
+        // Repeated grants to the same player are merged
+        service.grantPoints(uuids.get(1), LeaderboardPoints.of("test", 10));
+        assertTrue(tasks.isEmpty());
+
+        service.grantPoints(uuids.get(2), LeaderboardPoints.of("test", 10));
+        // Only one flush is queued while the buffer stays full
+        service.grantPoints(uuids.get(2), LeaderboardPoints.of("test", 10));
+        assertEquals(1, tasks.size());
+        runTasks();
+        assertEquals(0, service.getPendingCount());
+        assertEquals(20, storage.findPlayerByUuid(uuids.get(1)).orElseThrow().getPoints());
+        assertEquals(20, storage.findPlayerByUuid(uuids.get(2)).orElseThrow().getPoints());
+        assertEquals(1, storage.batches);
+    }
+
+    @Test
+    void test_clamped_grants() {
+        final var uuid = UUID.randomUUID().toString();
+        storage.addPoints(uuid, 5);
+        service.onPluginInit();
+
+        // Clamped at 0 before the second grant, so it cannot be merged with the first one
+        service.grantPoints(uuid, LeaderboardPoints.of("test", -10));
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 3));
+        assertEquals(3, service.getPoints(uuid));
+
+        service.flush();
+        assertEquals(2, storage.batches);
+        assertEquals(3, storage.findPlayerByUuid(uuid).orElseThrow().getPoints());
+        assertEquals(3, service.getPoints(uuid));
+    }
+
+    @Test
+    void test_flush_retry() {
+        final var uuid = UUID.randomUUID().toString();
+        service.onPluginInit();
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 10));
+
+        storage.failure = new RuntimeException("Simulated failure");
+        service.flush();
+        assertEquals(1, service.getPendingCount());
+        assertEquals(10, service.getPoints(uuid));
+        assertTrue(storage.findPlayerByUuid(uuid).isEmpty());
+
+        storage.failure = null;
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 5));
+        service.flush();
+        assertEquals(0, service.getPendingCount());
+        assertEquals(15, storage.findPlayerByUuid(uuid).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_flush_reads_other_servers() {
+        final var uuid = UUID.randomUUID().toString();
+        service.onPluginInit();
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 10));
+        // Granted by another server meanwhile
+        storage.addPoints(uuid, 100);
+        assertEquals(10, service.getPoints(uuid));
+
+        service.flush();
+        assertEquals(110, service.getPoints(uuid));
+    }
+
+    @Test
+    void test_refresh_keeps_buffered_points() {
+        final var uuid = UUID.randomUUID().toString();
+        storage.addPoints(uuid, 5);
+        service.onPluginInit();
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 10));
+        storage.addPoints(uuid, 100);
+
+        service.refresh();
+        assertEquals(115, service.getPoints(uuid));
+        service.flush();
+        assertEquals(115, service.getPoints(uuid));
+    }
+
+    @Test
+    void test_refresh_during_flush() throws InterruptedException {
+        final var uuid = UUID.randomUUID().toString();
+        storage.addPoints(uuid, 5);
+        service.onPluginInit();
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 10));
+
+        // The refresh starting once the batch is written waits for the flush, instead of counting the batch twice
+        final var refresh = new Thread(service::refresh);
+        final var during = new AtomicLong();
+        storage.onBatch = () -> {
+            refresh.start();
+            try {
+                refresh.join(200L);
+            } catch (final InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            during.set(service.getPoints(uuid));
+        };
+        service.flush();
+        refresh.join();
+        assertEquals(15, during.get());
+        assertEquals(15, service.getPoints(uuid));
+    }
+
+    @Test
+    void test_refresh_skips_granted_players() {
+        final var uuid = UUID.randomUUID().toString();
+        storage.addPoints(uuid, 5);
+        service = new SharedLeaderboardService(
+                storage,
+                GrantNotifier.immediate(),
+                new PlayerNameCache(16, key -> null),
+                0,
+                false,
+                0,
+                FLUSH_THRESHOLD,
+                tasks::add);
+        service.onPluginInit();
+
+        // The reloaded points are outdated by the grant made during the refresh
+        storage.onFindAll = () -> service.grantPoints(uuid, LeaderboardPoints.of("test", 10));
+        service.refresh();
+        assertEquals(15, service.getPoints(uuid));
+    }
+
+    @Test
+    void test_unbuffered_grant() {
+        final var uuid = UUID.randomUUID().toString();
+        service = new SharedLeaderboardService(
+                storage,
+                GrantNotifier.immediate(),
+                new PlayerNameCache(16, key -> null),
+                0,
+                false,
+                0,
+                FLUSH_THRESHOLD,
+                tasks::add);
+        service.onPluginInit();
+        service.grantPoints(uuid, LeaderboardPoints.of("test", 10));
+        assertEquals(10, storage.findPlayerByUuid(uuid).orElseThrow().getPoints());
+        assertEquals(0, service.getPendingCount());
+
+        storage.failure = new RuntimeException("Simulated failure");
+        assertThrows(RuntimeException.class, () -> service.grantPoints(uuid, LeaderboardPoints.of("test", 10)));
+    }
+
+    private void runTasks() {
+        final var copy = List.copyOf(tasks);
+        tasks.clear();
+        copy.forEach(Runnable::run);
+    }
+
+    private static List<String> createUuids(final int size) {
+        final var uuids = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            uuids.add(UUID.randomUUID().toString());
+        }
+        return uuids;
+    }
+
+    /**
+     * A leaderboard whose increments can be made to fail, and which can run a task while the players are reloaded or
+     * once a batch is written.
+     */
+    private static final class ControlledLeaderboard implements Leaderboard {
+
+        private final Leaderboard leaderboard;
+        private volatile RuntimeException failure = null;
+        private volatile int batches = 0;
+        private volatile Runnable onFindAll = null;
+        private volatile Runnable onBatch = null;
+
+        private ControlledLeaderboard(final Leaderboard leaderboard) {
+            this.leaderboard = leaderboard;
+        }
+
+        @Override
+        public long addPoints(final String uuid, final long delta) {
+            final var failure = this.failure;
+            if (failure != null) {
+                throw failure;
+            }
+            return leaderboard.addPoints(uuid, delta);
+        }
+
+        @Override
+        public Map<String, Long> addPointsBatch(final Map<String, Long> deltas) {
+            final var failure = this.failure;
+            if (failure != null) {
+                throw failure;
+            }
+            batches++;
+            final var totals = leaderboard.addPointsBatch(deltas);
+            final var onBatch = this.onBatch;
+            if (onBatch != null) {
+                onBatch.run();
+            }
+            return totals;
+        }
+
+        @Override
+        public void savePlayer(final LeaderboardPlayer player) {
+            leaderboard.savePlayer(player);
+        }
+
+        @Override
+        public void savePlayers(final Collection<LeaderboardPlayer> players) {
+            leaderboard.savePlayers(players);
+        }
+
+        @Override
+        public boolean existsPlayerByUuid(final String uuid) {
+            return leaderboard.existsPlayerByUuid(uuid);
+        }
+
+        @Override
+        public Optional<LeaderboardPlayer> findPlayerByUuid(final String uuid) {
+            return leaderboard.findPlayerByUuid(uuid);
+        }
+
+        @Override
+        public Iterable<LeaderboardPlayer> findAllPlayers() {
+            final var players = new ArrayList<LeaderboardPlayer>();
+            leaderboard.findAllPlayers().forEach(players::add);
+            final var onFindAll = this.onFindAll;
+            if (onFindAll != null) {
+                onFindAll.run();
+            }
+            return players;
+        }
+
+        @Override
+        public long countPlayers() {
+            return leaderboard.countPlayers();
+        }
+
+        @Override
+        public void deletePlayerByUuid(final String uuid) {
+            leaderboard.deletePlayerByUuid(uuid);
+        }
+
+        @Override
+        public void deleteAllPlayers() {
+            leaderboard.deleteAllPlayers();
+        }
+    }
+}
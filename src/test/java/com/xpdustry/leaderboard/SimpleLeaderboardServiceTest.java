@@ -0,0 +1,142 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public final class SimpleLeaderboardServiceTest {
+
+    @TempDir
+    private Path directory;
+
+    private List<LeaderboardPlayer> players;
+    private SimpleLeaderboardService service;
+
+    @BeforeEach
+    void setup() {
+        final var leaderboard = new InMemoryLeaderboard(directory.resolve("leaderboard.bin"), 0, Runnable::run);
+        players = LeaderboardFixtures.saveRankedPlayers(leaderboard, 20);
+        // Names the offline players without looking up the player infos of the server
+        final var names = new PlayerNameCache(32, uuid -> "name-" + uuid);
+        service = new SimpleLeaderboardService(leaderboard, null, GrantNotifier.immediate(), names);
+        service.onPluginInit();
+    }
+
+    @Test
+    void test_neighbours() {
+        assertEquals(uuids(players.subList(7, 12)), uuids(service.getNeighbours(players.get(9).getUuid(), 2)));
+    }
+
+    @Test
+    void test_neighbours_first_rank() {
+        assertEquals(uuids(players.subList(0, 3)), uuids(service.getNeighbours(players.get(0).getUuid(), 2)));
+    }
+
+    @Test
+    void test_neighbours_last_rank() {
+        assertEquals(uuids(players.subList(17, 20)), uuids(service.getNeighbours(players.get(19).getUuid(), 2)));
+    }
+
+    @Test
+    void test_applied_points() {
+        final var uuid = players.get(15).getUuid();
+        assertEquals(3, service.grantPoints(uuid, LeaderboardPoints.of("A", 3)));
+        assertEquals(-1, service.grantPoints(uuid, LeaderboardPoints.of("A", -1)));
+        // The penalty is limited to the points of the player
+        assertEquals(-6, service.grantPoints(uuid, LeaderboardPoints.of("A", -10)));
+        assertEquals(0, service.grantPoints(uuid, LeaderboardPoints.of("A", -10)));
+    }
+
+    @Test
+    void test_applied_points_batch() {
+        final var first = LeaderboardFixtures.createPlayer(players.get(18).getUuid());
+        final var second = LeaderboardFixtures.createPlayer(players.get(17).getUuid());
+        assertEquals(
+                Map.of(first.uuid(), -1L, second.uuid(), -2L),
+                service.grantPoints(List.of(first, second, first), LeaderboardPoints.of("A", -2)));
+    }
+
+    @Test
+    void test_board_unchanged() {
+        final var version = service.getBoardVersion();
+        final var packet = service.getBoardPacket();
+        assertSame(packet, service.getBoardPacket());
+        // The last player stays below the lowest score of the board
+        service.grantPoints(players.get(19).getUuid(), LeaderboardPoints.of("A", 1));
+        assertEquals(version, service.getBoardVersion());
+        assertSame(packet, service.getBoardPacket());
+    }
+
+    @Test
+    void test_board_changed() {
+        final var version = service.getBoardVersion();
+        final var packet = service.getBoardPacket();
+        service.grantPoints(players.get(15).getUuid(), LeaderboardPoints.of("A", 100));
+        assertNotEquals(version, service.getBoardVersion());
+        final var updated = service.getBoardPacket();
+        assertNotSame(packet, updated);
+        assertEquals("#1 [white]: name-" + players.get(15).getUuid() + "[white] - 104", updated.message.split("\n")[1]);
+    }
+
+    @Test
+    void test_board_changed_while_built() {
+        final var leaderboard = new InMemoryLeaderboard(directory.resolve("other.bin"), 0, Runnable::run);
+        final var ranked = LeaderboardFixtures.saveRankedPlayers(leaderboard, 20);
+        final var late = ranked.get(15).getUuid();
+        final var hook = new AtomicReference<Runnable>();
+        final var names = new PlayerNameCache(32, uuid -> {
+            final var runnable = hook.getAndSet(null);
+            if (runnable != null) {
+                runnable.run();
+            }
+            return "name-" + uuid;
+        });
+        final var service = new SimpleLeaderboardService(leaderboard, null, GrantNotifier.immediate(), names);
+        service.onPluginInit();
+        service.getBoardVersion();
+
+        // The player entering the board is resolved by the build, which the grant lands in the middle of
+        hook.set(() -> service.grantPoints(late, LeaderboardPoints.of("A", 100)));
+        service.grantPoints(ranked.get(10).getUuid(), LeaderboardPoints.of("A", 5));
+        service.getBoardVersion();
+        assertEquals("#1 [white]: name-" + late + "[white] - 104", service.getBoardPacket().message.split("\\n")[1]);
+    }
+
+    private static List<String> uuids(final List<LeaderboardPlayer> players) {
+        return players.stream().map(LeaderboardPlayer::getUuid).toList();
+    }
+}
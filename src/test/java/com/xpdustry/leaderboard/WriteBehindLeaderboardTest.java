@@ -0,0 +1,276 @@
+/*
+ * This file is part of LeaderboardPlugin. A simple leaderboard system for players.
+ *
+ * MIT License
+ *
+ * Copyright (c) 2023 xpdustry
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.xpdustry.leaderboard;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public final class WriteBehindLeaderboardTest {
+
+    private static final int FLUSH_THRESHOLD = 3;
+
+    private ControlledLeaderboard storage;
+    private List<Runnable> tasks;
+    private WriteBehindLeaderboard leaderboard;
+
+    @TempDir
+    private Path snapshotDir;
+
+    @BeforeEach
+    void setup() {
+        final var memory = new InMemoryLeaderboard(snapshotDir.resolve("leaderboard.bin"), 0, Runnable::run);
+        memory.onPluginInit();
+        storage = new ControlledLeaderboard(memory);
+        tasks = new ArrayList<>();
+        // Not initialized, the async flushes are queued and run by the tests
+        leaderboard = new WriteBehindLeaderboard(storage, 0, FLUSH_THRESHOLD, tasks::add);
+    }
+
+    @Test
+    void test_threshold_flush() {
+        final var uuids = createUuids(FLUSH_THRESHOLD);
+        leaderboard.addPoints(uuids.get(0), 10);
+        leaderboard.addPoints(uuids.get(1), 10);
+        // Repeated grants to the same player do not grow the buffer
+        leaderboard.addPoints(uuids.get(1), 10);
+        assertEquals(2, leaderboard.getPendingCount());
+        assertTrue(tasks.isEmpty());
+
+        leaderboard.addPoints(uuids.get(2), 10);
+        assertEquals(1, tasks.size());
+        runTasks();
+        assertEquals(0, leaderboard.getPendingCount());
+        assertEquals(20, storage.findPlayerByUuid(uuids.get(1)).orElseThrow().getPoints());
+        assertEquals(1, storage.batches);
+    }
+
+    @Test
+    void test_threshold_flush_after_failure() {
+        final var uuids = createUuids(FLUSH_THRESHOLD + 2);
+        for (int i = 0; i < FLUSH_THRESHOLD; i++) {
+            leaderboard.addPoints(uuids.get(i), 10);
+        }
+        storage.failure = new RuntimeException("Simulated failure");
+        runTasks();
+        assertEquals(FLUSH_THRESHOLD, leaderboard.getPendingCount());
+
+        // Past the threshold, every write can trigger a flush, but only one waits at a time
+        storage.failure = null;
+        leaderboard.addPoints(uuids.get(FLUSH_THRESHOLD), 10);
+        leaderboard.addPoints(uuids.get(FLUSH_THRESHOLD + 1), 10);
+        assertEquals(1, tasks.size());
+        runTasks();
+        assertEquals(0, leaderboard.getPendingCount());
+    }
+
+    @Test
+    void test_interval_flush() {
+        final var uuid = UUID.randomUUID().toString();
+        leaderboard.addPoints(uuid, 10);
+        assertTrue(storage.findPlayerByUuid(uuid).isEmpty());
+
+        // The task scheduled every interval, which needs a running server
+        leaderboard.flushAsync();
+        runTasks();
+        assertEquals(10, storage.findPlayerByUuid(uuid).orElseThrow().getPoints());
+
+        // Nothing is written when the buffer is empty
+        leaderboard.flushAsync();
+        runTasks();
+        assertEquals(1, storage.batches);
+    }
+
+    @Test
+    void test_flush_retry() {
+        final var uuids = createUuids(2);
+        leaderboard.addPoints(uuids.get(0), 10);
+        leaderboard.addPoints(uuids.get(1), 10);
+
+        storage.failure = new RuntimeException("Simulated failure");
+        leaderboard.flush();
+        assertEquals(2, leaderboard.getPendingCount());
+        assertTrue(storage.findPlayerByUuid(uuids.get(0)).isEmpty());
+        assertEquals(10, leaderboard.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+
+        storage.failure = null;
+        leaderboard.addPoints(uuids.get(0), 5);
+        leaderboard.flush();
+        assertEquals(0, leaderboard.getPendingCount());
+        assertEquals(15, storage.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+        assertEquals(10, storage.findPlayerByUuid(uuids.get(1)).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_read_through_during_flush() throws Exception {
+        final var uuids = createUuids(2);
+        leaderboard.addPoints(uuids.get(0), 10);
+
+        storage.blocker = new CountDownLatch(1);
+        final var flush = CompletableFuture.runAsync(leaderboard::flush);
+        assertTrue(storage.blocked.await(5L, TimeUnit.SECONDS));
+
+        // The batch is not committed yet, but is still read from the buffer
+        assertEquals(0, leaderboard.getPendingCount());
+        assertTrue(storage.findPlayerByUuid(uuids.get(0)).isEmpty());
+        assertTrue(leaderboard.existsPlayerByUuid(uuids.get(0)));
+        assertEquals(10, leaderboard.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+        assertEquals(1, leaderboard.findPlayersByUuids(uuids).size());
+        assertFalse(leaderboard.existsPlayerByUuid(uuids.get(1)));
+
+        storage.blocker.countDown();
+        flush.get(5L, TimeUnit.SECONDS);
+        assertEquals(10, storage.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+        assertEquals(10, leaderboard.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+    }
+
+    @Test
+    void test_miss_during_flush() throws Exception {
+        final var uuids = createUuids(2);
+        storage.savePlayers(List.of(withPoints(uuids.get(1), 100)));
+        leaderboard.addPoints(uuids.get(0), 10);
+
+        storage.blocker = new CountDownLatch(1);
+        final var flush = CompletableFuture.runAsync(leaderboard::flush);
+        assertTrue(storage.blocked.await(5L, TimeUnit.SECONDS));
+
+        // Neither the players being written nor the others wait for the flush
+        assertEquals(15, leaderboard.addPoints(uuids.get(0), 5));
+        assertEquals(110, leaderboard.addPoints(uuids.get(1), 10));
+        assertEquals(2, leaderboard.getPendingCount());
+
+        storage.blocker.countDown();
+        flush.get(5L, TimeUnit.SECONDS);
+        assertEquals(10, storage.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+        storage.blocker = null;
+        leaderboard.flush();
+        assertEquals(15, storage.findPlayerByUuid(uuids.get(0)).orElseThrow().getPoints());
+        assertEquals(110, storage.findPlayerByUuid(uuids.get(1)).orElseThrow().getPoints());
+    }
+
+    private static LeaderboardPlayer withPoints(final String uuid, final long points) {
+        final var player = LeaderboardPlayer.of(uuid);
+        player.addPoints(points);
+        return player;
+    }
+
+    private void runTasks() {
+        final var copy = List.copyOf(tasks);
+        tasks.clear();
+        copy.forEach(Runnable::run);
+    }
+
+    private static List<String> createUuids(final int size) {
+        final var uuids = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            uuids.add(UUID.randomUUID().toString());
+        }
+        return uuids;
+    }
+
+    /**
+     * A leaderboard whose batch writes can be made to fail or to wait.
+     */
+    private static final class ControlledLeaderboard implements Leaderboard {
+
+        private final Leaderboard leaderboard;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile RuntimeException failure = null;
+        private volatile CountDownLatch blocker = null;
+        private volatile int batches = 0;
+
+        private ControlledLeaderboard(final Leaderboard leaderboard) {
+            this.leaderboard = leaderboard;
+        }
+
+        @Override
+        public void savePlayer(final LeaderboardPlayer player) {
+            leaderboard.savePlayer(player);
+        }
+
+        @Override
+        public void savePlayers(final Collection<LeaderboardPlayer> players) {
+            final var failure = this.failure;
+            if (failure != null) {
+                throw failure;
+            }
+            final var blocker = this.blocker;
+            if (blocker != null) {
+                blocked.countDown();
+                try {
+                    blocker.await();
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            leaderboard.savePlayers(players);
+            batches++;
+        }
+
+        @Override
+        public boolean existsPlayerByUuid(final String uuid) {
+            return leaderboard.existsPlayerByUuid(uuid);
+        }
+
+        @Override
+        public Optional<LeaderboardPlayer> findPlayerByUuid(final String uuid) {
+            return leaderboard.findPlayerByUuid(uuid);
+        }
+
+        @Override
+        public Iterable<LeaderboardPlayer> findAllPlayers() {
+            return leaderboard.findAllPlayers();
+        }
+
+        @Override
+        public long countPlayers() {
+            return leaderboard.countPlayers();
+        }
+
+        @Override
+        public void deletePlayerByUuid(final String uuid) {
+            leaderboard.deletePlayerByUuid(uuid);
+        }
+
+        @Override
+        public void deleteAllPlayers() {
+            leaderboard.deleteAllPlayers();
+        }
+    }
+}